@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Seeded generator of realistic inputs for the extraction step.
+ */
+public class Corpus {
+  private static final String[] WORDS = {
+    "customer", "called", "about", "the", "invoice", "and", "asked", "for", "a", "refund", "please",
+    "follow", "up", "next", "week", "account", "was", "updated", "on", "request", "ticket", "closed",
+    "email", "sent", "to", "billing", "team", "order", "shipped", "via", "ground", "notes", "from", "agent"
+  };
+
+  private static final String[] MESSY_FORMATS = {
+    "(%s) %s-%s", " +1 %s.%s.%s ", "1-%s-%s-%s", "%s/%s %s", "%s %s %s x12", "+1 (%s) %s %s", "tel: %s-%s-%s"
+  };
+
+  /** Numbers of other regions, clean and dirty; each # is a random digit. */
+  private static final String[] INTERNATIONAL_FORMATS = {
+    "+44 20 79## ####", "+44 (0)7700 9## ###", "+49 30 ########", "+49-151-########", "+33 1 ## ## ## ##",
+    "+33.6.##.##.##.##", "+61 2 #### ####", "+91 98### #####", "+81 3-####-####", "+55 (11) 9####-####",
+    "0044 161 ### ####", "+41 (0)44 ### ## ##"
+  };
+
+  /**
+   * The kinds of input the step sees in production.
+   */
+  public enum Kind {
+    /** Bare 10 digit numbers. */
+    CLEAN,
+    /** Numbers with mixed punctuation, prefixes and extensions. */
+    MESSY,
+    /** Free text with no number. */
+    TEXT_NONE,
+    /** Free text with one number. */
+    TEXT_ONE,
+    /** Free text with several numbers. */
+    TEXT_MANY,
+    /** Numbers of several regions with their calling codes, clean and dirty. */
+    MIXED_REGIONS,
+    /** Long free text with a few numbers of several regions. */
+    LONG_TEXT
+  }
+
+  private final Random random;
+
+  public Corpus(long seed) {
+    this.random = new Random(seed);
+  }
+
+  /**
+   * Generate inputs of one kind.
+   *
+   * @param kind        The kind of input
+   * @param size        The number of inputs
+   * @return            The inputs
+   */
+  public String[] generate(Kind kind, int size) {
+    String[] inputs = new String[size];
+    for (int i = 0; i < size; i++) {
+      inputs[i] = next(kind);
+    }
+    return inputs;
+  }
+
+  /**
+   * Generate one input.
+   *
+   * @param kind        The kind of input
+   * @return            The input
+   */
+  public String next(Kind kind) {
+    switch (kind) {
+      case CLEAN:
+        return npa() + digits(3) + digits(4);
+      case MESSY:
+        return messy();
+      case TEXT_NONE:
+        return text(0);
+      case TEXT_ONE:
+        return text(1);
+      case TEXT_MANY:
+        return text(2 + random.nextInt(5));
+      case MIXED_REGIONS:
+        return random.nextInt(3) == 0 ? messy() : international();
+      default:
+        return text(3 + random.nextInt(6), 1500 + random.nextInt(1000), true);
+    }
+  }
+
+  private String messy() {
+    String format = MESSY_FORMATS[random.nextInt(MESSY_FORMATS.length)];
+    return String.format(format, npa(), exchange(), digits(4));
+  }
+
+  private String international() {
+    String format = INTERNATIONAL_FORMATS[random.nextInt(INTERNATIONAL_FORMATS.length)];
+    char[] chars = format.toCharArray();
+    for (int i = 0; i < chars.length; i++) {
+      if (chars[i] == '#') {
+        chars[i] = (char) ('0' + random.nextInt(10));
+      }
+    }
+    return new String(chars);
+  }
+
+  private String text(int numbers) {
+    return text(numbers, 60 + random.nextInt(60), false);
+  }
+
+  private String text(int numbers, int words, boolean mixed) {
+    StringBuilder sb = new StringBuilder();
+    int every = numbers == 0 ? Integer.MAX_VALUE : words / numbers;
+    for (int i = 0; i < words; i++) {
+      if (sb.length() > 0) {
+        sb.append(' ');
+      }
+      if (i % every == every / 2) {
+        sb.append(mixed && random.nextBoolean() ? international() : messy().trim());
+      } else {
+        sb.append(WORDS[random.nextInt(WORDS.length)]);
+        if (random.nextInt(15) == 0) {
+          sb.append(' ').append(random.nextInt(100));
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  private String npa() {
+    return (char) ('2' + random.nextInt(8)) + digits(2);
+  }
+
+  private String exchange() {
+    return (char) ('2' + random.nextInt(8)) + digits(2);
+  }
+
+  private String digits(int n) {
+    char[] chars = new char[n];
+    for (int i = 0; i < n; i++) {
+      chars[i] = (char) ('0' + random.nextInt(10));
+    }
+    return new String(chars);
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si.benchmarks;
+
+import com.si.LibPhonenumberPDIPlugin;
+import com.si.LibPhonenumberPDIPluginData;
+import com.si.LibPhonenumberPDIPluginMeta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepMeta;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the per-row work of the extraction step. Each invocation
+ * feeds ROWS rows through processRow of a real step instance, so the
+ * extraction, the cache and NANP options, and the packaging in emitRow
+ * (one row per number, reusing the input row for the last one) are all
+ * measured. Only getRow and putRow are replaced, to hand out the rows and
+ * sink the output without row sets. The reported score is rows per second.
+ *
+ * Run all cases with the allocation profiler:
+ *
+ *   java -jar target/benchmarks.jar ExtractionBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractionBenchmark {
+  private static final int ROWS = 1024;
+  private static final int INPUT_FIELDS = 12;
+
+  @Param({ "false", "true" })
+  public boolean findMatches;
+
+  @Param({ "false", "true" })
+  public boolean checkValid;
+
+  @Param({ "false", "true" })
+  public boolean countryCode;
+
+  @Param({ "0", "4096" })
+  public int cacheSize;
+
+  @Param({ "false", "true" })
+  public boolean nanpFastPath;
+
+  @Param({ "CLEAN", "MESSY", "TEXT_NONE", "TEXT_ONE", "TEXT_MANY" })
+  public Corpus.Kind input;
+
+  private LibPhonenumberPDIPluginMeta meta;
+  private LibPhonenumberPDIPluginData data;
+  private BenchmarkStep step;
+
+  /**
+   * The step with its input and output replaced by the benchmark rows.
+   */
+  private static class BenchmarkStep extends LibPhonenumberPDIPlugin {
+    private final Object[][] rows;
+    private int next;
+    private Blackhole bh;
+
+    BenchmarkStep(StepMeta stepMeta, LibPhonenumberPDIPluginData data, TransMeta transMeta, Object[][] rows) {
+      super(stepMeta, data, 0, transMeta, new Trans(transMeta));
+      this.rows = rows;
+    }
+
+    @Override
+    public Object[] getRow() {
+      return rows[next++];
+    }
+
+    @Override
+    public void putRow(RowMetaInterface rowMeta, Object[] row) {
+      bh.consume(row);
+    }
+  }
+
+  @Setup
+  public void setup() throws KettleException {
+    KettleEnvironment.init(false);
+    meta = new LibPhonenumberPDIPluginMeta();
+    meta.setDefault();
+    meta.setInField("f0");
+    meta.setOutField("number");
+    meta.setCountryCodeField(countryCode ? "country_code" : "");
+    meta.setRegion("US");
+    meta.setFindMatches(findMatches);
+    meta.setCheckValid(checkValid);
+    meta.setCacheSize(cacheSize);
+    meta.setNanpFastPath(nanpFastPath);
+
+    String[] inputs = new Corpus(42).generate(input, ROWS);
+    RowMetaInterface inputMeta = new RowMeta();
+    Object[][] rows = new Object[ROWS][];
+    for (int f = 0; f < INPUT_FIELDS; f++) {
+      inputMeta.addValueMeta(new ValueMetaString("f" + f));
+    }
+    for (int i = 0; i < ROWS; i++) {
+      // rows are exactly as wide as the input, so the step resizes a copy and never changes them
+      rows[i] = new Object[INPUT_FIELDS];
+      rows[i][0] = inputs[i];
+      for (int f = 1; f < INPUT_FIELDS; f++) {
+        rows[i][f] = "field" + f;
+      }
+    }
+
+    TransMeta transMeta = new TransMeta();
+    StepMeta stepMeta = new StepMeta("phone numbers", meta);
+    transMeta.addStep(stepMeta);
+    data = new LibPhonenumberPDIPluginData();
+    step = new BenchmarkStep(stepMeta, data, transMeta, rows);
+    step.setInputRowMeta(inputMeta);
+    if (!step.init(meta, data)) {
+      throw new KettleException("Unable to initialize the step");
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    step.dispose(meta, data);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void processRows(Blackhole bh) throws KettleException {
+    step.bh = bh;
+    step.next = 0;
+    for (int i = 0; i < ROWS; i++) {
+      step.processRow(meta, data);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+      .include(ExtractionBenchmark.class.getSimpleName())
+      .addProfiler(GCProfiler.class)
+      .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si.benchmarks;
+
+import com.si.LibPhonenumberPDIPluginMeta;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.plugins.PluginRegistry;
+import org.pentaho.di.core.plugins.StepPluginType;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.trans.RowProducer;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransHopMeta;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.RowAdapter;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.di.trans.steps.dummytrans.DummyTransMeta;
+import org.pentaho.di.trans.steps.injector.InjectorMeta;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * End to end throughput of the extraction step inside a real
+ * transformation: injector, extraction step and dummy, so putRow, the row
+ * copies per number and the blocking between row sets are all measured.
+ *
+ * Rows are fed from a pool of seeded Corpus inputs, generated before the
+ * clock starts. A warm-up run comes first. The report gives rows and
+ * numbers per second, the latency of each batch of rows from injection to
+ * the dummy step, and the heap high-water mark: the sum of the peak use of
+ * each heap pool during the measured run. Numbers are counted as output
+ * rows holding one, so the count is exact in the rows output mode only.
+ *
+ * Options are key=value arguments, see DEFAULTS. From Maven:
+ *
+ *   mvn -pl libphonenumber-pdi-benchmarks -am install -DskipTests
+ *   mvn -pl libphonenumber-pdi-benchmarks exec:exec -Dharness.args="corpus=LONG_TEXT rows=50000 workers=4"
+ */
+public class ThroughputHarness {
+  private static final String INJECTOR = "input";
+  private static final String STEP = "phone numbers";
+  private static final String OUTPUT = "output";
+
+  private static final String[][] DEFAULTS = {
+    { "corpus", "MIXED_REGIONS" },
+    { "rows", "200000" },
+    { "warmup", "20000" },
+    { "pool", "20000" },
+    { "batch", "1000" },
+    { "seed", "42" },
+    { "region", "US" },
+    // empty for true with the text corpora, false otherwise
+    { "findMatches", "" },
+    { "checkValid", "false" },
+    { "workers", "0" },
+    { "cacheSize", "0" },
+    { "outputMode", LibPhonenumberPDIPluginMeta.OUTPUT_ROWS }
+  };
+
+  private final Map<String, String> options;
+  private final String[] pool;
+
+  ThroughputHarness(Map<String, String> options) {
+    this.options = options;
+    Corpus.Kind kind = Corpus.Kind.valueOf(options.get("corpus"));
+    this.pool = new Corpus(Long.parseLong(options.get("seed"))).generate(kind, Integer.parseInt(options.get("pool")));
+  }
+
+  public static void main(String[] args) throws KettleException {
+    Map<String, String> options = new HashMap<String, String>();
+    for (String[] option : DEFAULTS) {
+      options.put(option[0], option[1]);
+    }
+    for (String arg : args) {
+      int eq = arg.indexOf('=');
+      if (eq < 0 || !options.containsKey(arg.substring(0, eq))) {
+        System.err.println("Unknown option " + arg + ", expected key=value with a key of " + options.keySet());
+        System.exit(2);
+      }
+      options.put(arg.substring(0, eq), arg.substring(eq + 1));
+    }
+    if (options.get("findMatches").isEmpty()) {
+      String corpus = options.get("corpus");
+      options.put("findMatches", Boolean.toString(corpus.startsWith("TEXT") || corpus.equals("LONG_TEXT")));
+    }
+
+    KettleEnvironment.init(false);
+    StepPluginType.getInstance().handlePluginAnnotation(LibPhonenumberPDIPluginMeta.class,
+        LibPhonenumberPDIPluginMeta.class.getAnnotation(Step.class), new ArrayList<String>(), true, null);
+
+    ThroughputHarness harness = new ThroughputHarness(options);
+    harness.run(Integer.parseInt(options.get("warmup")));
+    System.gc();
+    Result result = harness.run(Integer.parseInt(options.get("rows")));
+    System.out.println("options: " + new TreeMap<String, String>(options));
+    System.out.println(result);
+  }
+
+  private TransMeta buildTransMeta() {
+    LibPhonenumberPDIPluginMeta meta = new LibPhonenumberPDIPluginMeta();
+    meta.setDefault();
+    meta.setInField("text");
+    meta.setOutField("number");
+    meta.setCountryCodeField("country_code");
+    meta.setRegion(options.get("region"));
+    meta.setFindMatches(Boolean.parseBoolean(options.get("findMatches")));
+    meta.setCheckValid(Boolean.parseBoolean(options.get("checkValid")));
+    meta.setParallelWorkers(Integer.parseInt(options.get("workers")));
+    meta.setCacheSize(Integer.parseInt(options.get("cacheSize")));
+    meta.setOutputMode(options.get("outputMode"));
+
+    TransMeta transMeta = new TransMeta();
+    transMeta.setName("throughput harness");
+    StepMeta injector = addStep(transMeta, INJECTOR, new InjectorMeta());
+    StepMeta step = addStep(transMeta, STEP, meta);
+    StepMeta output = addStep(transMeta, OUTPUT, new DummyTransMeta());
+    transMeta.addTransHop(new TransHopMeta(injector, step));
+    transMeta.addTransHop(new TransHopMeta(step, output));
+    return transMeta;
+  }
+
+  private static StepMeta addStep(TransMeta transMeta, String name, StepMetaInterface meta) {
+    String id = PluginRegistry.getInstance().getPluginId(StepPluginType.class, meta);
+    StepMeta stepMeta = new StepMeta(id, name, meta);
+    transMeta.addStep(stepMeta);
+    return stepMeta;
+  }
+
+  /**
+   * Run the transformation over a number of rows.
+   *
+   * @param rows    The number of input rows
+   * @return        The measurements
+   */
+  Result run(int rows) throws KettleException {
+    final int batch = Integer.parseInt(options.get("batch"));
+    final int batches = (rows + batch - 1) / batch;
+    final AtomicLongArray started = new AtomicLongArray(batches);
+    final AtomicLongArray latencies = new AtomicLongArray(batches);
+    final AtomicLong rowsOut = new AtomicLong();
+    final AtomicLong numbers = new AtomicLong();
+
+    Trans trans = new Trans(buildTransMeta());
+    trans.prepareExecution(null);
+    StepInterface output = trans.getStepInterface(OUTPUT, 0);
+    output.addRowListener(new RowAdapter() {
+      private int seqIdx = -1;
+      private int numberIdx = -1;
+
+      @Override
+      public void rowReadEvent(RowMetaInterface rowMeta, Object[] row) {
+        if (seqIdx < 0) {
+          seqIdx = rowMeta.indexOfValue("seq");
+          numberIdx = rowMeta.indexOfValue("number");
+        }
+        rowsOut.incrementAndGet();
+        if (numberIdx >= 0 && row[numberIdx] != null) {
+          numbers.incrementAndGet();
+        }
+        long seq = (Long) row[seqIdx];
+        int b = (int) (seq / batch);
+        // rows keep their order, so once the last row of a batch shows up the whole batch is through
+        if ((seq == (long) (b + 1) * batch - 1 || seq == rows - 1) && latencies.get(b) == 0) {
+          latencies.set(b, Math.max(1, System.nanoTime() - started.get(b)));
+        }
+      }
+    });
+    RowProducer producer = trans.addRowProducer(INJECTOR, 0);
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta(new ValueMetaInteger("seq"));
+    rowMeta.addValueMeta(new ValueMetaString("text"));
+
+    resetHeapPeaks();
+    long start = System.nanoTime();
+    trans.startThreads();
+    for (int i = 0; i < rows; i++) {
+      if (i % batch == 0) {
+        started.set(i / batch, System.nanoTime());
+      }
+      producer.putRow(rowMeta, new Object[]{ (long) i, pool[i % pool.length] });
+    }
+    producer.finished();
+    trans.waitUntilFinished();
+    long elapsed = System.nanoTime() - start;
+    if (trans.getErrors() > 0) {
+      throw new KettleException("The transformation failed with " + trans.getErrors() + " errors");
+    }
+
+    long[] sorted = new long[batches];
+    for (int b = 0; b < batches; b++) {
+      sorted[b] = latencies.get(b);
+    }
+    Arrays.sort(sorted);
+    return new Result(rows, rowsOut.get(), numbers.get(), elapsed, sorted, heapPeak());
+  }
+
+  private static void resetHeapPeaks() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  private static long heapPeak() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  /**
+   * The measurements of one run.
+   */
+  static class Result {
+    final long rowsIn;
+    final long rowsOut;
+    final long numbers;
+    final long nanos;
+    final long[] batchNanos;
+    final long heapPeak;
+
+    Result(long rowsIn, long rowsOut, long numbers, long nanos, long[] batchNanos, long heapPeak) {
+      this.rowsIn = rowsIn;
+      this.rowsOut = rowsOut;
+      this.numbers = numbers;
+      this.nanos = nanos;
+      this.batchNanos = batchNanos;
+      this.heapPeak = heapPeak;
+    }
+
+    private double perSecond(long count) {
+      return count * 1e9 / nanos;
+    }
+
+    private double percentileMillis(double p) {
+      if (batchNanos.length == 0) {
+        return 0;
+      }
+      int i = (int) Math.min(batchNanos.length - 1, Math.ceil(p * batchNanos.length) - 1);
+      return batchNanos[Math.max(0, i)] / 1e6;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("rows in: %d, rows out: %d, numbers: %d, seconds: %.2f%n"
+          + "rows/sec: %.0f%nnumbers/sec: %.0f%n"
+          + "batch latency ms: p50 %.2f, p99 %.2f, max %.2f%n"
+          + "heap high-water MB: %.1f",
+          rowsIn, rowsOut, numbers, nanos / 1e9, perSecond(rowsIn), perSecond(numbers),
+          percentileMillis(0.5), percentileMillis(0.99), percentileMillis(1.0), heapPeak / 1048576.0);
+    }
+  }
+}
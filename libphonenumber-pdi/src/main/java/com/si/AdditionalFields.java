@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.Phonenumber;
+
+/**
+ * Extracts the additional input fields of a row in the same pass as the
+ * main input field, writing the results into the row itself.
+ *
+ * Each field has its own output fields and mode. Numbers go in the layout
+ * of the step's output mode: joined with the delimiter, spread over
+ * indexed columns, or the first number only when the main field emits
+ * one row per number. Safe to call from several threads, each with its
+ * own buffer.
+ */
+public class AdditionalFields {
+  private final PhoneNumberExtractor[] extractors;
+  private final int[] inIdx;
+  private final int[] outIdx;
+  private final int[] countryCodeIdx;
+  private final String delimiter;
+  private final int maxColumns;
+
+  /**
+   * @param extractors        The extractor for each field, by its mode
+   * @param inIdx             The input field indexes
+   * @param outIdx            The output field indexes, or first column indexes, -1 for none
+   * @param countryCodeIdx    The country code field indexes, or first column indexes, -1 for none
+   * @param delimiter         The delimiter to join numbers with, null unless joining
+   * @param maxColumns        The number of indexed columns, 0 unless using them
+   */
+  public AdditionalFields(PhoneNumberExtractor[] extractors, int[] inIdx, int[] outIdx, int[] countryCodeIdx,
+      String delimiter, int maxColumns) {
+    this.extractors = extractors;
+    this.inIdx = inIdx;
+    this.outIdx = outIdx;
+    this.countryCodeIdx = countryCodeIdx;
+    this.delimiter = delimiter;
+    this.maxColumns = maxColumns;
+  }
+
+  public int size() {
+    return extractors.length;
+  }
+
+  /**
+   * Extract every additional field of a row. Must be called before the
+   * main field is extracted with the same buffer.
+   *
+   * @param row         The resized row to fill in
+   * @param regionValue The region field value as a string, null to use the default region
+   * @param buffer      The calling thread's buffer
+   * @return            The number of fields that failed to parse
+   */
+  public int fill(Object[] row, String regionValue, PhoneNumberExtractor.Buffer buffer) {
+    int failures = 0;
+    for (int i = 0; i < extractors.length; i++) {
+      PhoneNumberExtractor extractor = extractors[i];
+      PhoneNumberExtractor.Region region = extractor.resolveRegion(regionValue);
+      int count = extractor.extractValue(row[inIdx[i]], region, buffer);
+      if (buffer.error != null) {
+        failures += 1;
+      } else if (count > 0) {
+        if (delimiter != null) {
+          if (outIdx[i] >= 0) {
+            row[outIdx[i]] = join(buffer.numbers, count, false);
+          }
+          if (countryCodeIdx[i] >= 0) {
+            row[countryCodeIdx[i]] = join(buffer.numbers, count, true);
+          }
+        } else {
+          int n = maxColumns > 0 ? Math.min(count, maxColumns) : 1;
+          for (int c = 0; c < n; c++) {
+            Phonenumber.PhoneNumber number = buffer.numbers[c];
+            if (outIdx[i] >= 0) {
+              row[outIdx[i] + c] = number.getNationalNumber();
+            }
+            if (countryCodeIdx[i] >= 0) {
+              row[countryCodeIdx[i] + c] = (long) number.getCountryCode();
+            }
+          }
+        }
+      }
+    }
+    return failures;
+  }
+
+  private String join(Phonenumber.PhoneNumber[] numbers, int count, boolean countryCode) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        sb.append(delimiter);
+      }
+      if (countryCode) {
+        sb.append(numbers[i].getCountryCode());
+      } else {
+        sb.append(numbers[i].getNationalNumber());
+      }
+    }
+    return sb.toString();
+  }
+}
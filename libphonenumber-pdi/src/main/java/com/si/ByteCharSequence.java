@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A CharSequence view of bytes with one char per byte, as ISO-8859-1, so
+ * char indexes are byte offsets. Digits and phone punctuation are ASCII,
+ * so the matcher finds the same numbers it would in the decoded text;
+ * non-ASCII characters only serve as context.
+ */
+public class ByteCharSequence implements CharSequence {
+  private final ByteBuffer bytes;
+  private final int start;
+  private final int length;
+
+  public ByteCharSequence(ByteBuffer bytes, int start, int length) {
+    this.bytes = bytes;
+    this.start = start;
+    this.length = length;
+  }
+
+  public int length() {
+    return length;
+  }
+
+  public char charAt(int index) {
+    return (char) (bytes.get(start + index) & 0xFF);
+  }
+
+  public CharSequence subSequence(int from, int to) {
+    return new ByteCharSequence(bytes, start + from, to - from);
+  }
+
+  public String toString() {
+    byte[] copy = new byte[length];
+    for (int i = 0; i < length; i++) {
+      copy[i] = bytes.get(start + i);
+    }
+    return new String(copy, StandardCharsets.ISO_8859_1);
+  }
+}
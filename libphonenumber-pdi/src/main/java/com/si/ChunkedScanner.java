@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.Phonenumber;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * Finds numbers in text read from a Reader a chunk at a time, so a large
+ * document never has to be held as one string.
+ *
+ * Each window holds up to OVERLAP characters before the chunk, the chunk,
+ * and up to OVERLAP characters after it. A match is kept only if it starts
+ * inside the chunk. The context on both sides is long enough for any
+ * candidate the matcher accepts, so numbers across chunk borders are
+ * found exactly once and with the same surrounding text as a full scan.
+ */
+public class ChunkedScanner {
+  /** Longer than the longest candidate the matcher accepts, extension included. */
+  public static final int OVERLAP = 1024;
+
+  /**
+   * Receives the numbers found.
+   */
+  public interface Sink {
+    void accept(Phonenumber.PhoneNumber number, long offset);
+  }
+
+  private final int chunkSize;
+  private final char[] window;
+  private long deadline;
+  private boolean timed;
+
+  /**
+   * @param chunkSize     The characters per chunk, at least OVERLAP
+   */
+  public ChunkedScanner(int chunkSize) {
+    this.chunkSize = Math.max(chunkSize, OVERLAP);
+    this.window = new char[this.chunkSize + 2 * OVERLAP];
+  }
+
+  /**
+   * Stop the next scans once a System.nanoTime deadline has passed, by
+   * throwing DeadlineCharSequence.EXCEEDED.
+   *
+   * @param deadline      The deadline
+   */
+  public void setDeadline(long deadline) {
+    this.deadline = deadline;
+    this.timed = true;
+  }
+
+  public void clearDeadline() {
+    this.timed = false;
+  }
+
+  /**
+   * Scan the text from a reader.
+   *
+   * @param reader        The text
+   * @param extractor     The extractor that matches each window
+   * @param region        The region
+   * @param sink          Receives each number with the char offset of its match
+   * @return              The matches dropped by the validity check
+   * @throws IOException  If the reader fails
+   */
+  public int scan(Reader reader, PhoneNumberExtractor extractor, PhoneNumberExtractor.Region region, Sink sink)
+      throws IOException {
+    int invalid = 0;
+    long windowOffset = 0;
+    int lookback = 0;
+    int filled = 0;
+    boolean eof = false;
+    while (true) {
+      while (!eof && filled < window.length) {
+        int n = reader.read(window, filled, window.length - filled);
+        if (n < 0) {
+          eof = true;
+        } else {
+          filled += n;
+        }
+      }
+      int keepEnd = eof ? filled : lookback + chunkSize;
+      CharSequence text = CharBuffer.wrap(window, 0, filled);
+      if (timed) {
+        text = new DeadlineCharSequence(text, deadline);
+      }
+      invalid += extractor.findNumbers(text, region, lookback, keepEnd, windowOffset, sink);
+      if (eof) {
+        return invalid;
+      }
+      int from = keepEnd - OVERLAP;
+      System.arraycopy(window, from, window, 0, filled - from);
+      filled -= from;
+      windowOffset += from;
+      lookback = OVERLAP;
+    }
+  }
+}
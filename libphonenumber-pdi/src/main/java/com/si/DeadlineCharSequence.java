@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+/**
+ * A view of a text that stops the reader once a deadline has passed.
+ *
+ * The number matcher reads its input through charAt, so wrapping the text
+ * bounds the time spent in a single findNumbers call without a watchdog
+ * thread. The clock is read every CHECK_EVERY reads, and the reader is
+ * stopped with the shared EXCEEDED exception, which has no stack trace.
+ */
+public class DeadlineCharSequence implements CharSequence {
+  static final int CHECK_EVERY = 256;
+
+  /** Thrown from charAt once the deadline has passed. */
+  public static final RuntimeException EXCEEDED = new RuntimeException("Row processing time budget exceeded", null,
+      false, false) {
+  };
+
+  private final CharSequence text;
+  private final long deadline;
+  private int reads;
+
+  /**
+   * @param text        The text
+   * @param deadline    The System.nanoTime value to stop at
+   */
+  public DeadlineCharSequence(CharSequence text, long deadline) {
+    this.text = text;
+    this.deadline = deadline;
+  }
+
+  public int length() {
+    return text.length();
+  }
+
+  public char charAt(int index) {
+    if (++reads == CHECK_EVERY) {
+      reads = 0;
+      if (System.nanoTime() - deadline > 0) {
+        throw EXCEEDED;
+      }
+    }
+    return text.charAt(index);
+  }
+
+  public CharSequence subSequence(int start, int end) {
+    return text.subSequence(start, end);
+  }
+
+  public String toString() {
+    return text.toString();
+  }
+}
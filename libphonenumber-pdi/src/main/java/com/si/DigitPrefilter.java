@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single pass digit scan used to skip the number matcher on text that
+ * cannot contain a phone number.
+ *
+ * A run is a sequence of digits separated by at most MAX_GAP non-letter
+ * characters, which is the most punctuation the matcher allows between
+ * digit blocks. Letters other than x end a run.
+ */
+public class DigitPrefilter {
+  public static final int MAX_GAP = 4;
+
+  private static final Map<String, Integer> MIN_RUNS = new ConcurrentHashMap<String, Integer>();
+
+  private final int minDigits;
+  private final int minRun;
+
+  public DigitPrefilter(int minDigits, int minRun) {
+    this.minDigits = minDigits;
+    this.minRun = minRun;
+  }
+
+  /**
+   * Create a filter for a region.
+   *
+   * @param util              The phone number util
+   * @param region            The default region
+   * @param minDigits         The minimum number of digits in the whole text
+   * @param includeLocalOnly  Whether local-only lengths can match
+   * @return                  The filter
+   */
+  public static DigitPrefilter forRegion(PhoneNumberUtil util, String region, int minDigits, boolean includeLocalOnly) {
+    return new DigitPrefilter(minDigits, minRunForRegion(util, region, includeLocalOnly));
+  }
+
+  /**
+   * Get the shortest digit run that can hold a number when parsing with the
+   * region as default. This is the smaller of the region's shortest length
+   * and the shortest length of any country including its calling code.
+   *
+   * @param util              The phone number util
+   * @param region            The default region
+   * @param includeLocalOnly  Whether local-only lengths can match
+   * @return                  The minimum run length
+   */
+  public static int minRunForRegion(PhoneNumberUtil util, String region, boolean includeLocalOnly) {
+    String key = region + (includeLocalOnly ? "/L" : "/V");
+    Integer minRun = MIN_RUNS.get(key);
+    if (minRun == null) {
+      int globalMin = Integer.MAX_VALUE;
+      for (int cc : util.getSupportedCallingCodes()) {
+        globalMin = Math.min(globalMin, minLength(util, cc, includeLocalOnly) + digitCount(cc));
+      }
+      int cc = util.getCountryCodeForRegion(region);
+      int regionMin = cc == 0 ? globalMin : minLength(util, cc, includeLocalOnly);
+      minRun = Math.min(regionMin, globalMin);
+      MIN_RUNS.put(key, minRun);
+    }
+    return minRun;
+  }
+
+  /**
+   * Probe the shortest national number length the metadata accepts for a
+   * calling code. Only the length tables are consulted, not the patterns.
+   */
+  private static int minLength(PhoneNumberUtil util, int cc, boolean includeLocalOnly) {
+    Phonenumber.PhoneNumber probe = new Phonenumber.PhoneNumber().setCountryCode(cc);
+    long national = 0;
+    for (int length = 1; length <= 17; length++) {
+      national = national * 10 + 2;
+      PhoneNumberUtil.ValidationResult result = util.isPossibleNumberWithReason(probe.setNationalNumber(national));
+      if (result == PhoneNumberUtil.ValidationResult.IS_POSSIBLE
+          || (includeLocalOnly && result == PhoneNumberUtil.ValidationResult.IS_POSSIBLE_LOCAL_ONLY)) {
+        return length;
+      }
+    }
+    return 1;
+  }
+
+  private static int digitCount(int v) {
+    int n = 1;
+    while (v >= 10) {
+      v /= 10;
+      n += 1;
+    }
+    return n;
+  }
+
+  public int getMinDigits() {
+    return minDigits;
+  }
+
+  public int getMinRun() {
+    return minRun;
+  }
+
+  /**
+   * Scan the text once.
+   *
+   * @param text        The text to scan
+   * @return            False if the text cannot contain a number
+   */
+  public boolean mayContainNumber(CharSequence text) {
+    int digits = 0;
+    int run = 0;
+    int longest = 0;
+    int gap = 0;
+    int length = text.length();
+    int i = 0;
+    while (i < length) {
+      int c = Character.codePointAt(text, i);
+      i += Character.charCount(c);
+      if (Character.isDigit(c)) {
+        digits += 1;
+        run += 1;
+        gap = 0;
+        longest = Math.max(longest, run);
+        if (digits >= minDigits && longest >= minRun) {
+          return true;
+        }
+      } else if (Character.isLetter(c) && c != 'x' && c != 'X') {
+        run = 0;
+        gap = 0;
+      } else if (run > 0) {
+        gap += 1;
+        if (gap > MAX_GAP) {
+          run = 0;
+          gap = 0;
+        }
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counters for the extraction hot path.
+ *
+ * Only one thread writes to an instance. Worker threads fill their own
+ * instance per batch and the step thread adds it to the step's total, so
+ * no counter needs to be atomic. JMX reads the fields without locking and
+ * may see values that lag by a few rows.
+ *
+ * Invalid numbers are counted when the text is actually parsed, so rows
+ * answered by the parse cache add to the valid count only.
+ */
+public class ExtractionMetrics implements ExtractionMetricsMBean {
+  /** Bucket i holds latencies in [2^i, 2^(i+1)) nanoseconds. */
+  static final int LATENCY_BUCKETS = 40;
+  /** The last bucket of the numbers per row histogram counts this many or more. */
+  static final int MAX_NUMBERS_BUCKET = 4;
+
+  private static final NumberParseException.ErrorType[] ERROR_TYPES = NumberParseException.ErrorType.values();
+
+  private final boolean checkValid;
+  private long rowsIn;
+  private long rowsOut;
+  private long numbersFound;
+  private long invalidNumbers;
+  private long parseFailures;
+  private long overBudgetRows;
+  private final long[] failures = new long[ERROR_TYPES.length];
+  private final long[] numbersPerRow = new long[MAX_NUMBERS_BUCKET + 1];
+  private final long[] latency = new long[LATENCY_BUCKETS];
+  private long latencyCount;
+  private long latencyTotal;
+
+  private ObjectName registeredName;
+
+  /**
+   * @param checkValid      Whether the numbers found have passed the validity check
+   */
+  public ExtractionMetrics(boolean checkValid) {
+    this.checkValid = checkValid;
+  }
+
+  /**
+   * Record one extracted row.
+   *
+   * @param numbers     The numbers found
+   * @param invalid     The numbers dropped as invalid
+   * @param nanos       The time taken
+   */
+  public void recordRow(int numbers, int invalid, long nanos) {
+    numbersFound += numbers;
+    invalidNumbers += invalid;
+    numbersPerRow[Math.min(numbers, MAX_NUMBERS_BUCKET)] += 1;
+    int bucket = nanos <= 1 ? 0 : Math.min(63 - Long.numberOfLeadingZeros(nanos), LATENCY_BUCKETS - 1);
+    latency[bucket] += 1;
+    latencyCount += 1;
+    latencyTotal += nanos;
+  }
+
+  public void recordRowIn() {
+    rowsIn += 1;
+  }
+
+  public void recordRowsOut(int rows) {
+    rowsOut += rows;
+  }
+
+  public void recordFailure(NumberParseException.ErrorType type) {
+    parseFailures += 1;
+    failures[type.ordinal()] += 1;
+  }
+
+  public void recordOverBudget() {
+    overBudgetRows += 1;
+  }
+
+  /**
+   * Add the counts recorded by a worker.
+   *
+   * @param other       The worker's metrics
+   */
+  public void add(ExtractionMetrics other) {
+    rowsIn += other.rowsIn;
+    rowsOut += other.rowsOut;
+    numbersFound += other.numbersFound;
+    invalidNumbers += other.invalidNumbers;
+    parseFailures += other.parseFailures;
+    overBudgetRows += other.overBudgetRows;
+    for (int i = 0; i < failures.length; i++) {
+      failures[i] += other.failures[i];
+    }
+    for (int i = 0; i < numbersPerRow.length; i++) {
+      numbersPerRow[i] += other.numbersPerRow[i];
+    }
+    for (int i = 0; i < latency.length; i++) {
+      latency[i] += other.latency[i];
+    }
+    latencyCount += other.latencyCount;
+    latencyTotal += other.latencyTotal;
+  }
+
+  public long getRowsIn() {
+    return rowsIn;
+  }
+
+  public long getRowsOut() {
+    return rowsOut;
+  }
+
+  public long getNumbersFound() {
+    return numbersFound;
+  }
+
+  public long getValidNumbers() {
+    return checkValid ? numbersFound : 0;
+  }
+
+  public long getInvalidNumbers() {
+    return invalidNumbers;
+  }
+
+  public long getParseFailures() {
+    return parseFailures;
+  }
+
+  public long getOverBudgetRows() {
+    return overBudgetRows;
+  }
+
+  public long getFailures(NumberParseException.ErrorType type) {
+    return failures[type.ordinal()];
+  }
+
+  public String getFailuresByType() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < failures.length; i++) {
+      if (failures[i] > 0) {
+        if (sb.length() > 0) {
+          sb.append(", ");
+        }
+        sb.append(ERROR_TYPES[i].name()).append('=').append(failures[i]);
+      }
+    }
+    return sb.toString();
+  }
+
+  public String getNumbersPerRow() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < numbersPerRow.length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(i).append(i == MAX_NUMBERS_BUCKET ? "+=" : "=").append(numbersPerRow[i]);
+    }
+    return sb.toString();
+  }
+
+  public long getMeanLatencyNanos() {
+    return latencyCount == 0 ? 0 : latencyTotal / latencyCount;
+  }
+
+  public long getLatencyP50Nanos() {
+    return latencyPercentile(0.5);
+  }
+
+  public long getLatencyP99Nanos() {
+    return latencyPercentile(0.99);
+  }
+
+  /**
+   * Get a latency percentile from the histogram.
+   *
+   * @param fraction    The percentile as a fraction, e.g. 0.99
+   * @return            The upper bound of the bucket holding it in nanoseconds
+   */
+  public long latencyPercentile(double fraction) {
+    if (latencyCount == 0) {
+      return 0;
+    }
+    long target = (long) Math.ceil(latencyCount * fraction);
+    long seen = 0;
+    for (int i = 0; i < latency.length; i++) {
+      seen += latency[i];
+      if (seen >= target) {
+        return (1L << (i + 1)) - 1;
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Get a one line summary for the step log.
+   *
+   * @return        The summary
+   */
+  public String summary() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("rows in: ").append(rowsIn)
+      .append(", rows out: ").append(rowsOut)
+      .append(", numbers: ").append(numbersFound)
+      .append(" (per row ").append(getNumbersPerRow()).append(')');
+    if (checkValid) {
+      sb.append(", valid: ").append(numbersFound).append(", invalid: ").append(invalidNumbers);
+    }
+    sb.append(", failures: ").append(parseFailures);
+    if (parseFailures > 0) {
+      sb.append(" (").append(getFailuresByType()).append(')');
+    }
+    if (overBudgetRows > 0) {
+      sb.append(", over budget: ").append(overBudgetRows);
+    }
+    sb.append(", latency mean/p50/p99 ns: ").append(getMeanLatencyNanos())
+      .append('/').append(getLatencyP50Nanos())
+      .append('/').append(getLatencyP99Nanos());
+    return sb.toString();
+  }
+
+  /**
+   * Register with the platform MBean server.
+   *
+   * @param stepName    The step name
+   * @param copy        The step copy
+   * @throws JMException    If the bean cannot be registered
+   */
+  public void register(String stepName, int copy) throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("com.si:type=PhoneNumberExtraction,step="
+      + ObjectName.quote(stepName) + ",copy=" + copy);
+    if (server.isRegistered(name)) {
+      server.unregisterMBean(name);
+    }
+    server.registerMBean(this, name);
+    registeredName = name;
+  }
+
+  /**
+   * Remove the bean from the platform MBean server if it was registered.
+   */
+  public void unregister() {
+    if (registeredName == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+    } catch (JMException e) {
+      // already gone
+    }
+    registeredName = null;
+  }
+}
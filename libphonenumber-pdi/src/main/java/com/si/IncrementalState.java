@@ -0,0 +1,535 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The results of the last run per row key, so rows whose key and text
+ * are unchanged skip extraction.
+ *
+ * Each generation of the state holds one record per row in the order the
+ * rows came: a hash of the row key, a hash of the text and region, and up
+ * to MAX_NUMBERS packed numbers. A hash index over the key hashes follows.
+ * Lookups first try the record after the last one found, so a table read
+ * in the same order as last time is read from the file sequentially.
+ * The cursor is only a hint and is shared without locking.
+ *
+ * The state file itself is a small manifest naming the current generation,
+ * which lives next to it with the generation number appended. Every row
+ * of this run is written to the next generation, and when the run ends
+ * without errors the manifest is replaced to point at it. Generation files
+ * are never renamed or replaced while mapped, which Windows does not allow;
+ * the old generation is deleted right away where possible, and otherwise
+ * by the next run once its mapping is gone. Rows that failed to
+ * parse, went over the budget, or have a number with an extension or too
+ * long to pack are not kept and are extracted again next time. Neither
+ * are rows with more than MAX_NUMBERS numbers: records have a fixed size
+ * so they can be found by their row number, and texts with many numbers
+ * are extracted again on every run. The header stamps the
+ * libphonenumber version and the step options, as for the persistent
+ * parse cache; a generation with other stamps is ignored.
+ *
+ * One state is shared by all copies of a step and is written when the
+ * last copy releases it.
+ */
+public class IncrementalState {
+  static final long MAGIC = 0x504E494E43525354L;
+  static final int VERSION = 1;
+  static final int MAX_NUMBERS = 2;
+  static final int HEADER_SIZE = 64;
+  private static final int RECORD_LONGS = 2 + MAX_NUMBERS;
+  private static final int MIN_INDEX = 1 << 10;
+
+  /** Lookup outcomes. */
+  static final int NEW = -1;
+  static final int CHANGED = -2;
+
+  /** Header fields, by long index. */
+  private static final int H_MAGIC = 0;
+  private static final int H_VERSION = 1;
+  private static final int H_METADATA = 2;
+  private static final int H_OPTIONS = 3;
+  private static final int H_RECORDS = 4;
+  private static final int H_INDEX = 5;
+
+  private static final Map<Object, IncrementalState> SHARED = new IdentityHashMap<Object, IncrementalState>();
+
+  private final File file;
+  private final File current;
+  private final File next;
+  private final long generation;
+  private final long metadataStamp;
+  private final long optionsStamp;
+
+  private final MappedLongs previous;
+  private final MappedLongs previousIndex;
+  private final long previousRecords;
+  private int cursor;
+
+  private final DataOutputStream out;
+  private long written;
+  private IOException writeFailure;
+  private long reused;
+  private long changed;
+  private long added;
+  private boolean failed;
+  private int references;
+
+  /**
+   * Open the state of the last run, if it is usable, and start the new one.
+   *
+   * @param file            The state file, holding the manifest
+   * @param metadataStamp   The stamp of the libphonenumber version
+   * @param optionsStamp    The stamp of the options that change results
+   * @throws IOException    If the new state cannot be written
+   */
+  public IncrementalState(File file, long metadataStamp, long optionsStamp) throws IOException {
+    this.file = file;
+    this.metadataStamp = metadataStamp;
+    this.optionsStamp = optionsStamp;
+    long last = readManifest(file);
+    this.current = last > 0 ? generationFile(file, last) : null;
+    this.generation = last + 1;
+    this.next = generationFile(file, generation);
+    deleteGenerations(file, last);
+
+    MappedLongs records = null;
+    MappedLongs index = null;
+    long count = 0;
+    if (current != null && current.isFile() && current.length() >= HEADER_SIZE) {
+      RandomAccessFile raf = new RandomAccessFile(current, "r");
+      try {
+        FileChannel channel = raf.getChannel();
+        LongBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).asLongBuffer();
+        long n = header.get(H_RECORDS);
+        long capacity = header.get(H_INDEX);
+        if (header.get(H_MAGIC) == MAGIC && header.get(H_VERSION) == VERSION
+            && header.get(H_METADATA) == metadataStamp && header.get(H_OPTIONS) == optionsStamp
+            && n >= 0 && n < Integer.MAX_VALUE && Long.bitCount(capacity) == 1
+            && channel.size() == HEADER_SIZE + (n * RECORD_LONGS + capacity) * 8) {
+          records = new MappedLongs(channel, FileChannel.MapMode.READ_ONLY, HEADER_SIZE, n * RECORD_LONGS);
+          index = new MappedLongs(channel, FileChannel.MapMode.READ_ONLY, HEADER_SIZE + n * RECORD_LONGS * 8,
+              capacity);
+          count = n;
+        }
+      } finally {
+        // the mappings stay valid once the file is closed
+        raf.close();
+      }
+    }
+    this.previous = records;
+    this.previousIndex = index;
+    this.previousRecords = count;
+
+    this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(next), 1 << 16));
+    out.write(new byte[HEADER_SIZE]);
+  }
+
+  private static File generationFile(File file, long generation) {
+    return new File(file.getPath() + "." + generation);
+  }
+
+  /**
+   * @return        The generation named by the manifest, 0 if there is none
+   */
+  private static long readManifest(File file) throws IOException {
+    if (!file.isFile() || file.length() != 16) {
+      return 0;
+    }
+    DataInputStream in = new DataInputStream(new FileInputStream(file));
+    try {
+      long generation = in.readLong() == MAGIC ? in.readLong() : 0;
+      return generation > 0 && generation < Long.MAX_VALUE ? generation : 0;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Delete the generation files other than the given one, as far as they
+   * are not mapped any more.
+   */
+  private static void deleteGenerations(File file, long keep) {
+    File dir = file.getAbsoluteFile().getParentFile();
+    String prefix = file.getName() + ".";
+    String[] names = dir == null ? null : dir.list();
+    if (names == null) {
+      return;
+    }
+    for (String name : names) {
+      if (name.length() > prefix.length() && name.startsWith(prefix)
+          && !name.equals(prefix + keep) && isDigits(name, prefix.length())) {
+        new File(dir, name).delete();
+      }
+    }
+  }
+
+  private static boolean isDigits(String s, int from) {
+    for (int i = from; i < s.length(); i++) {
+      if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Get the state shared by every copy of a step, opening it on first use.
+   *
+   * @param owner           The object shared by the copies (the step meta)
+   * @param file            The state file, holding the manifest
+   * @param optionsStamp    The stamp of the options that change results
+   * @return                The shared state
+   * @throws IOException    If the new state cannot be written
+   */
+  public static IncrementalState acquire(Object owner, File file, long optionsStamp) throws IOException {
+    synchronized (SHARED) {
+      IncrementalState shared = SHARED.get(owner);
+      if (shared == null) {
+        shared = new IncrementalState(file, PersistentParseCache.metadataStamp(), optionsStamp);
+        SHARED.put(owner, shared);
+      }
+      shared.references += 1;
+      return shared;
+    }
+  }
+
+  /**
+   * Release a shared state. Once the last copy lets go, the new state
+   * replaces the old one if no copy failed, and is discarded otherwise.
+   *
+   * @param owner       The object passed to acquire
+   * @param success     Whether this copy read and handled all of its rows
+   * @return            The released state if this was the last reference, else null
+   * @throws IOException  If the new state could not be written
+   */
+  public static IncrementalState release(Object owner, boolean success) throws IOException {
+    IncrementalState shared;
+    synchronized (SHARED) {
+      shared = SHARED.get(owner);
+      if (shared == null) {
+        return null;
+      }
+      shared.failed |= !success;
+      shared.references -= 1;
+      if (shared.references > 0) {
+        return null;
+      }
+      SHARED.remove(owner);
+    }
+    if (shared.failed || shared.writeFailure != null) {
+      shared.discard();
+      if (shared.writeFailure != null) {
+        throw shared.writeFailure;
+      }
+    } else {
+      shared.commit();
+    }
+    return shared;
+  }
+
+  /**
+   * Extract the numbers of a row, reusing the last run's result when the
+   * key and text are unchanged, and keep the result for the next run.
+   *
+   * @param extractor   The extractor
+   * @param key         The row key value, null to always extract
+   * @param value       The field value
+   * @param region      The resolved region, null to skip the value
+   * @param buffer      The calling thread's buffer
+   * @return            The number of numbers found
+   */
+  public int extract(PhoneNumberExtractor extractor, Object key, Object value, PhoneNumberExtractor.Region region,
+                     PhoneNumberExtractor.Buffer buffer) {
+    if (key == null) {
+      return extractor.extractValue(value, region, buffer);
+    }
+    long keyHash = PersistentParseCache.hash(key instanceof byte[] ? new String((byte[]) key, StandardCharsets.ISO_8859_1)
+        : key.toString());
+    long textHash = textHash(value, region);
+    long[] keys = buffer.incrementalKeys;
+    int found = lookup(keyHash, textHash, keys);
+    if (found >= 0) {
+      extractor.restore(keys, found, buffer);
+    } else {
+      extractor.extractValue(value, region, buffer);
+    }
+    boolean keep = buffer.error == null && !buffer.overBudget && buffer.count <= MAX_NUMBERS;
+    for (int i = 0; keep && i < buffer.count; i++) {
+      keys[i] = PackedNumber.pack(buffer.numbers[i]);
+      keep = keys[i] != PackedNumber.NOT_PACKABLE && !buffer.numbers[i].hasExtension();
+    }
+    record(found, keyHash, textHash, keys, keep ? buffer.count : -1);
+    return buffer.count;
+  }
+
+  private static long textHash(Object value, PhoneNumberExtractor.Region region) {
+    long h = 0xcbf29ce484222325L;
+    // tell null, text and bytes apart
+    h = (h ^ (value == null ? 0 : value instanceof byte[] ? 1 : 2)) * 0x100000001b3L;
+    if (value instanceof byte[]) {
+      for (byte b : (byte[]) value) {
+        h = (h ^ (b & 0xff)) * 0x100000001b3L;
+      }
+    } else if (value != null) {
+      String s = value.toString();
+      for (int i = 0; i < s.length(); i++) {
+        h = (h ^ s.charAt(i)) * 0x100000001b3L;
+      }
+    }
+    h = (h ^ 0x1f) * 0x100000001b3L;
+    String code = region == null ? "" : region.getCode();
+    for (int i = 0; i < code.length(); i++) {
+      h = (h ^ code.charAt(i)) * 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * Find a row of the last run.
+   *
+   * @return        The number of numbers, NEW or CHANGED
+   */
+  int lookup(long keyHash, long textHash, long[] keys) {
+    if (previous == null) {
+      return NEW;
+    }
+    long record = -1;
+    int hint = cursor;
+    if (hint < previousRecords && previous.get((long) hint * RECORD_LONGS) == keyHash) {
+      record = hint;
+    } else {
+      long mask = previousIndex.size() - 1;
+      for (long slot = LongHashSet.mix(keyHash) & mask; ; slot = (slot + 1) & mask) {
+        long entry = previousIndex.get(slot);
+        if (entry == 0) {
+          break;
+        }
+        if ((int) (entry >>> 32) == (int) (keyHash >>> 32)) {
+          long candidate = (entry & 0xffffffffL) - 1;
+          if (previous.get(candidate * RECORD_LONGS) == keyHash) {
+            record = candidate;
+            break;
+          }
+        }
+      }
+    }
+    if (record < 0) {
+      return NEW;
+    }
+    cursor = (int) record + 1;
+    long base = record * RECORD_LONGS;
+    if (previous.get(base + 1) != textHash) {
+      return CHANGED;
+    }
+    int count = 0;
+    for (int n = 0; n < MAX_NUMBERS; n++) {
+      long key = previous.get(base + 2 + n);
+      if (key != 0) {
+        keys[count++] = key;
+      }
+    }
+    return count;
+  }
+
+  private synchronized void record(int found, long keyHash, long textHash, long[] keys, int count) {
+    if (found >= 0) {
+      reused += 1;
+    } else if (found == CHANGED) {
+      changed += 1;
+    } else {
+      added += 1;
+    }
+    if (count < 0 || writeFailure != null || written >= Integer.MAX_VALUE - 1) {
+      return;
+    }
+    try {
+      out.writeLong(keyHash);
+      out.writeLong(textHash);
+      for (int n = 0; n < MAX_NUMBERS; n++) {
+        out.writeLong(n < count ? keys[n] : 0);
+      }
+      written += 1;
+    } catch (IOException e) {
+      writeFailure = e;
+    }
+  }
+
+  /**
+   * Add the header and index to the new generation and point the manifest
+   * at it.
+   */
+  private void commit() throws IOException {
+    out.close();
+    long capacity = Math.max(MIN_INDEX, Long.highestOneBit(Math.max(1, written + written / 2)) << 1);
+    RandomAccessFile raf = new RandomAccessFile(next, "rw");
+    try {
+      raf.setLength(HEADER_SIZE + (written * RECORD_LONGS + capacity) * 8);
+      FileChannel channel = raf.getChannel();
+      MappedLongs records = new MappedLongs(channel, FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+          written * RECORD_LONGS);
+      MappedLongs index = new MappedLongs(channel, FileChannel.MapMode.READ_WRITE,
+          HEADER_SIZE + written * RECORD_LONGS * 8, capacity);
+      long mask = capacity - 1;
+      for (long r = 0; r < written; r++) {
+        long keyHash = records.get(r * RECORD_LONGS);
+        for (long slot = LongHashSet.mix(keyHash) & mask; ; slot = (slot + 1) & mask) {
+          long entry = index.get(slot);
+          if (entry == 0) {
+            index.put(slot, (keyHash >>> 32) << 32 | (r + 1));
+            break;
+          }
+          if ((int) (entry >>> 32) == (int) (keyHash >>> 32)
+              && records.get(((entry & 0xffffffffL) - 1) * RECORD_LONGS) == keyHash) {
+            // a repeated key keeps its first row
+            break;
+          }
+        }
+      }
+      index.force();
+      raf.seek(0);
+      raf.writeLong(MAGIC);
+      raf.writeLong(VERSION);
+      raf.writeLong(metadataStamp);
+      raf.writeLong(optionsStamp);
+      raf.writeLong(written);
+      raf.writeLong(capacity);
+      raf.getFD().sync();
+    } finally {
+      raf.close();
+    }
+    File manifest = new File(file.getPath() + ".tmp");
+    FileOutputStream stream = new FileOutputStream(manifest);
+    try {
+      DataOutputStream data = new DataOutputStream(stream);
+      data.writeLong(MAGIC);
+      data.writeLong(generation);
+      data.flush();
+      stream.getFD().sync();
+    } finally {
+      stream.close();
+    }
+    try {
+      Files.move(manifest.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(manifest.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    if (current != null) {
+      // fails on Windows while the old generation is still mapped
+      current.delete();
+    }
+  }
+
+  private void discard() {
+    try {
+      out.close();
+    } catch (IOException e) {
+      // the file is deleted anyway
+    }
+    next.delete();
+  }
+
+  /** @return     Whether the last run's state was usable */
+  public boolean hasPrevious() {
+    return previous != null;
+  }
+
+  /** @return     The rows whose result was reused */
+  public synchronized long reused() {
+    return reused;
+  }
+
+  /** @return     The rows whose text changed since the last run */
+  public synchronized long changed() {
+    return changed;
+  }
+
+  /** @return     The rows not in the last run */
+  public synchronized long added() {
+    return added;
+  }
+
+  /** @return     The rows kept for the next run */
+  public synchronized long written() {
+    return written;
+  }
+
+  /**
+   * A run of longs in a file, mapped in segments so it can pass 2 GB.
+   */
+  private static final class MappedLongs {
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final MappedByteBuffer[] bytes;
+    private final LongBuffer[] segments;
+    private final long size;
+
+    MappedLongs(FileChannel channel, FileChannel.MapMode mode, long offset, long size) throws IOException {
+      int count = (int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+      this.bytes = new MappedByteBuffer[count];
+      this.segments = new LongBuffer[count];
+      this.size = size;
+      for (int s = 0; s < count; s++) {
+        long first = (long) s << SEGMENT_SHIFT;
+        bytes[s] = channel.map(mode, offset + first * 8, Math.min(size - first, 1L << SEGMENT_SHIFT) * 8);
+        segments[s] = bytes[s].asLongBuffer();
+      }
+    }
+
+    long size() {
+      return size;
+    }
+
+    long get(long i) {
+      return segments[(int) (i >>> SEGMENT_SHIFT)].get((int) (i & SEGMENT_MASK));
+    }
+
+    void put(long i, long value) {
+      segments[(int) (i >>> SEGMENT_SHIFT)].put((int) (i & SEGMENT_MASK), value);
+    }
+
+    void force() {
+      for (MappedByteBuffer segment : bytes) {
+        segment.force();
+      }
+    }
+  }
+}
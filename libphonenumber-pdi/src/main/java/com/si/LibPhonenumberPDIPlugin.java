@@ -18,12 +18,14 @@
  */
 package com.si;
 
+import com.google.common.cache.CacheStats;
 import com.google.i18n.phonenumbers.NumberParseException;
-import com.google.i18n.phonenumbers.PhoneNumberMatch;
 import com.google.i18n.phonenumbers.PhoneNumberUtil;
 import com.google.i18n.phonenumbers.Phonenumber;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaFactory;
@@ -32,8 +34,14 @@ import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.*;
 
+import javax.management.JMException;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Describe your step plugin.
@@ -44,6 +52,9 @@ public class LibPhonenumberPDIPlugin extends BaseStep implements StepInterface {
   private LibPhonenumberPDIPluginData data;
 
 
+  private static final int LOG_FIRST_FAILURES = 10;
+  private static final int LOG_FAILURE_EVERY = 10000;
+
   private static Class<?> PKG = LibPhonenumberPDIPluginMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
   
   public LibPhonenumberPDIPlugin( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
@@ -62,118 +73,561 @@ public class LibPhonenumberPDIPlugin extends BaseStep implements StepInterface {
   public boolean init( StepMetaInterface stepMetaInterface, StepDataInterface stepDataInterface ) {
     this.data = (LibPhonenumberPDIPluginData) stepDataInterface;
     this.meta = (LibPhonenumberPDIPluginMeta) stepMetaInterface;
+    if(meta.getCacheSize() > 0){
+      data.cache = PhoneNumberCache.acquire(meta, meta.getCacheSize());
+    }
+    if(!Const.isEmpty(meta.getPersistentCacheFile())){
+      openPersistentCache();
+    }
+    if(!Const.isEmpty(meta.getIncrementalStateFile()) && !Const.isEmpty(meta.getIncrementalKeyField())){
+      String file = environmentSubstitute(meta.getIncrementalStateFile());
+      try{
+        data.incremental = IncrementalState.acquire(meta, new File(file), PersistentParseCache.hash(optionsStamp()
+          + ";inField=" + meta.getInField() + ";keyField=" + meta.getIncrementalKeyField()
+          + ";findMatches=" + meta.isFindMatches()));
+        if(isBasic()){
+          logBasic((data.incremental.hasPrevious() ? "Reusing unchanged rows from" : "No usable earlier run in")
+            + " the incremental state " + file);
+        }
+      }catch(IOException e){
+        logError("Unable to start the incremental state " + file, e);
+        return false;
+      }
+    }
+    if(meta.isDedupe()){
+      data.dedupe = NumberDedupe.acquire(meta, meta.getDedupeMemoryMb() * 1024L * 1024L);
+    }
+    if(meta.isAggregate()){
+      data.counts = NumberCounts.acquire(meta);
+    }
+    if(meta.isWarmUp()){
+      warmUpMetadata();
+    }
+    if(meta.isMetricsEnabled()){
+      data.metrics = new ExtractionMetrics(meta.isCheckValid());
+      if(meta.isMetricsJmx()){
+        try{
+          data.metrics.register(getStepname(), getCopy());
+        }catch(JMException e){
+          logError("Unable to publish phone number metrics over JMX", e);
+        }
+      }
+    }
     return super.init( stepMetaInterface, stepDataInterface );
   }
 
   /**
-   * Check of a nubmer is valid
-   * @param protoNumbers        A list of proto numbers
-   * @return                    Valid numbers if any
+   * Open the persistent parse cache shared by the step copies. Without it
+   * the step still runs, it just parses every text.
    */
-  private List<Phonenumber.PhoneNumber> filterValid(List<Phonenumber.PhoneNumber> protoNumbers) {
-    ArrayList<Phonenumber.PhoneNumber> validNumbers = new ArrayList<Phonenumber.PhoneNumber>();
-    for(Phonenumber.PhoneNumber number : protoNumbers){
-      if(PhoneNumberUtil.getInstance().isValidNumber(number)){
-        validNumbers.add(number);
+  private void openPersistentCache(){
+    String file = environmentSubstitute(meta.getPersistentCacheFile());
+    long entries = meta.getPersistentCacheEntries() > 0 ? meta.getPersistentCacheEntries()
+      : LibPhonenumberPDIPluginMeta.DEFAULT_PERSISTENT_CACHE_ENTRIES;
+    try{
+      data.persistentCache = PersistentParseCache.acquire(meta, new File(file), entries,
+        PersistentParseCache.hash(optionsStamp()));
+      if(isBasic()){
+        logBasic((data.persistentCache.isReused() ? "Reusing " + data.persistentCache.size() + " results from"
+          : "Starting") + " the persistent parse cache " + file);
       }
+    }catch(IOException e){
+      logError("Unable to open the persistent parse cache " + file + ", parsing every text", e);
     }
-    return validNumbers;
   }
 
   /**
-   * Find phone numbers in the text.
+   * Describe the options that change what is extracted from a text, to
+   * stamp the files kept between runs. The region is part of every key,
+   * and so is the find or parse mode in the persistent cache; the
+   * incremental state adds the mode to its own stamp.
    *
-   * @param sentence        The text containing numbers
-   * @return                A list of proto numbers
+   * @return      The options
+   */
+  private String optionsStamp(){
+    return "checkValid=" + meta.isCheckValid() + ";leniency=" + meta.getLeniency() + ";maxTries=" + meta.getMaxTries()
+      + ";prefilterMinDigits=" + meta.getPrefilterMinDigits();
+  }
+
+  /**
+   * Load the metadata for the listed regions, or the configured region if
+   * none are listed, before the first row arrives.
    */
-  private List<Phonenumber.PhoneNumber> findNumbers(String sentence){
-    Iterable<PhoneNumberMatch> numbers = PhoneNumberUtil.getInstance().findNumbers(sentence, meta.getRegion());
-    ArrayList<Phonenumber.PhoneNumber> protoNumbers = new ArrayList<Phonenumber.PhoneNumber>();
-    for(PhoneNumberMatch protoMatch : numbers){
-      Phonenumber.PhoneNumber number = protoMatch.number();
-      protoNumbers.add(number);
+  private void warmUpMetadata(){
+    PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+    List<String> regions = MetadataWarmUp.parseRegions(util,
+      Const.isEmpty(meta.getWarmUpRegions()) ? meta.getRegion() : meta.getWarmUpRegions());
+    long start = System.nanoTime();
+    int warmed = MetadataWarmUp.warmUp(util, regions);
+    if(isBasic()){
+      logBasic("Warmed up phone number metadata for " + warmed + " of " + regions.size() + " regions in "
+        + (System.nanoTime() - start) / 1000000L + " ms");
     }
-    return protoNumbers;
   }
 
   /**
-   * Package an existing row
+   * Stop the workers, release the shared cache and report its hit rate,
+   * the parse failures and the pre-filter counts.
    *
-   * @param r         The row object
-   * @return          An updated set of rows
+   * @param smi   The step meta
+   * @param sdi   The step data
    */
-  private ArrayList<Object[]> packageRows(List<Phonenumber.PhoneNumber> protoNumbers, Object[] r){
-    ArrayList<Object[]> orows = new ArrayList<Object[]>();
-    Object[] rClone = r.clone();
-    if(data.outputRowMeta.size() > r.length){
-      rClone = RowDataUtil.resizeArray(rClone, data.outputRowMeta.size());
-    }
-
-    int idx = data.outputRowMeta.indexOfValue(meta.getOutField());
-    if(idx >= 0){
-      for(Phonenumber.PhoneNumber number : protoNumbers){
-        Object[] numRow = rClone.clone();
-        Long phn = number.getNationalNumber();
-        numRow[idx] = phn;
-        if(meta.getCountryCodeField() != null && meta.getCountryCodeField().trim().length() > 0){
-          Integer ccode = number.getCountryCode();
-          int ccIdx = data.outputRowMeta.indexOfValue(meta.getCountryCodeField());
-          numRow[ccIdx] = ccode.longValue();
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    if(data != null && data.parallel != null){
+      data.parallel.shutdown();
+      data.parallel = null;
+    }
+    if(data != null && data.cache != null){
+      CacheStats stats = data.cache.stats();
+      if(PhoneNumberCache.release(meta) && isBasic()){
+        logBasic("Parse cache hits: " + stats.hitCount() + ", misses: " + stats.missCount()
+          + ", evictions: " + stats.evictionCount());
+      }
+      data.cache = null;
+    }
+    if(data != null && data.persistentCache != null){
+      PersistentParseCache persistentCache = data.persistentCache;
+      if(PersistentParseCache.release(meta) && isBasic()){
+        logBasic("Persistent cache hits: " + persistentCache.hits() + ", misses: " + persistentCache.misses()
+          + ", results stored: " + persistentCache.size());
+      }
+      data.persistentCache = null;
+    }
+    if(data != null && data.incremental != null){
+      IncrementalState incremental = data.incremental;
+      try{
+        if(IncrementalState.release(meta, getErrors() == 0 && !isStopped()) != null && isBasic()){
+          logBasic("Incremental rows reused: " + incremental.reused() + ", changed: " + incremental.changed()
+            + ", new: " + incremental.added() + ", kept for the next run: " + incremental.written());
         }
-        orows.add(numRow);
+      }catch(IOException e){
+        logError("Unable to write the incremental state, the previous state is kept", e);
       }
-    }else{
+      data.incremental = null;
+    }
+    if(data != null && data.dedupe != null){
+      NumberDedupe dedupe = data.dedupe;
+      if(NumberDedupe.release(meta) && isBasic()){
+        logBasic("Distinct numbers: " + dedupe.distinct() + ", duplicates dropped: " + dedupe.duplicates()
+          + (dedupe.isBloomActive() ? ", Bloom filter false positive rate ~" + dedupe.bloomFalsePositiveRate() : ""));
+      }
+      data.dedupe = null;
+    }
+    if(data != null && data.counts != null){
+      NumberCounts.release(meta);
+      data.counts = null;
+    }
+    if(data != null && data.metrics != null){
       if(isBasic()){
-        logBasic("Output Field Not Specified for PhoneNumberParser");
+        logBasic("Metrics: " + data.metrics.summary());
       }
+      data.metrics.unregister();
+    }
+    if(data != null && data.parseFailures > 0 && isBasic()){
+      logBasic("Rows that failed to parse: " + data.parseFailures);
+    }
+    if(data != null && data.enricher != null && isBasic()){
+      logBasic("Enrichment lookups: " + data.enricher.lookups() + ", cache hits: " + data.enricher.hits()
+        + ", types from leading digits: " + data.enricher.typesDecided());
+    }
+    if(data != null && data.reference != null && isBasic()){
+      logBasic("Reference index matches: " + data.referenceMatches + " of " + data.referenceChecked + " numbers");
+    }
+    if(data != null && data.additionalFailures > 0 && isBasic()){
+      logBasic("Additional field values that failed to parse: " + data.additionalFailures);
+    }
+    if(data != null && data.columnOverflow > 0 && isBasic()){
+      logBasic("Numbers dropped for want of indexed columns: " + data.columnOverflow);
     }
-    return orows;
+    if(data != null && data.overBudgetRows > 0 && isBasic()){
+      logBasic("Rows over the processing budget: " + data.overBudgetRows);
+    }
+    if(data != null && data.extractor != null && meta.isFindMatches() && meta.getPrefilterMinDigits() > 0 && isBasic()){
+      logBasic("Rows skipped by digit pre-filter: " + data.prefilterSkipped);
+    }
+    super.dispose( smi, sdi );
   }
 
   /**
-   * Get all phone numbers
+   * Log a parse failure. Only the first few failures and then every
+   * LOG_FAILURE_EVERY one are logged so dirty input does not flood the log.
    *
-   * @param rmi         The row meta
-   * @param r           The row
-   * @return            An arraylist of phone number rows
+   * @param e         The parse exception
    */
-  private ArrayList<Object[]> getPhoneNumberRows(RowMetaInterface rmi, Object[] r){
-    ArrayList<Object[]> orows = new ArrayList<Object[]>();
-    int idx = rmi.indexOfValue(meta.getInField());
-    if(idx >= 0){
-      if(meta.getRegion() != null && meta.getRegion().length() == 2){
-        String text = (String) r[idx];
-        List<Phonenumber.PhoneNumber> protoNumbers = new ArrayList<Phonenumber.PhoneNumber>();
-        if (meta.isFindMatches()) {
-          protoNumbers = findNumbers(text);
-        } else {
-          try {
-            Phonenumber.PhoneNumber protoNumber = PhoneNumberUtil.getInstance().parse(text, meta.getRegion());
-            protoNumbers.add(protoNumber);
-          }catch(NumberParseException e){
-            if(isBasic()){
-              logBasic("Failed to parse numbers");
-              logBasic(e.getMessage());
-              e.printStackTrace();
+  private void logParseFailure(NumberParseException e){
+    data.parseFailures += 1;
+    if(isBasic() && (data.parseFailures <= LOG_FIRST_FAILURES || data.parseFailures % LOG_FAILURE_EVERY == 0)){
+      logBasic("Failed to parse numbers (" + data.parseFailures + " so far): " + e.getErrorType() + " " + e.getMessage());
+    }
+  }
+
+  /**
+   * Package an existing row, emitting one row per number. The last number
+   * reuses the input row so a single match costs no copy.
+   *
+   * @param protoNumbers    The numbers to emit
+   * @param count           The number of entries to use
+   * @param r               The resized row object
+   */
+  private void packageRows(Phonenumber.PhoneNumber[] protoNumbers, int count, Object[] r) throws KettleException{
+    for(int i = 0; i < count; i++){
+      Object[] numRow = i < count - 1 ? r.clone() : r;
+      setNumberFields(numRow, protoNumbers[i]);
+      putRow(data.outputRowMeta, numRow);
+    }
+    if(data.metrics != null){
+      data.metrics.recordRowsOut(count);
+    }
+  }
+
+  /**
+   * Package all numbers into the input row itself, joined into delimited
+   * strings or spread over the indexed columns, so wide rows are not
+   * copied per number. Numbers past the last indexed column are dropped.
+   *
+   * @param protoNumbers    The numbers to emit
+   * @param count           The number of entries to use
+   * @param r               The resized row object
+   */
+  private void packageSingleRow(Phonenumber.PhoneNumber[] protoNumbers, int count, Object[] r) throws KettleException{
+    if(data.delimiter != null){
+      setJoinedFields(r, protoNumbers, count);
+    }else{
+      int n = Math.min(count, data.maxColumns);
+      for(int i = 0; i < n; i++){
+        setNumberFields(r, protoNumbers[i], i);
+      }
+      data.columnOverflow += count - n;
+    }
+    putRow(data.outputRowMeta, r);
+    if(data.metrics != null){
+      data.metrics.recordRowsOut(1);
+    }
+  }
+
+  /**
+   * Fill in the output fields with every number joined by the delimiter.
+   *
+   * @param r               The output row
+   * @param protoNumbers    The numbers
+   * @param count           The number of entries to use
+   */
+  private void setJoinedFields(Object[] r, Phonenumber.PhoneNumber[] protoNumbers, int count){
+    StringBuilder sb = data.joined;
+    sb.setLength(0);
+    for(int i = 0; i < count; i++){
+      if(i > 0){
+        sb.append(data.delimiter);
+      }
+      sb.append(protoNumbers[i].getNationalNumber());
+    }
+    r[data.outFieldIdx] = sb.toString();
+    if(data.countryCodeEnabled){
+      sb.setLength(0);
+      for(int i = 0; i < count; i++){
+        if(i > 0){
+          sb.append(data.delimiter);
+        }
+        sb.append(protoNumbers[i].getCountryCode());
+      }
+      r[data.countryCodeIdx] = sb.toString();
+    }
+    if(data.formatter != null){
+      if(data.formatScratch.length < count){
+        data.formatScratch = new String[count][];
+      }
+      for(int i = 0; i < count; i++){
+        data.formatScratch[i] = data.formatter.format(protoNumbers[i]);
+      }
+      for(int f = 0; f < data.formatIdx.length; f++){
+        if(data.formatIdx[f] >= 0){
+          sb.setLength(0);
+          for(int i = 0; i < count; i++){
+            if(i > 0){
+              sb.append(data.delimiter);
+            }
+            sb.append(data.formatScratch[i][f]);
+          }
+          r[data.formatIdx[f]] = sb.toString();
+        }
+      }
+    }
+    if(data.enricher != null){
+      if(data.enrichScratch.length < count){
+        data.enrichScratch = new String[count][];
+      }
+      for(int i = 0; i < count; i++){
+        data.enrichScratch[i] = data.enricher.enrich(protoNumbers[i]);
+      }
+      for(int e = 0; e < data.enrichIdx.length; e++){
+        if(data.enrichIdx[e] >= 0){
+          sb.setLength(0);
+          for(int i = 0; i < count; i++){
+            if(i > 0){
+              sb.append(data.delimiter);
             }
+            sb.append(Const.NVL(data.enrichScratch[i][e], ""));
           }
+          r[data.enrichIdx[e]] = sb.toString();
         }
+      }
+    }
+    if(data.referenceFlagIdx >= 0){
+      sb.setLength(0);
+      for(int i = 0; i < count; i++){
+        if(i > 0){
+          sb.append(data.delimiter);
+        }
+        sb.append(isReferenced(protoNumbers[i]) ? 'Y' : 'N');
+      }
+      r[data.referenceFlagIdx] = sb.toString();
+    }
+  }
+
+  /**
+   * Fill in the output fields for one number.
+   *
+   * @param numRow      The output row
+   * @param number      The number
+   */
+  private void setNumberFields(Object[] numRow, Phonenumber.PhoneNumber number){
+    setNumberFields(numRow, number, 0);
+  }
 
-        if(meta.isCheckValid()){
-          protoNumbers = filterValid(protoNumbers);
+  /**
+   * Fill in the output fields for one number.
+   *
+   * @param numRow      The output row
+   * @param number      The number
+   * @param column      The indexed column to use, 0 unless the numbers go in indexed columns
+   */
+  private void setNumberFields(Object[] numRow, Phonenumber.PhoneNumber number, int column){
+    numRow[data.outFieldIdx + column] = number.getNationalNumber();
+    if(data.countryCodeEnabled){
+      numRow[data.countryCodeIdx + column] = (long) number.getCountryCode();
+    }
+    if(data.formatter != null){
+      String[] formatted = data.formatter.format(number);
+      for(int f = 0; f < data.formatIdx.length; f++){
+        if(data.formatIdx[f] >= 0){
+          numRow[data.formatIdx[f] + column] = formatted[f];
         }
-        orows = packageRows(protoNumbers, r);
-      }else{
-        if(isBasic()){
-          logBasic("2 Letter Country Code Not Provided");
+      }
+    }
+    if(data.enricher != null){
+      String[] enriched = data.enricher.enrich(number);
+      for(int e = 0; e < data.enrichIdx.length; e++){
+        if(data.enrichIdx[e] >= 0){
+          numRow[data.enrichIdx[e] + column] = enriched[e];
         }
       }
+    }
+    if(data.referenceFlagIdx >= 0){
+      numRow[data.referenceFlagIdx + column] = isReferenced(number);
+    }
+  }
+
+  /**
+   * Look a number up in the reference index for the flag output.
+   *
+   * @param number      The number
+   * @return            Whether the index holds it
+   */
+  private boolean isReferenced(Phonenumber.PhoneNumber number){
+    boolean found = data.reference.contains(number);
+    data.referenceChecked += 1;
+    if(found){
+      data.referenceMatches += 1;
+    }
+    return found;
+  }
+
+  /**
+   * Emit one row per counted number once every copy has read its input.
+   * With a top K limit only the most frequent numbers are emitted, most
+   * frequent first.
+   */
+  private void emitCounts() throws KettleException{
+    if(!NumberCounts.finish(meta)){
+      return;
+    }
+    LongIntHashMap counts = data.counts.counts();
+    if(data.outputRowMeta == null){
+      // this copy received no rows, but the aggregate layout does not depend on the input
+      PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+      setupOutputFields(new RowMeta());
+      setupFormatter(util);
+      setupEnricher(util);
+      setupReference();
+    }
+    int[] slots = meta.getTopK() > 0 ? counts.topSlots(meta.getTopK()) : null;
+    int n = slots != null ? slots.length : counts.capacity();
+    for(int i = 0; i < n; i++){
+      int slot = slots != null ? slots[i] : i;
+      long key = counts.keyAt(slot);
+      if(key == 0){
+        continue;
+      }
+      Object[] row = RowDataUtil.allocateRowData(data.outputRowSize);
+      setNumberFields(row, PackedNumber.toPhoneNumber(key));
+      row[data.countFieldIdx] = (long) counts.valueAt(slot);
+      putRow(data.outputRowMeta, row);
+      if(data.metrics != null){
+        data.metrics.recordRowsOut(1);
+      }
+    }
+    if(data.counts.unpackable() > 0 && isBasic()){
+      logBasic("Numbers too long to count: " + data.counts.unpackable());
+    }
+  }
+
+  /**
+   * Get the region field of a row as a string, converted by the field's
+   * value meta so other types and lazily converted values work too.
+   *
+   * @param r     The row
+   * @return      The region value, null to use the default region
+   */
+  private String regionValue(Object[] r) throws KettleException{
+    return data.regionInFieldIdx < 0 ? null : getInputRowMeta().getString(r, data.regionInFieldIdx);
+  }
+
+  /**
+   * Cut a resized row back to the input fields, so it matches the input
+   * row meta when sent to the error hop.
+   *
+   * @param r     The resized row
+   * @return      The input values of the row
+   */
+  private Object[] inputRow(Object[] r){
+    return Arrays.copyOf(r, getInputRowMeta().size());
+  }
+
+  /**
+   * Emit the rows for one input row once its numbers are known.
+   *
+   * @param protoNumbers    The numbers found
+   * @param count           The number of entries to use
+   * @param error           The parse failure, if any
+   * @param overBudget      Whether the row went over the processing budget
+   * @param r               The resized row
+   */
+  private void emitRow(Phonenumber.PhoneNumber[] protoNumbers, int count, NumberParseException error,
+    boolean overBudget, Object[] r) throws KettleException{
+    if(overBudget){
+      data.overBudgetRows += 1;
+      if(data.metrics != null){
+        data.metrics.recordOverBudget();
+      }
+      if(LibPhonenumberPDIPluginMeta.OVER_BUDGET_ERROR.equals(data.overBudgetMode)){
+        putError(getInputRowMeta(), inputRow(r), 1, "Row over the processing budget", meta.getInField(), "OVER_BUDGET");
+        return;
+      }
+    }
+    if(error != null){
+      logParseFailure(error);
+      if(data.metrics != null){
+        data.metrics.recordFailure(error.getErrorType());
+      }
+      if(LibPhonenumberPDIPluginMeta.ERROR_MODE_DROP.equals(data.errorMode)){
+        incrementLinesRejected();
+        return;
+      }
+      if(LibPhonenumberPDIPluginMeta.ERROR_MODE_ERROR.equals(data.errorMode)){
+        putError(getInputRowMeta(), inputRow(r), 1, error.getMessage(), meta.getInField(), error.getErrorType().name());
+        return;
+      }
+    }
+    if(data.reference != null && data.referenceFlagIdx < 0){
+      int kept = retainReferenced(protoNumbers, count);
+      if(kept == 0 && (count > 0 || data.referenceKeep)){
+        // nothing left to contact, or nothing on the list
+        return;
+      }
+      count = kept;
+      protoNumbers = data.referenceScratch;
+    }
+    if(count > 0 && data.dedupe != null){
+      if(data.dedupeScratch.length < count){
+        data.dedupeScratch = new Phonenumber.PhoneNumber[count];
+      }
+      count = data.dedupe.retainFirstSeen(protoNumbers, count, data.dedupeScratch);
+      protoNumbers = data.dedupeScratch;
+      if(count == 0){
+        // every number was seen before
+        return;
+      }
+    }
+    if(data.counts != null){
+      data.counts.add(protoNumbers, count);
+    }else if(count > 0 && data.singleRow){
+      packageSingleRow(protoNumbers, count, r);
+    }else if(count > 0){
+      packageRows(protoNumbers, count, r);
     }else{
-      if(isBasic()){
-        logBasic("Output Field Not Found for Phone Number Extractor");
+      putRow(data.outputRowMeta, r);
+      if(data.metrics != null){
+        data.metrics.recordRowsOut(1);
       }
     }
-    return orows;
+  }
+
+  /**
+   * Copy the numbers to keep into the reference scratch: those found in the
+   * reference index in keep mode, the others in drop mode.
+   *
+   * @param protoNumbers    The numbers found
+   * @param count           The number of entries to use
+   * @return                The number of numbers kept
+   */
+  private int retainReferenced(Phonenumber.PhoneNumber[] protoNumbers, int count){
+    if(data.referenceScratch.length < count){
+      data.referenceScratch = new Phonenumber.PhoneNumber[count];
+    }
+    int kept = 0;
+    for(int i = 0; i < count; i++){
+      boolean found = data.reference.contains(protoNumbers[i]);
+      if(found){
+        data.referenceMatches += 1;
+      }
+      if(found == data.referenceKeep){
+        data.referenceScratch[kept++] = protoNumbers[i];
+      }
+    }
+    data.referenceChecked += count;
+    return kept;
+  }
+
+  /**
+   * Extract the numbers of a row, through the incremental state if there
+   * is one.
+   *
+   * @param r           The resized row
+   * @param region      The resolved region
+   * @param buffer      The buffer to fill
+   */
+  private void extractRow(Object[] r, PhoneNumberExtractor.Region region, PhoneNumberExtractor.Buffer buffer){
+    if(data.incremental != null){
+      data.incremental.extract(data.extractor, r[data.incrementalKeyIdx], r[data.inFieldIdx], region, buffer);
+    }else{
+      data.extractor.extractValue(r[data.inFieldIdx], region, buffer);
+    }
+  }
+
+  /**
+   * Emit a finished batch from the worker pool in input order.
+   *
+   * @param batch       The batch
+   */
+  private void emitBatch(ParallelExtraction.Batch batch) throws KettleException{
+    for(int i = 0; i < batch.size; i++){
+      emitRow(batch.numbers[i], batch.numbers[i].length, batch.errors[i], batch.overBudget[i], batch.rows[i]);
+    }
+    data.prefilterSkipped += batch.prefilterSkipped;
+    data.additionalFailures += batch.additionalFailures;
+    if(batch.metrics != null){
+      data.metrics.add(batch.metrics);
+    }
   }
 
   /**
@@ -223,15 +677,294 @@ public class LibPhonenumberPDIPlugin extends BaseStep implements StepInterface {
   }
 
   /**
-   * Setup the processor.
+   * Get the matcher leniency, falling back to VALID for unknown names.
    *
+   * @param name      The leniency name
+   * @return          The leniency
+   */
+  private PhoneNumberUtil.Leniency leniency(String name){
+    if(name != null){
+      for(PhoneNumberUtil.Leniency leniency : PhoneNumberUtil.Leniency.values()){
+        if(leniency.name().equalsIgnoreCase(name.trim())){
+          return leniency;
+        }
+      }
+      if(isBasic()){
+        logBasic("Unknown leniency " + name + ", using VALID");
+      }
+    }
+    return PhoneNumberUtil.Leniency.VALID;
+  }
+
+  /**
+   * Build an extractor with the step settings.
+   *
+   * @param util            The phone number util
+   * @param findMatches     Whether to find matches or parse the whole text
+   * @return                The extractor
+   */
+  private PhoneNumberExtractor createExtractor(PhoneNumberUtil util, boolean findMatches){
+    PhoneNumberExtractor extractor = new PhoneNumberExtractor(util, meta.getRegion(), findMatches, meta.isCheckValid());
+    if(findMatches){
+      extractor.setLeniency(leniency(meta.getLeniency()));
+      extractor.setMaxTries(meta.getMaxTries());
+    }
+    if(meta.getMaxRowChars() > 0 || meta.getMaxRowMillis() > 0){
+      extractor.setBudget(meta.getMaxRowChars(), TimeUnit.MILLISECONDS.toNanos(meta.getMaxRowMillis()),
+        LibPhonenumberPDIPluginMeta.OVER_BUDGET_TRUNCATE.equals(data.overBudgetMode));
+    }
+    if(findMatches && meta.getPrefilterMinDigits() > 0){
+      extractor.setPrefilterMinDigits(meta.getPrefilterMinDigits());
+    }
+    if(!findMatches && meta.isNanpFastPath()){
+      extractor.setNanpParser(new NanpFastParser(util));
+    }
+    if(findMatches && meta.getChunkSize() > 0){
+      extractor.setChunkSize(meta.getChunkSize());
+    }
+    if(data.cache != null){
+      extractor.setCache(data.cache);
+    }
+    if(data.persistentCache != null){
+      extractor.setPersistentCache(data.persistentCache);
+    }
+    return extractor;
+  }
+
+  /**
+   * Build the extractor and, if enabled, the worker pool.
+   */
+  private void setupExtractor(){
+    PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+    data.extractor = createExtractor(util, meta.isFindMatches());
+    data.buffer = new PhoneNumberExtractor.Buffer();
+    setupFormatter(util);
+    setupEnricher(util);
+    setupAdditionalFields(util);
+
+    if(meta.getParallelWorkers() > 1){
+      data.parallel = new ParallelExtraction(getStepname(), meta.getParallelWorkers(),
+        LibPhonenumberPDIPluginData.PARALLEL_BATCH_SIZE, data.extractor, data.inFieldIdx);
+      data.parallel.setMetricsEnabled(data.metrics != null);
+      data.parallel.setAdditionalFields(data.additionalFields);
+      if(data.incremental != null){
+        data.parallel.setIncremental(data.incremental, data.incrementalKeyIdx);
+      }
+    }
+  }
+
+  /**
+   * Map the reference index, if one is configured. In flag mode without a
+   * flag field the index is not needed.
+   *
+   * @throws KettleException    If the index cannot be opened
+   */
+  private void setupReference() throws KettleException{
+    if(Const.isEmpty(meta.getReferenceFile())){
+      return;
+    }
+    String mode = Const.NVL(meta.getReferenceMode(), LibPhonenumberPDIPluginMeta.REFERENCE_FLAG);
+    boolean flag = LibPhonenumberPDIPluginMeta.REFERENCE_FLAG.equals(mode);
+    if(flag && !meta.isReferenceFlagged()){
+      return;
+    }
+    String file = environmentSubstitute(meta.getReferenceFile());
+    try{
+      data.reference = ReferenceIndex.open(new File(file));
+    }catch(IOException e){
+      throw new KettleException("Unable to open the reference index " + file, e);
+    }
+    data.referenceKeep = LibPhonenumberPDIPluginMeta.REFERENCE_KEEP.equals(mode);
+    data.referenceFlagIdx = flag ? outputFieldIdx(meta.getReferenceFlagField()) : -1;
+    if(isBasic()){
+      logBasic("Mapped reference index " + file + " with " + data.reference.size() + " numbers");
+    }
+  }
+
+  /**
+   * Build the enricher if any location, carrier, time zone or type output is
+   * configured. The mappers behind it load their data on first use.
+   *
+   * @param util        The phone number util
+   */
+  private void setupEnricher(PhoneNumberUtil util){
+    String[] fields = meta.getEnrichmentFields();
+    boolean[] wanted = new boolean[fields.length];
+    boolean any = false;
+    data.enrichIdx = new int[fields.length];
+    for(int i = 0; i < fields.length; i++){
+      data.enrichIdx[i] = Const.isEmpty(fields[i]) ? -1 : outputFieldIdx(fields[i]);
+      wanted[i] = data.enrichIdx[i] >= 0;
+      any |= wanted[i];
+    }
+    if(any){
+      String language = environmentSubstitute(meta.getEnrichmentLanguage());
+      Locale locale = Locale.forLanguageTag(Const.isEmpty(language) ? "en" : language.trim());
+      data.enricher = new NumberEnricher(util, locale, wanted, LibPhonenumberPDIPluginData.FORMAT_CACHE_SIZE,
+        meta.isCheckValid());
+    }
+  }
+
+  /**
+   * Resolve the additional input fields. Fields whose input is missing are
+   * skipped, and the extractor of the other mode is only built if needed.
+   *
+   * @param util        The phone number util
+   */
+  private void setupAdditionalFields(PhoneNumberUtil util){
+    String[] inFields = meta.getAdditionalInFields();
+    List<Integer> used = new ArrayList<Integer>();
+    for(int i = 0; i < inFields.length; i++){
+      if(Const.isEmpty(inFields[i])){
+        continue;
+      }
+      if(getInputRowMeta().indexOfValue(inFields[i]) < 0){
+        if(isBasic()){
+          logBasic("Additional Input Field Not Found: " + inFields[i]);
+        }
+        continue;
+      }
+      used.add(i);
+    }
+    if(used.isEmpty()){
+      return;
+    }
+    int n = used.size();
+    PhoneNumberExtractor[] extractors = new PhoneNumberExtractor[n];
+    int[] inIdx = new int[n];
+    int[] outIdx = new int[n];
+    int[] countryCodeIdx = new int[n];
+    PhoneNumberExtractor other = null;
+    for(int k = 0; k < n; k++){
+      int i = used.get(k);
+      boolean findMatches = meta.getAdditionalFindMatches()[i];
+      if(findMatches == meta.isFindMatches()){
+        extractors[k] = data.extractor;
+      }else{
+        if(other == null){
+          other = createExtractor(util, findMatches);
+        }
+        extractors[k] = other;
+      }
+      inIdx[k] = getInputRowMeta().indexOfValue(inFields[i]);
+      String out = meta.getAdditionalOutFields()[i];
+      String countryCode = meta.getAdditionalCountryCodeFields()[i];
+      outIdx[k] = Const.isEmpty(out) ? -1 : outputFieldIdx(out);
+      countryCodeIdx[k] = Const.isEmpty(countryCode) ? -1 : outputFieldIdx(countryCode);
+    }
+    data.additionalFields = new AdditionalFields(extractors, inIdx, outIdx, countryCodeIdx, data.delimiter,
+      data.maxColumns);
+  }
+
+  /**
+   * Build the formatter if any formatted output is configured.
+   *
+   * @param util        The phone number util
+   */
+  private void setupFormatter(PhoneNumberUtil util){
+    String[] fields = meta.getFormatFields();
+    PhoneNumberUtil.PhoneNumberFormat[] all = PhoneNumberUtil.PhoneNumberFormat.values();
+    List<PhoneNumberUtil.PhoneNumberFormat> formats = new ArrayList<PhoneNumberUtil.PhoneNumberFormat>();
+    data.formatIdx = new int[fields.length];
+    for(int i = 0; i < fields.length; i++){
+      data.formatIdx[i] = Const.isEmpty(fields[i]) ? -1 : outputFieldIdx(fields[i]);
+      if(data.formatIdx[i] >= 0){
+        formats.add(all[i]);
+      }
+    }
+    if(!formats.isEmpty()){
+      data.formatter = new NumberFormatter(util, formats.toArray(new PhoneNumberUtil.PhoneNumberFormat[0]),
+        LibPhonenumberPDIPluginData.FORMAT_CACHE_SIZE);
+    }
+  }
+
+  /**
+   * Get the index of an output field, or of its first column when the
+   * numbers go in indexed columns.
+   *
+   * @param name      The field name
+   * @return          The index or -1
+   */
+  private int outputFieldIdx(String name){
+    if(data.maxColumns > 0){
+      name = LibPhonenumberPDIPluginMeta.columnName(name, 1);
+    }
+    return data.outputRowMeta.indexOfValue(name);
+  }
+
+  /**
+   * Build the output row meta and resolve the number output fields in it.
+   *
+   * @param inMeta      A copy of the input row meta, extended in place
    * @throws KettleException
    */
-  private void setupProcessor() throws KettleException{
-    RowMetaInterface inMeta = getInputRowMeta().clone();
+  private void setupOutputFields(RowMetaInterface inMeta) throws KettleException{
     data.outputRowMeta = inMeta;
     meta.getFields(data.outputRowMeta, getStepname(), null, null, this, null, null);
     //data.outputRowMeta = processRowMeta(data.outputRowMeta);
+    data.outputRowSize = data.outputRowMeta.size();
+    String outputMode = meta.getEffectiveOutputMode();
+    data.singleRow = !LibPhonenumberPDIPluginMeta.OUTPUT_ROWS.equals(outputMode);
+    data.delimiter = LibPhonenumberPDIPluginMeta.OUTPUT_DELIMITED.equals(outputMode) ? Const.NVL(meta.getDelimiter(), "")
+      : null;
+    data.maxColumns = LibPhonenumberPDIPluginMeta.OUTPUT_COLUMNS.equals(outputMode) ? Math.max(1, meta.getMaxColumns()) : 0;
+    data.outFieldIdx = outputFieldIdx(meta.getOutField());
+    data.countFieldIdx = data.counts != null ? data.outputRowMeta.indexOfValue(meta.getCountField()) : -1;
+    data.countryCodeEnabled = meta.getCountryCodeField() != null && meta.getCountryCodeField().trim().length() > 0;
+    data.countryCodeIdx = data.countryCodeEnabled ? outputFieldIdx(meta.getCountryCodeField()) : -1;
+  }
+
+  /**
+   * Setup the processor. Field indexes and flags used for every row are
+   * resolved here once.
+   *
+   * @throws KettleException
+   */
+  private void setupProcessor() throws KettleException{
+    setupOutputFields(getInputRowMeta().clone());
+    data.inFieldIdx = getInputRowMeta().indexOfValue(meta.getInField());
+    data.regionInFieldIdx = Const.isEmpty(meta.getRegionInField()) ? -1 : getInputRowMeta().indexOfValue(meta.getRegionInField());
+    if(data.incremental != null){
+      data.incrementalKeyIdx = getInputRowMeta().indexOfValue(meta.getIncrementalKeyField());
+      if(data.incrementalKeyIdx < 0){
+        throw new KettleException("Incremental row key field " + meta.getIncrementalKeyField() + " not found");
+      }
+    }
+    data.regionValid = meta.getRegion() != null && meta.getRegion().length() == 2;
+    data.extracting = data.inFieldIdx >= 0 && data.outFieldIdx >= 0 && (data.regionValid || data.regionInFieldIdx >= 0);
+    data.errorMode = Const.NVL(meta.getErrorMode(), LibPhonenumberPDIPluginMeta.ERROR_MODE_PASS);
+    if(LibPhonenumberPDIPluginMeta.ERROR_MODE_ERROR.equals(data.errorMode) && !getStepMeta().isDoingErrorHandling()){
+      if(isBasic()){
+        logBasic("No error hop defined, rows that fail to parse are passed through");
+      }
+      data.errorMode = LibPhonenumberPDIPluginMeta.ERROR_MODE_PASS;
+    }
+    data.overBudgetMode = Const.NVL(meta.getOverBudgetMode(), LibPhonenumberPDIPluginMeta.OVER_BUDGET_TRUNCATE);
+    if(LibPhonenumberPDIPluginMeta.OVER_BUDGET_ERROR.equals(data.overBudgetMode) && !getStepMeta().isDoingErrorHandling()){
+      if(isBasic()){
+        logBasic("No error hop defined, rows over the processing budget are passed through");
+      }
+      data.overBudgetMode = LibPhonenumberPDIPluginMeta.OVER_BUDGET_PASS;
+    }
+    if(data.extracting){
+      setupExtractor();
+      setupReference();
+    }
+
+    if(isBasic()){
+      if(data.inFieldIdx < 0){
+        logBasic("Input Field Not Found for Phone Number Extractor");
+      }else if(data.outFieldIdx < 0){
+        logBasic("Output Field Not Specified for PhoneNumberParser");
+      }else if(!data.regionValid && data.regionInFieldIdx < 0){
+        logBasic("2 Letter Country Code Not Provided");
+      }else if(!data.regionValid){
+        logBasic("2 Letter Country Code Not Provided, rows without a known region are passed through");
+      }
+      if(!Const.isEmpty(meta.getRegionInField()) && data.regionInFieldIdx < 0){
+        logBasic("Region Input Field Not Found, using the default region");
+      }
+    }
     first = false;
   }
 
@@ -240,6 +973,16 @@ public class LibPhonenumberPDIPlugin extends BaseStep implements StepInterface {
     Object[] r = getRow(); // get row, set busy!
     if ( r == null ) {
       // no more input to be expected...
+      if(data.parallel != null){
+        data.parallel.finish();
+        ParallelExtraction.Batch batch;
+        while((batch = data.parallel.next(true)) != null){
+          emitBatch(batch);
+        }
+      }
+      if(data.counts != null){
+        emitCounts();
+      }
       setOutputDone();
       return false;
     }
@@ -248,19 +991,49 @@ public class LibPhonenumberPDIPlugin extends BaseStep implements StepInterface {
       setupProcessor();
     }
 
-    ArrayList<Object[]> orows =  getPhoneNumberRows(data.outputRowMeta, r);
-    if(orows.size() > 0) {
-      for(Object[] row : orows){
-        putRow(data.outputRowMeta, row);
+    Object[] orow = RowDataUtil.resizeArray(r, data.outputRowSize);
+    if(data.metrics != null){
+      data.metrics.recordRowIn();
+    }
+    if(!data.extracting){
+      if(data.counts == null){
+        putRow(data.outputRowMeta, orow);
+        if(data.metrics != null){
+          data.metrics.recordRowsOut(1);
+        }
+      }
+    }else if(data.parallel != null){
+      data.parallel.add(orow, regionValue(orow));
+      ParallelExtraction.Batch batch;
+      while((batch = data.parallel.next(false)) != null){
+        emitBatch(batch);
       }
     }else{
-      Object[] orow = RowDataUtil.resizeArray(r, data.outputRowMeta.size());
-      putRow(data.outputRowMeta, orow);
+      PhoneNumberExtractor.Buffer buffer = data.buffer;
+      String regionValue = regionValue(orow);
+      if(data.additionalFields != null){
+        data.additionalFailures += data.additionalFields.fill(orow, regionValue, buffer);
+      }
+      PhoneNumberExtractor.Region region = data.extractor.resolveRegion(regionValue);
+      if(data.metrics != null){
+        long start = System.nanoTime();
+        extractRow(orow, region, buffer);
+        data.metrics.recordRow(buffer.count, buffer.invalid, System.nanoTime() - start);
+      }else{
+        extractRow(orow, region, buffer);
+      }
+      if(buffer.prefilterSkipped){
+        data.prefilterSkipped += 1;
+      }
+      emitRow(buffer.numbers, buffer.count, buffer.error, buffer.overBudget, orow);
     }
 
     if ( checkFeedback( getLinesRead() ) ) {
-      if ( log.isBasic() )
+      if ( log.isBasic() ) {
         logBasic( BaseMessages.getString( PKG, "LibPhonenumberPDIPlugin.Log.LineNumber" ) + getLinesRead() );
+        if ( data.metrics != null )
+          logBasic( "Metrics: " + data.metrics.summary() );
+      }
     }
       
     return true;
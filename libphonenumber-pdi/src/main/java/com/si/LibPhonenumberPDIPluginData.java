@@ -18,13 +18,63 @@
  */
 package com.si;
 
+import com.google.i18n.phonenumbers.Phonenumber;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
 
 public class LibPhonenumberPDIPluginData extends BaseStepData implements StepDataInterface {
+  public static final int PARALLEL_BATCH_SIZE = 500;
+  public static final int FORMAT_CACHE_SIZE = 4096;
+
   public RowMetaInterface outputRowMeta;
+  public PhoneNumberCache cache;
+
+  public int outputRowSize;
+  public int inFieldIdx;
+  public int outFieldIdx;
+  public int countryCodeIdx;
+  public int regionInFieldIdx;
+  public boolean countryCodeEnabled;
+  public boolean regionValid;
+  public boolean extracting;
+
+  public PhoneNumberExtractor extractor;
+  public PhoneNumberExtractor.Buffer buffer;
+  public ParallelExtraction parallel;
+  public long prefilterSkipped;
+  public String errorMode;
+  public long parseFailures;
+  public String overBudgetMode;
+  public long overBudgetRows;
+  public ExtractionMetrics metrics;
+  public NumberFormatter formatter;
+  public PersistentParseCache persistentCache;
+  public IncrementalState incremental;
+  public int incrementalKeyIdx = -1;
+  public NumberDedupe dedupe;
+  public NumberCounts counts;
+  public int countFieldIdx;
+  public Phonenumber.PhoneNumber[] dedupeScratch = new Phonenumber.PhoneNumber[8];
+  public int[] formatIdx;
+  public NumberEnricher enricher;
+  public int[] enrichIdx;
+  public String[][] enrichScratch = new String[8][];
+  public AdditionalFields additionalFields;
+  public long additionalFailures;
+  public boolean singleRow;
+  public String delimiter;
+  public int maxColumns;
+  public long columnOverflow;
+  public ReferenceIndex reference;
+  public boolean referenceKeep;
+  public int referenceFlagIdx = -1;
+  public long referenceChecked;
+  public long referenceMatches;
+  public Phonenumber.PhoneNumber[] referenceScratch = new Phonenumber.PhoneNumber[8];
+  public StringBuilder joined = new StringBuilder();
+  public String[][] formatScratch = new String[8][];
 
   public LibPhonenumberPDIPluginData() {
     super();
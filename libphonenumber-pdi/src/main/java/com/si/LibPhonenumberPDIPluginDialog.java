@@ -43,9 +43,13 @@ import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.ui.core.ConstUI;
 import org.pentaho.di.ui.core.FormDataBuilder;
 import org.pentaho.di.ui.core.gui.GUIResource;
+import org.pentaho.di.ui.core.widget.ColumnInfo;
+import org.pentaho.di.ui.core.widget.TableView;
 import org.pentaho.di.ui.core.widget.TextVar;
 import org.pentaho.di.ui.trans.step.BaseStepDialog;
 
+import java.util.Arrays;
+
 public class LibPhonenumberPDIPluginDialog extends BaseStepDialog implements StepDialogInterface {
 
   private static Class<?> PKG = LibPhonenumberPDIPluginMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
@@ -66,6 +70,8 @@ public class LibPhonenumberPDIPluginDialog extends BaseStepDialog implements Ste
 
   private Label lfname;
   private CCombo wInFieldCombo;
+  private Label wAdditionalFieldsName;
+  private TableView wAdditionalFields;
   private FormData fdlFname, fdStep;
 
   private Label wRegionFieldName;
@@ -89,6 +95,166 @@ public class LibPhonenumberPDIPluginDialog extends BaseStepDialog implements Ste
   private Button wFindMatches;
   private FormData fdlFindMatches, fdlFindMatchesName;
 
+  private Label wCacheSizeName;
+  private TextVar wCacheSize;
+  private FormData fdlCacheSizeName, fdlCacheSize;
+
+  private Label wPrefilterMinDigitsName;
+  private TextVar wPrefilterMinDigits;
+  private FormData fdlPrefilterMinDigitsName, fdlPrefilterMinDigits;
+
+  private Label wNanpFastPathName;
+  private Button wNanpFastPath;
+  private FormData fdlNanpFastPathName, fdlNanpFastPath;
+
+  private Label wParallelWorkersName;
+  private TextVar wParallelWorkers;
+  private FormData fdlParallelWorkersName, fdlParallelWorkers;
+
+  private Label wRegionInFieldName;
+  private CCombo wRegionInField;
+  private FormData fdlRegionInFieldName, fdlRegionInField;
+
+  private Label wWarmUpName;
+  private Button wWarmUp;
+  private FormData fdlWarmUpName, fdlWarmUp;
+
+  private Label wWarmUpRegionsName;
+  private TextVar wWarmUpRegions;
+  private FormData fdlWarmUpRegionsName, fdlWarmUpRegions;
+
+  private Label wErrorModeName;
+  private CCombo wErrorMode;
+  private FormData fdlErrorModeName, fdlErrorMode;
+
+  private Label wMetricsEnabledName;
+  private Button wMetricsEnabled;
+  private FormData fdlMetricsEnabledName, fdlMetricsEnabled;
+
+  private Label wMetricsJmxName;
+  private Button wMetricsJmx;
+  private FormData fdlMetricsJmxName, fdlMetricsJmx;
+
+  private Label wE164FieldName;
+  private TextVar wE164Field;
+  private FormData fdlE164FieldName, fdlE164Field;
+
+  private Label wInternationalFieldName;
+  private TextVar wInternationalField;
+  private FormData fdlInternationalFieldName, fdlInternationalField;
+
+  private Label wNationalFieldName;
+  private TextVar wNationalField;
+  private FormData fdlNationalFieldName, fdlNationalField;
+
+  private Label wRfc3966FieldName;
+  private TextVar wRfc3966Field;
+  private FormData fdlRfc3966FieldName, fdlRfc3966Field;
+
+  private Label wDedupeName;
+  private Button wDedupe;
+  private FormData fdlDedupeName, fdlDedupe;
+
+  private Label wDedupeMemoryMbName;
+  private TextVar wDedupeMemoryMb;
+  private FormData fdlDedupeMemoryMbName, fdlDedupeMemoryMb;
+
+  private Label wAggregateName;
+  private Button wAggregate;
+  private FormData fdlAggregateName, fdlAggregate;
+
+  private Label wCountFieldName;
+  private TextVar wCountField;
+  private FormData fdlCountFieldName, fdlCountField;
+
+  private Label wTopKName;
+  private TextVar wTopK;
+  private FormData fdlTopKName, fdlTopK;
+
+  private Label wChunkSizeName;
+  private TextVar wChunkSize;
+  private FormData fdlChunkSizeName, fdlChunkSize;
+
+  private Label wLeniencyName;
+  private CCombo wLeniency;
+  private FormData fdlLeniencyName, fdlLeniency;
+
+  private Label wMaxTriesName;
+  private TextVar wMaxTries;
+  private FormData fdlMaxTriesName, fdlMaxTries;
+
+  private Label wMaxRowCharsName;
+  private TextVar wMaxRowChars;
+  private FormData fdlMaxRowCharsName, fdlMaxRowChars;
+
+  private Label wMaxRowMillisName;
+  private TextVar wMaxRowMillis;
+  private FormData fdlMaxRowMillisName, fdlMaxRowMillis;
+
+  private Label wOverBudgetModeName;
+  private CCombo wOverBudgetMode;
+  private FormData fdlOverBudgetModeName, fdlOverBudgetMode;
+
+  private Label wOutputModeName;
+  private CCombo wOutputMode;
+  private FormData fdlOutputModeName, fdlOutputMode;
+
+  private Label wDelimiterName;
+  private TextVar wDelimiter;
+  private FormData fdlDelimiterName, fdlDelimiter;
+
+  private Label wMaxColumnsName;
+  private TextVar wMaxColumns;
+  private FormData fdlMaxColumnsName, fdlMaxColumns;
+
+  private Label wLocationFieldName;
+  private TextVar wLocationField;
+  private FormData fdlLocationFieldName, fdlLocationField;
+
+  private Label wCarrierFieldName;
+  private TextVar wCarrierField;
+  private FormData fdlCarrierFieldName, fdlCarrierField;
+
+  private Label wTimeZoneFieldName;
+  private TextVar wTimeZoneField;
+  private FormData fdlTimeZoneFieldName, fdlTimeZoneField;
+
+  private Label wEnrichmentLanguageName;
+  private TextVar wEnrichmentLanguage;
+  private FormData fdlEnrichmentLanguageName, fdlEnrichmentLanguage;
+
+  private Label wNumberTypeFieldName;
+  private TextVar wNumberTypeField;
+  private FormData fdlNumberTypeFieldName, fdlNumberTypeField;
+
+  private Label wReferenceFileName;
+  private TextVar wReferenceFile;
+  private FormData fdlReferenceFileName, fdlReferenceFile;
+
+  private Label wReferenceModeName;
+  private CCombo wReferenceMode;
+  private FormData fdlReferenceModeName, fdlReferenceMode;
+
+  private Label wReferenceFlagFieldName;
+  private TextVar wReferenceFlagField;
+  private FormData fdlReferenceFlagFieldName, fdlReferenceFlagField;
+
+  private Label wPersistentCacheFileName;
+  private TextVar wPersistentCacheFile;
+  private FormData fdlPersistentCacheFileName, fdlPersistentCacheFile;
+
+  private Label wPersistentCacheEntriesName;
+  private TextVar wPersistentCacheEntries;
+  private FormData fdlPersistentCacheEntriesName, fdlPersistentCacheEntries;
+
+  private Label wIncrementalStateFileName;
+  private TextVar wIncrementalStateFile;
+  private FormData fdlIncrementalStateFileName, fdlIncrementalStateFile;
+
+  private Label wIncrementalKeyFieldName;
+  private TextVar wIncrementalKeyField;
+  private FormData fdlIncrementalKeyFieldName, fdlIncrementalKeyField;
+
 
   private Button wCancel;
   private Button wOK;
@@ -280,12 +446,799 @@ public class LibPhonenumberPDIPluginDialog extends BaseStepDialog implements Ste
     fdlCheckValid.right = new FormAttachment(100, 0);
     wcheckValid.setLayoutData(fdlCheckValid);
 
+    //parse cache size
+    wCacheSizeName = new Label(shell, SWT.RIGHT);
+    wCacheSizeName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.CacheSize"));
+    props.setLook(wCacheSizeName);
+    fdlCacheSizeName = new FormData();
+    fdlCacheSizeName.left = new FormAttachment(0, 0);
+    fdlCacheSizeName.top = new FormAttachment(wCheckValidName, 15);
+    fdlCacheSizeName.right = new FormAttachment(middle, -margin);
+    wCacheSizeName.setLayoutData(fdlCacheSizeName);
+    wCacheSize = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wCacheSize.setText("");
+    wCacheSize.addModifyListener(lsMod);
+    props.setLook(wCacheSize);
+    fdlCacheSize = new FormData();
+    fdlCacheSize.left = new FormAttachment(middle, 0);
+    fdlCacheSize.top = new FormAttachment(wCheckValidName, 15);
+    fdlCacheSize.right = new FormAttachment(100, 0);
+    wCacheSize.setLayoutData(fdlCacheSize);
+
+    //digit pre-filter for find matches
+    wPrefilterMinDigitsName = new Label(shell, SWT.RIGHT);
+    wPrefilterMinDigitsName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.PrefilterMinDigits"));
+    props.setLook(wPrefilterMinDigitsName);
+    fdlPrefilterMinDigitsName = new FormData();
+    fdlPrefilterMinDigitsName.left = new FormAttachment(0, 0);
+    fdlPrefilterMinDigitsName.top = new FormAttachment(wCacheSizeName, 15);
+    fdlPrefilterMinDigitsName.right = new FormAttachment(middle, -margin);
+    wPrefilterMinDigitsName.setLayoutData(fdlPrefilterMinDigitsName);
+    wPrefilterMinDigits = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wPrefilterMinDigits.setText("");
+    wPrefilterMinDigits.addModifyListener(lsMod);
+    props.setLook(wPrefilterMinDigits);
+    fdlPrefilterMinDigits = new FormData();
+    fdlPrefilterMinDigits.left = new FormAttachment(middle, 0);
+    fdlPrefilterMinDigits.top = new FormAttachment(wCacheSizeName, 15);
+    fdlPrefilterMinDigits.right = new FormAttachment(100, 0);
+    wPrefilterMinDigits.setLayoutData(fdlPrefilterMinDigits);
+
+    //flag for the NANP fast parser
+    wNanpFastPathName = new Label(shell, SWT.RIGHT);
+    wNanpFastPathName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.NanpFastPath"));
+    props.setLook(wNanpFastPathName);
+    fdlNanpFastPathName = new FormData();
+    fdlNanpFastPathName.left = new FormAttachment(0, 0);
+    fdlNanpFastPathName.top = new FormAttachment(wPrefilterMinDigitsName, 15);
+    fdlNanpFastPathName.right = new FormAttachment(middle, -margin);
+    wNanpFastPathName.setLayoutData(fdlNanpFastPathName);
+    wNanpFastPath = new Button(shell, SWT.CHECK);
+    props.setLook(wNanpFastPath);
+    fdlNanpFastPath = new FormData();
+    fdlNanpFastPath.left = new FormAttachment(middle, 0);
+    fdlNanpFastPath.top = new FormAttachment(wPrefilterMinDigitsName, 15);
+    fdlNanpFastPath.right = new FormAttachment(100, 0);
+    wNanpFastPath.setLayoutData(fdlNanpFastPath);
+
+    //worker threads for ordered parallel extraction
+    wParallelWorkersName = new Label(shell, SWT.RIGHT);
+    wParallelWorkersName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.ParallelWorkers"));
+    props.setLook(wParallelWorkersName);
+    fdlParallelWorkersName = new FormData();
+    fdlParallelWorkersName.left = new FormAttachment(0, 0);
+    fdlParallelWorkersName.top = new FormAttachment(wNanpFastPathName, 15);
+    fdlParallelWorkersName.right = new FormAttachment(middle, -margin);
+    wParallelWorkersName.setLayoutData(fdlParallelWorkersName);
+    wParallelWorkers = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wParallelWorkers.setText("");
+    wParallelWorkers.addModifyListener(lsMod);
+    props.setLook(wParallelWorkers);
+    fdlParallelWorkers = new FormData();
+    fdlParallelWorkers.left = new FormAttachment(middle, 0);
+    fdlParallelWorkers.top = new FormAttachment(wNanpFastPathName, 15);
+    fdlParallelWorkers.right = new FormAttachment(100, 0);
+    wParallelWorkers.setLayoutData(fdlParallelWorkers);
+
+    //region input field, the region code above is the fallback
+    wRegionInFieldName = new Label(shell, SWT.RIGHT);
+    wRegionInFieldName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.RegionInField"));
+    props.setLook(wRegionInFieldName);
+    fdlRegionInFieldName = new FormData();
+    fdlRegionInFieldName.left = new FormAttachment(0, 0);
+    fdlRegionInFieldName.top = new FormAttachment(wParallelWorkersName, 15);
+    fdlRegionInFieldName.right = new FormAttachment(middle, -margin);
+    wRegionInFieldName.setLayoutData(fdlRegionInFieldName);
+    wRegionInField = new CCombo(shell, SWT.BORDER);
+    wRegionInField.setItems(wInFieldCombo.getItems());
+    wRegionInField.addModifyListener(lsMod);
+    props.setLook(wRegionInField);
+    fdlRegionInField = new FormData();
+    fdlRegionInField.left = new FormAttachment(middle, 0);
+    fdlRegionInField.top = new FormAttachment(wParallelWorkersName, 15);
+    fdlRegionInField.right = new FormAttachment(100, 0);
+    wRegionInField.setLayoutData(fdlRegionInField);
+
+    //warm up metadata?
+    wWarmUpName = new Label(shell, SWT.RIGHT);
+    wWarmUpName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.WarmUp"));
+    props.setLook(wWarmUpName);
+    fdlWarmUpName = new FormData();
+    fdlWarmUpName.left = new FormAttachment(0, 0);
+    fdlWarmUpName.top = new FormAttachment(wRegionInFieldName, 15);
+    fdlWarmUpName.right = new FormAttachment(middle, -margin);
+    wWarmUpName.setLayoutData(fdlWarmUpName);
+    wWarmUp = new Button(shell, SWT.CHECK);
+    props.setLook(wWarmUp);
+    fdlWarmUp = new FormData();
+    fdlWarmUp.left = new FormAttachment(middle, 0);
+    fdlWarmUp.top = new FormAttachment(wRegionInFieldName, 15);
+    fdlWarmUp.right = new FormAttachment(100, 0);
+    wWarmUp.setLayoutData(fdlWarmUp);
+
+    //warm up regions (e.g. us,gb)
+    wWarmUpRegionsName = new Label(shell, SWT.RIGHT);
+    wWarmUpRegionsName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.WarmUpRegions"));
+    props.setLook(wWarmUpRegionsName);
+    fdlWarmUpRegionsName = new FormData();
+    fdlWarmUpRegionsName.left = new FormAttachment(0, 0);
+    fdlWarmUpRegionsName.top = new FormAttachment(wWarmUpName, 15);
+    fdlWarmUpRegionsName.right = new FormAttachment(middle, -margin);
+    wWarmUpRegionsName.setLayoutData(fdlWarmUpRegionsName);
+    wWarmUpRegions = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wWarmUpRegions.setText("");
+    wWarmUpRegions.addModifyListener(lsMod);
+    props.setLook(wWarmUpRegions);
+    fdlWarmUpRegions = new FormData();
+    fdlWarmUpRegions.left = new FormAttachment(middle, 0);
+    fdlWarmUpRegions.top = new FormAttachment(wWarmUpName, 15);
+    fdlWarmUpRegions.right = new FormAttachment(100, 0);
+    wWarmUpRegions.setLayoutData(fdlWarmUpRegions);
+
+    //on parse failure
+    wErrorModeName = new Label(shell, SWT.RIGHT);
+    wErrorModeName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.ErrorMode"));
+    props.setLook(wErrorModeName);
+    fdlErrorModeName = new FormData();
+    fdlErrorModeName.left = new FormAttachment(0, 0);
+    fdlErrorModeName.top = new FormAttachment(wWarmUpRegionsName, 15);
+    fdlErrorModeName.right = new FormAttachment(middle, -margin);
+    wErrorModeName.setLayoutData(fdlErrorModeName);
+    wErrorMode = new CCombo(shell, SWT.BORDER | SWT.READ_ONLY);
+    for(String mode : LibPhonenumberPDIPluginMeta.ERROR_MODES){
+      wErrorMode.add(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.ErrorMode." + mode));
+    }
+    wErrorMode.addModifyListener(lsMod);
+    props.setLook(wErrorMode);
+    fdlErrorMode = new FormData();
+    fdlErrorMode.left = new FormAttachment(middle, 0);
+    fdlErrorMode.top = new FormAttachment(wWarmUpRegionsName, 15);
+    fdlErrorMode.right = new FormAttachment(100, 0);
+    wErrorMode.setLayoutData(fdlErrorMode);
+
+    //collect metrics?
+    wMetricsEnabledName = new Label(shell, SWT.RIGHT);
+    wMetricsEnabledName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.MetricsEnabled"));
+    props.setLook(wMetricsEnabledName);
+    fdlMetricsEnabledName = new FormData();
+    fdlMetricsEnabledName.left = new FormAttachment(0, 0);
+    fdlMetricsEnabledName.top = new FormAttachment(wErrorModeName, 15);
+    fdlMetricsEnabledName.right = new FormAttachment(middle, -margin);
+    wMetricsEnabledName.setLayoutData(fdlMetricsEnabledName);
+    wMetricsEnabled = new Button(shell, SWT.CHECK);
+    props.setLook(wMetricsEnabled);
+    fdlMetricsEnabled = new FormData();
+    fdlMetricsEnabled.left = new FormAttachment(middle, 0);
+    fdlMetricsEnabled.top = new FormAttachment(wErrorModeName, 15);
+    fdlMetricsEnabled.right = new FormAttachment(100, 0);
+    wMetricsEnabled.setLayoutData(fdlMetricsEnabled);
+
+    //publish metrics over jmx?
+    wMetricsJmxName = new Label(shell, SWT.RIGHT);
+    wMetricsJmxName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.MetricsJmx"));
+    props.setLook(wMetricsJmxName);
+    fdlMetricsJmxName = new FormData();
+    fdlMetricsJmxName.left = new FormAttachment(0, 0);
+    fdlMetricsJmxName.top = new FormAttachment(wMetricsEnabledName, 15);
+    fdlMetricsJmxName.right = new FormAttachment(middle, -margin);
+    wMetricsJmxName.setLayoutData(fdlMetricsJmxName);
+    wMetricsJmx = new Button(shell, SWT.CHECK);
+    props.setLook(wMetricsJmx);
+    fdlMetricsJmx = new FormData();
+    fdlMetricsJmx.left = new FormAttachment(middle, 0);
+    fdlMetricsJmx.top = new FormAttachment(wMetricsEnabledName, 15);
+    fdlMetricsJmx.right = new FormAttachment(100, 0);
+    wMetricsJmx.setLayoutData(fdlMetricsJmx);
+
+    //e.164 output
+    wE164FieldName = new Label(shell, SWT.RIGHT);
+    wE164FieldName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.E164Field"));
+    props.setLook(wE164FieldName);
+    fdlE164FieldName = new FormData();
+    fdlE164FieldName.left = new FormAttachment(0, 0);
+    fdlE164FieldName.top = new FormAttachment(wMetricsJmxName, 15);
+    fdlE164FieldName.right = new FormAttachment(middle, -margin);
+    wE164FieldName.setLayoutData(fdlE164FieldName);
+    wE164Field = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wE164Field.setText("");
+    wE164Field.addModifyListener(lsMod);
+    props.setLook(wE164Field);
+    fdlE164Field = new FormData();
+    fdlE164Field.left = new FormAttachment(middle, 0);
+    fdlE164Field.top = new FormAttachment(wMetricsJmxName, 15);
+    fdlE164Field.right = new FormAttachment(100, 0);
+    wE164Field.setLayoutData(fdlE164Field);
+
+    //international format output
+    wInternationalFieldName = new Label(shell, SWT.RIGHT);
+    wInternationalFieldName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.InternationalField"));
+    props.setLook(wInternationalFieldName);
+    fdlInternationalFieldName = new FormData();
+    fdlInternationalFieldName.left = new FormAttachment(0, 0);
+    fdlInternationalFieldName.top = new FormAttachment(wE164FieldName, 15);
+    fdlInternationalFieldName.right = new FormAttachment(middle, -margin);
+    wInternationalFieldName.setLayoutData(fdlInternationalFieldName);
+    wInternationalField = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wInternationalField.setText("");
+    wInternationalField.addModifyListener(lsMod);
+    props.setLook(wInternationalField);
+    fdlInternationalField = new FormData();
+    fdlInternationalField.left = new FormAttachment(middle, 0);
+    fdlInternationalField.top = new FormAttachment(wE164FieldName, 15);
+    fdlInternationalField.right = new FormAttachment(100, 0);
+    wInternationalField.setLayoutData(fdlInternationalField);
+
+    //national format output
+    wNationalFieldName = new Label(shell, SWT.RIGHT);
+    wNationalFieldName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.NationalField"));
+    props.setLook(wNationalFieldName);
+    fdlNationalFieldName = new FormData();
+    fdlNationalFieldName.left = new FormAttachment(0, 0);
+    fdlNationalFieldName.top = new FormAttachment(wInternationalFieldName, 15);
+    fdlNationalFieldName.right = new FormAttachment(middle, -margin);
+    wNationalFieldName.setLayoutData(fdlNationalFieldName);
+    wNationalField = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wNationalField.setText("");
+    wNationalField.addModifyListener(lsMod);
+    props.setLook(wNationalField);
+    fdlNationalField = new FormData();
+    fdlNationalField.left = new FormAttachment(middle, 0);
+    fdlNationalField.top = new FormAttachment(wInternationalFieldName, 15);
+    fdlNationalField.right = new FormAttachment(100, 0);
+    wNationalField.setLayoutData(fdlNationalField);
+
+    //rfc3966 output
+    wRfc3966FieldName = new Label(shell, SWT.RIGHT);
+    wRfc3966FieldName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.Rfc3966Field"));
+    props.setLook(wRfc3966FieldName);
+    fdlRfc3966FieldName = new FormData();
+    fdlRfc3966FieldName.left = new FormAttachment(0, 0);
+    fdlRfc3966FieldName.top = new FormAttachment(wNationalFieldName, 15);
+    fdlRfc3966FieldName.right = new FormAttachment(middle, -margin);
+    wRfc3966FieldName.setLayoutData(fdlRfc3966FieldName);
+    wRfc3966Field = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wRfc3966Field.setText("");
+    wRfc3966Field.addModifyListener(lsMod);
+    props.setLook(wRfc3966Field);
+    fdlRfc3966Field = new FormData();
+    fdlRfc3966Field.left = new FormAttachment(middle, 0);
+    fdlRfc3966Field.top = new FormAttachment(wNationalFieldName, 15);
+    fdlRfc3966Field.right = new FormAttachment(100, 0);
+    wRfc3966Field.setLayoutData(fdlRfc3966Field);
+
+    //emit each number once?
+    wDedupeName = new Label(shell, SWT.RIGHT);
+    wDedupeName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.Dedupe"));
+    props.setLook(wDedupeName);
+    fdlDedupeName = new FormData();
+    fdlDedupeName.left = new FormAttachment(0, 0);
+    fdlDedupeName.top = new FormAttachment(wRfc3966FieldName, 15);
+    fdlDedupeName.right = new FormAttachment(middle, -margin);
+    wDedupeName.setLayoutData(fdlDedupeName);
+    wDedupe = new Button(shell, SWT.CHECK);
+    props.setLook(wDedupe);
+    fdlDedupe = new FormData();
+    fdlDedupe.left = new FormAttachment(middle, 0);
+    fdlDedupe.top = new FormAttachment(wRfc3966FieldName, 15);
+    fdlDedupe.right = new FormAttachment(100, 0);
+    wDedupe.setLayoutData(fdlDedupe);
+
+    //dedupe memory mb (0 = exact)
+    wDedupeMemoryMbName = new Label(shell, SWT.RIGHT);
+    wDedupeMemoryMbName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.DedupeMemoryMb"));
+    props.setLook(wDedupeMemoryMbName);
+    fdlDedupeMemoryMbName = new FormData();
+    fdlDedupeMemoryMbName.left = new FormAttachment(0, 0);
+    fdlDedupeMemoryMbName.top = new FormAttachment(wDedupeName, 15);
+    fdlDedupeMemoryMbName.right = new FormAttachment(middle, -margin);
+    wDedupeMemoryMbName.setLayoutData(fdlDedupeMemoryMbName);
+    wDedupeMemoryMb = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wDedupeMemoryMb.setText("");
+    wDedupeMemoryMb.addModifyListener(lsMod);
+    props.setLook(wDedupeMemoryMb);
+    fdlDedupeMemoryMb = new FormData();
+    fdlDedupeMemoryMb.left = new FormAttachment(middle, 0);
+    fdlDedupeMemoryMb.top = new FormAttachment(wDedupeName, 15);
+    fdlDedupeMemoryMb.right = new FormAttachment(100, 0);
+    wDedupeMemoryMb.setLayoutData(fdlDedupeMemoryMb);
+
+    //count each number instead?
+    wAggregateName = new Label(shell, SWT.RIGHT);
+    wAggregateName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.Aggregate"));
+    props.setLook(wAggregateName);
+    fdlAggregateName = new FormData();
+    fdlAggregateName.left = new FormAttachment(0, 0);
+    fdlAggregateName.top = new FormAttachment(wDedupeMemoryMbName, 15);
+    fdlAggregateName.right = new FormAttachment(middle, -margin);
+    wAggregateName.setLayoutData(fdlAggregateName);
+    wAggregate = new Button(shell, SWT.CHECK);
+    props.setLook(wAggregate);
+    fdlAggregate = new FormData();
+    fdlAggregate.left = new FormAttachment(middle, 0);
+    fdlAggregate.top = new FormAttachment(wDedupeMemoryMbName, 15);
+    fdlAggregate.right = new FormAttachment(100, 0);
+    wAggregate.setLayoutData(fdlAggregate);
+
+    //count output field
+    wCountFieldName = new Label(shell, SWT.RIGHT);
+    wCountFieldName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.CountField"));
+    props.setLook(wCountFieldName);
+    fdlCountFieldName = new FormData();
+    fdlCountFieldName.left = new FormAttachment(0, 0);
+    fdlCountFieldName.top = new FormAttachment(wAggregateName, 15);
+    fdlCountFieldName.right = new FormAttachment(middle, -margin);
+    wCountFieldName.setLayoutData(fdlCountFieldName);
+    wCountField = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wCountField.setText("");
+    wCountField.addModifyListener(lsMod);
+    props.setLook(wCountField);
+    fdlCountField = new FormData();
+    fdlCountField.left = new FormAttachment(middle, 0);
+    fdlCountField.top = new FormAttachment(wAggregateName, 15);
+    fdlCountField.right = new FormAttachment(100, 0);
+    wCountField.setLayoutData(fdlCountField);
+
+    //top numbers only (0 = all)
+    wTopKName = new Label(shell, SWT.RIGHT);
+    wTopKName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.TopK"));
+    props.setLook(wTopKName);
+    fdlTopKName = new FormData();
+    fdlTopKName.left = new FormAttachment(0, 0);
+    fdlTopKName.top = new FormAttachment(wCountFieldName, 15);
+    fdlTopKName.right = new FormAttachment(middle, -margin);
+    wTopKName.setLayoutData(fdlTopKName);
+    wTopK = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wTopK.setText("");
+    wTopK.addModifyListener(lsMod);
+    props.setLook(wTopK);
+    fdlTopK = new FormData();
+    fdlTopK.left = new FormAttachment(middle, 0);
+    fdlTopK.top = new FormAttachment(wCountFieldName, 15);
+    fdlTopK.right = new FormAttachment(100, 0);
+    wTopK.setLayoutData(fdlTopK);
+
+    //streaming chunk size (chars, 0 = off)
+    wChunkSizeName = new Label(shell, SWT.RIGHT);
+    wChunkSizeName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.ChunkSize"));
+    props.setLook(wChunkSizeName);
+    fdlChunkSizeName = new FormData();
+    fdlChunkSizeName.left = new FormAttachment(0, 0);
+    fdlChunkSizeName.top = new FormAttachment(wTopKName, 15);
+    fdlChunkSizeName.right = new FormAttachment(middle, -margin);
+    wChunkSizeName.setLayoutData(fdlChunkSizeName);
+    wChunkSize = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wChunkSize.setText("");
+    wChunkSize.addModifyListener(lsMod);
+    props.setLook(wChunkSize);
+    fdlChunkSize = new FormData();
+    fdlChunkSize.left = new FormAttachment(middle, 0);
+    fdlChunkSize.top = new FormAttachment(wTopKName, 15);
+    fdlChunkSize.right = new FormAttachment(100, 0);
+    wChunkSize.setLayoutData(fdlChunkSize);
+
+    //leniency
+    wLeniencyName = new Label(shell, SWT.RIGHT);
+    wLeniencyName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.Leniency"));
+    props.setLook(wLeniencyName);
+    fdlLeniencyName = new FormData();
+    fdlLeniencyName.left = new FormAttachment(0, 0);
+    fdlLeniencyName.top = new FormAttachment(wChunkSizeName, 15);
+    fdlLeniencyName.right = new FormAttachment(middle, -margin);
+    wLeniencyName.setLayoutData(fdlLeniencyName);
+    wLeniency = new CCombo(shell, SWT.BORDER | SWT.READ_ONLY);
+    for(String leniency : LibPhonenumberPDIPluginMeta.LENIENCIES){
+      wLeniency.add(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Leniency." + leniency));
+    }
+    wLeniency.addModifyListener(lsMod);
+    props.setLook(wLeniency);
+    fdlLeniency = new FormData();
+    fdlLeniency.left = new FormAttachment(middle, 0);
+    fdlLeniency.top = new FormAttachment(wChunkSizeName, 15);
+    fdlLeniency.right = new FormAttachment(100, 0);
+    wLeniency.setLayoutData(fdlLeniency);
+
+    //max tries
+    wMaxTriesName = new Label(shell, SWT.RIGHT);
+    wMaxTriesName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.MaxTries"));
+    props.setLook(wMaxTriesName);
+    fdlMaxTriesName = new FormData();
+    fdlMaxTriesName.left = new FormAttachment(0, 0);
+    fdlMaxTriesName.top = new FormAttachment(wLeniencyName, 15);
+    fdlMaxTriesName.right = new FormAttachment(middle, -margin);
+    wMaxTriesName.setLayoutData(fdlMaxTriesName);
+    wMaxTries = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wMaxTries.setText("");
+    wMaxTries.addModifyListener(lsMod);
+    props.setLook(wMaxTries);
+    fdlMaxTries = new FormData();
+    fdlMaxTries.left = new FormAttachment(middle, 0);
+    fdlMaxTries.top = new FormAttachment(wLeniencyName, 15);
+    fdlMaxTries.right = new FormAttachment(100, 0);
+    wMaxTries.setLayoutData(fdlMaxTries);
+
+    //max row chars
+    wMaxRowCharsName = new Label(shell, SWT.RIGHT);
+    wMaxRowCharsName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.MaxRowChars"));
+    props.setLook(wMaxRowCharsName);
+    fdlMaxRowCharsName = new FormData();
+    fdlMaxRowCharsName.left = new FormAttachment(0, 0);
+    fdlMaxRowCharsName.top = new FormAttachment(wMaxTriesName, 15);
+    fdlMaxRowCharsName.right = new FormAttachment(middle, -margin);
+    wMaxRowCharsName.setLayoutData(fdlMaxRowCharsName);
+    wMaxRowChars = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wMaxRowChars.setText("");
+    wMaxRowChars.addModifyListener(lsMod);
+    props.setLook(wMaxRowChars);
+    fdlMaxRowChars = new FormData();
+    fdlMaxRowChars.left = new FormAttachment(middle, 0);
+    fdlMaxRowChars.top = new FormAttachment(wMaxTriesName, 15);
+    fdlMaxRowChars.right = new FormAttachment(100, 0);
+    wMaxRowChars.setLayoutData(fdlMaxRowChars);
+
+    //max row millis
+    wMaxRowMillisName = new Label(shell, SWT.RIGHT);
+    wMaxRowMillisName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.MaxRowMillis"));
+    props.setLook(wMaxRowMillisName);
+    fdlMaxRowMillisName = new FormData();
+    fdlMaxRowMillisName.left = new FormAttachment(0, 0);
+    fdlMaxRowMillisName.top = new FormAttachment(wMaxRowCharsName, 15);
+    fdlMaxRowMillisName.right = new FormAttachment(middle, -margin);
+    wMaxRowMillisName.setLayoutData(fdlMaxRowMillisName);
+    wMaxRowMillis = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wMaxRowMillis.setText("");
+    wMaxRowMillis.addModifyListener(lsMod);
+    props.setLook(wMaxRowMillis);
+    fdlMaxRowMillis = new FormData();
+    fdlMaxRowMillis.left = new FormAttachment(middle, 0);
+    fdlMaxRowMillis.top = new FormAttachment(wMaxRowCharsName, 15);
+    fdlMaxRowMillis.right = new FormAttachment(100, 0);
+    wMaxRowMillis.setLayoutData(fdlMaxRowMillis);
+
+    //over budget mode
+    wOverBudgetModeName = new Label(shell, SWT.RIGHT);
+    wOverBudgetModeName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.OverBudgetMode"));
+    props.setLook(wOverBudgetModeName);
+    fdlOverBudgetModeName = new FormData();
+    fdlOverBudgetModeName.left = new FormAttachment(0, 0);
+    fdlOverBudgetModeName.top = new FormAttachment(wMaxRowMillisName, 15);
+    fdlOverBudgetModeName.right = new FormAttachment(middle, -margin);
+    wOverBudgetModeName.setLayoutData(fdlOverBudgetModeName);
+    wOverBudgetMode = new CCombo(shell, SWT.BORDER | SWT.READ_ONLY);
+    for(String mode : LibPhonenumberPDIPluginMeta.OVER_BUDGET_MODES){
+      wOverBudgetMode.add(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.OverBudgetMode." + mode));
+    }
+    wOverBudgetMode.addModifyListener(lsMod);
+    props.setLook(wOverBudgetMode);
+    fdlOverBudgetMode = new FormData();
+    fdlOverBudgetMode.left = new FormAttachment(middle, 0);
+    fdlOverBudgetMode.top = new FormAttachment(wMaxRowMillisName, 15);
+    fdlOverBudgetMode.right = new FormAttachment(100, 0);
+    wOverBudgetMode.setLayoutData(fdlOverBudgetMode);
+
+    //output mode
+    wOutputModeName = new Label(shell, SWT.RIGHT);
+    wOutputModeName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.OutputMode"));
+    props.setLook(wOutputModeName);
+    fdlOutputModeName = new FormData();
+    fdlOutputModeName.left = new FormAttachment(0, 0);
+    fdlOutputModeName.top = new FormAttachment(wOverBudgetModeName, 15);
+    fdlOutputModeName.right = new FormAttachment(middle, -margin);
+    wOutputModeName.setLayoutData(fdlOutputModeName);
+    wOutputMode = new CCombo(shell, SWT.BORDER | SWT.READ_ONLY);
+    for(String mode : LibPhonenumberPDIPluginMeta.OUTPUT_MODES){
+      wOutputMode.add(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.OutputMode." + mode));
+    }
+    wOutputMode.addModifyListener(lsMod);
+    props.setLook(wOutputMode);
+    fdlOutputMode = new FormData();
+    fdlOutputMode.left = new FormAttachment(middle, 0);
+    fdlOutputMode.top = new FormAttachment(wOverBudgetModeName, 15);
+    fdlOutputMode.right = new FormAttachment(100, 0);
+    wOutputMode.setLayoutData(fdlOutputMode);
+
+    //delimiter
+    wDelimiterName = new Label(shell, SWT.RIGHT);
+    wDelimiterName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.Delimiter"));
+    props.setLook(wDelimiterName);
+    fdlDelimiterName = new FormData();
+    fdlDelimiterName.left = new FormAttachment(0, 0);
+    fdlDelimiterName.top = new FormAttachment(wOutputModeName, 15);
+    fdlDelimiterName.right = new FormAttachment(middle, -margin);
+    wDelimiterName.setLayoutData(fdlDelimiterName);
+    wDelimiter = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wDelimiter.setText("");
+    wDelimiter.addModifyListener(lsMod);
+    props.setLook(wDelimiter);
+    fdlDelimiter = new FormData();
+    fdlDelimiter.left = new FormAttachment(middle, 0);
+    fdlDelimiter.top = new FormAttachment(wOutputModeName, 15);
+    fdlDelimiter.right = new FormAttachment(100, 0);
+    wDelimiter.setLayoutData(fdlDelimiter);
+
+    //max columns
+    wMaxColumnsName = new Label(shell, SWT.RIGHT);
+    wMaxColumnsName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.MaxColumns"));
+    props.setLook(wMaxColumnsName);
+    fdlMaxColumnsName = new FormData();
+    fdlMaxColumnsName.left = new FormAttachment(0, 0);
+    fdlMaxColumnsName.top = new FormAttachment(wDelimiterName, 15);
+    fdlMaxColumnsName.right = new FormAttachment(middle, -margin);
+    wMaxColumnsName.setLayoutData(fdlMaxColumnsName);
+    wMaxColumns = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wMaxColumns.setText("");
+    wMaxColumns.addModifyListener(lsMod);
+    props.setLook(wMaxColumns);
+    fdlMaxColumns = new FormData();
+    fdlMaxColumns.left = new FormAttachment(middle, 0);
+    fdlMaxColumns.top = new FormAttachment(wDelimiterName, 15);
+    fdlMaxColumns.right = new FormAttachment(100, 0);
+    wMaxColumns.setLayoutData(fdlMaxColumns);
+
+    //location
+    wLocationFieldName = new Label(shell, SWT.RIGHT);
+    wLocationFieldName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.LocationField"));
+    props.setLook(wLocationFieldName);
+    fdlLocationFieldName = new FormData();
+    fdlLocationFieldName.left = new FormAttachment(0, 0);
+    fdlLocationFieldName.top = new FormAttachment(null, 15);
+    fdlLocationFieldName.right = new FormAttachment(middle, -margin);
+    wLocationFieldName.setLayoutData(fdlLocationFieldName);
+    wLocationField = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wLocationField.setText("");
+    wLocationField.addModifyListener(lsMod);
+    props.setLook(wLocationField);
+    fdlLocationField = new FormData();
+    fdlLocationField.left = new FormAttachment(middle, 0);
+    fdlLocationField.top = new FormAttachment(null, 15);
+    fdlLocationField.right = new FormAttachment(100, 0);
+    wLocationField.setLayoutData(fdlLocationField);
+
+    //carrier
+    wCarrierFieldName = new Label(shell, SWT.RIGHT);
+    wCarrierFieldName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.CarrierField"));
+    props.setLook(wCarrierFieldName);
+    fdlCarrierFieldName = new FormData();
+    fdlCarrierFieldName.left = new FormAttachment(0, 0);
+    fdlCarrierFieldName.top = new FormAttachment(wLocationFieldName, 15);
+    fdlCarrierFieldName.right = new FormAttachment(middle, -margin);
+    wCarrierFieldName.setLayoutData(fdlCarrierFieldName);
+    wCarrierField = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wCarrierField.setText("");
+    wCarrierField.addModifyListener(lsMod);
+    props.setLook(wCarrierField);
+    fdlCarrierField = new FormData();
+    fdlCarrierField.left = new FormAttachment(middle, 0);
+    fdlCarrierField.top = new FormAttachment(wLocationFieldName, 15);
+    fdlCarrierField.right = new FormAttachment(100, 0);
+    wCarrierField.setLayoutData(fdlCarrierField);
+
+    //time zone
+    wTimeZoneFieldName = new Label(shell, SWT.RIGHT);
+    wTimeZoneFieldName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.TimeZoneField"));
+    props.setLook(wTimeZoneFieldName);
+    fdlTimeZoneFieldName = new FormData();
+    fdlTimeZoneFieldName.left = new FormAttachment(0, 0);
+    fdlTimeZoneFieldName.top = new FormAttachment(wCarrierFieldName, 15);
+    fdlTimeZoneFieldName.right = new FormAttachment(middle, -margin);
+    wTimeZoneFieldName.setLayoutData(fdlTimeZoneFieldName);
+    wTimeZoneField = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wTimeZoneField.setText("");
+    wTimeZoneField.addModifyListener(lsMod);
+    props.setLook(wTimeZoneField);
+    fdlTimeZoneField = new FormData();
+    fdlTimeZoneField.left = new FormAttachment(middle, 0);
+    fdlTimeZoneField.top = new FormAttachment(wCarrierFieldName, 15);
+    fdlTimeZoneField.right = new FormAttachment(100, 0);
+    wTimeZoneField.setLayoutData(fdlTimeZoneField);
+
+    //enrichment language
+    wEnrichmentLanguageName = new Label(shell, SWT.RIGHT);
+    wEnrichmentLanguageName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.EnrichmentLanguage"));
+    props.setLook(wEnrichmentLanguageName);
+    fdlEnrichmentLanguageName = new FormData();
+    fdlEnrichmentLanguageName.left = new FormAttachment(0, 0);
+    fdlEnrichmentLanguageName.top = new FormAttachment(wTimeZoneFieldName, 15);
+    fdlEnrichmentLanguageName.right = new FormAttachment(middle, -margin);
+    wEnrichmentLanguageName.setLayoutData(fdlEnrichmentLanguageName);
+    wEnrichmentLanguage = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wEnrichmentLanguage.setText("");
+    wEnrichmentLanguage.addModifyListener(lsMod);
+    props.setLook(wEnrichmentLanguage);
+    fdlEnrichmentLanguage = new FormData();
+    fdlEnrichmentLanguage.left = new FormAttachment(middle, 0);
+    fdlEnrichmentLanguage.top = new FormAttachment(wTimeZoneFieldName, 15);
+    fdlEnrichmentLanguage.right = new FormAttachment(100, 0);
+    wEnrichmentLanguage.setLayoutData(fdlEnrichmentLanguage);
+
+    //number type
+    wNumberTypeFieldName = new Label(shell, SWT.RIGHT);
+    wNumberTypeFieldName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.NumberTypeField"));
+    props.setLook(wNumberTypeFieldName);
+    fdlNumberTypeFieldName = new FormData();
+    fdlNumberTypeFieldName.left = new FormAttachment(0, 0);
+    fdlNumberTypeFieldName.top = new FormAttachment(wEnrichmentLanguageName, 15);
+    fdlNumberTypeFieldName.right = new FormAttachment(middle, -margin);
+    wNumberTypeFieldName.setLayoutData(fdlNumberTypeFieldName);
+    wNumberTypeField = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wNumberTypeField.setText("");
+    wNumberTypeField.addModifyListener(lsMod);
+    props.setLook(wNumberTypeField);
+    fdlNumberTypeField = new FormData();
+    fdlNumberTypeField.left = new FormAttachment(middle, 0);
+    fdlNumberTypeField.top = new FormAttachment(wEnrichmentLanguageName, 15);
+    fdlNumberTypeField.right = new FormAttachment(100, 0);
+    wNumberTypeField.setLayoutData(fdlNumberTypeField);
+
+    //reference file
+    wReferenceFileName = new Label(shell, SWT.RIGHT);
+    wReferenceFileName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.ReferenceFile"));
+    props.setLook(wReferenceFileName);
+    fdlReferenceFileName = new FormData();
+    fdlReferenceFileName.left = new FormAttachment(0, 0);
+    fdlReferenceFileName.top = new FormAttachment(wNumberTypeFieldName, 15);
+    fdlReferenceFileName.right = new FormAttachment(middle, -margin);
+    wReferenceFileName.setLayoutData(fdlReferenceFileName);
+    wReferenceFile = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wReferenceFile.setText("");
+    wReferenceFile.addModifyListener(lsMod);
+    props.setLook(wReferenceFile);
+    fdlReferenceFile = new FormData();
+    fdlReferenceFile.left = new FormAttachment(middle, 0);
+    fdlReferenceFile.top = new FormAttachment(wNumberTypeFieldName, 15);
+    fdlReferenceFile.right = new FormAttachment(100, 0);
+    wReferenceFile.setLayoutData(fdlReferenceFile);
+
+    //reference mode
+    wReferenceModeName = new Label(shell, SWT.RIGHT);
+    wReferenceModeName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.ReferenceMode"));
+    props.setLook(wReferenceModeName);
+    fdlReferenceModeName = new FormData();
+    fdlReferenceModeName.left = new FormAttachment(0, 0);
+    fdlReferenceModeName.top = new FormAttachment(wReferenceFileName, 15);
+    fdlReferenceModeName.right = new FormAttachment(middle, -margin);
+    wReferenceModeName.setLayoutData(fdlReferenceModeName);
+    wReferenceMode = new CCombo(shell, SWT.BORDER | SWT.READ_ONLY);
+    for(String mode : LibPhonenumberPDIPluginMeta.REFERENCE_MODES){
+      wReferenceMode.add(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.ReferenceMode." + mode));
+    }
+    wReferenceMode.addModifyListener(lsMod);
+    props.setLook(wReferenceMode);
+    fdlReferenceMode = new FormData();
+    fdlReferenceMode.left = new FormAttachment(middle, 0);
+    fdlReferenceMode.top = new FormAttachment(wReferenceFileName, 15);
+    fdlReferenceMode.right = new FormAttachment(100, 0);
+    wReferenceMode.setLayoutData(fdlReferenceMode);
+
+    //reference flag
+    wReferenceFlagFieldName = new Label(shell, SWT.RIGHT);
+    wReferenceFlagFieldName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.ReferenceFlagField"));
+    props.setLook(wReferenceFlagFieldName);
+    fdlReferenceFlagFieldName = new FormData();
+    fdlReferenceFlagFieldName.left = new FormAttachment(0, 0);
+    fdlReferenceFlagFieldName.top = new FormAttachment(wReferenceModeName, 15);
+    fdlReferenceFlagFieldName.right = new FormAttachment(middle, -margin);
+    wReferenceFlagFieldName.setLayoutData(fdlReferenceFlagFieldName);
+    wReferenceFlagField = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wReferenceFlagField.setText("");
+    wReferenceFlagField.addModifyListener(lsMod);
+    props.setLook(wReferenceFlagField);
+    fdlReferenceFlagField = new FormData();
+    fdlReferenceFlagField.left = new FormAttachment(middle, 0);
+    fdlReferenceFlagField.top = new FormAttachment(wReferenceModeName, 15);
+    fdlReferenceFlagField.right = new FormAttachment(100, 0);
+    wReferenceFlagField.setLayoutData(fdlReferenceFlagField);
+
+    //persistent cache file
+    wPersistentCacheFileName = new Label(shell, SWT.RIGHT);
+    wPersistentCacheFileName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.PersistentCacheFile"));
+    props.setLook(wPersistentCacheFileName);
+    fdlPersistentCacheFileName = new FormData();
+    fdlPersistentCacheFileName.left = new FormAttachment(0, 0);
+    fdlPersistentCacheFileName.top = new FormAttachment(wReferenceFlagFieldName, 15);
+    fdlPersistentCacheFileName.right = new FormAttachment(middle, -margin);
+    wPersistentCacheFileName.setLayoutData(fdlPersistentCacheFileName);
+    wPersistentCacheFile = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wPersistentCacheFile.setText("");
+    wPersistentCacheFile.addModifyListener(lsMod);
+    props.setLook(wPersistentCacheFile);
+    fdlPersistentCacheFile = new FormData();
+    fdlPersistentCacheFile.left = new FormAttachment(middle, 0);
+    fdlPersistentCacheFile.top = new FormAttachment(wReferenceFlagFieldName, 15);
+    fdlPersistentCacheFile.right = new FormAttachment(100, 0);
+    wPersistentCacheFile.setLayoutData(fdlPersistentCacheFile);
+
+    //persistent cache entries
+    wPersistentCacheEntriesName = new Label(shell, SWT.RIGHT);
+    wPersistentCacheEntriesName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.PersistentCacheEntries"));
+    props.setLook(wPersistentCacheEntriesName);
+    fdlPersistentCacheEntriesName = new FormData();
+    fdlPersistentCacheEntriesName.left = new FormAttachment(0, 0);
+    fdlPersistentCacheEntriesName.top = new FormAttachment(wPersistentCacheFileName, 15);
+    fdlPersistentCacheEntriesName.right = new FormAttachment(middle, -margin);
+    wPersistentCacheEntriesName.setLayoutData(fdlPersistentCacheEntriesName);
+    wPersistentCacheEntries = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wPersistentCacheEntries.setText("");
+    wPersistentCacheEntries.addModifyListener(lsMod);
+    props.setLook(wPersistentCacheEntries);
+    fdlPersistentCacheEntries = new FormData();
+    fdlPersistentCacheEntries.left = new FormAttachment(middle, 0);
+    fdlPersistentCacheEntries.top = new FormAttachment(wPersistentCacheFileName, 15);
+    fdlPersistentCacheEntries.right = new FormAttachment(100, 0);
+    wPersistentCacheEntries.setLayoutData(fdlPersistentCacheEntries);
+
+    //incremental state file
+    wIncrementalStateFileName = new Label(shell, SWT.RIGHT);
+    wIncrementalStateFileName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.IncrementalStateFile"));
+    props.setLook(wIncrementalStateFileName);
+    fdlIncrementalStateFileName = new FormData();
+    fdlIncrementalStateFileName.left = new FormAttachment(0, 0);
+    fdlIncrementalStateFileName.top = new FormAttachment(wPersistentCacheEntriesName, 15);
+    fdlIncrementalStateFileName.right = new FormAttachment(middle, -margin);
+    wIncrementalStateFileName.setLayoutData(fdlIncrementalStateFileName);
+    wIncrementalStateFile = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wIncrementalStateFile.setText("");
+    wIncrementalStateFile.addModifyListener(lsMod);
+    props.setLook(wIncrementalStateFile);
+    fdlIncrementalStateFile = new FormData();
+    fdlIncrementalStateFile.left = new FormAttachment(middle, 0);
+    fdlIncrementalStateFile.top = new FormAttachment(wPersistentCacheEntriesName, 15);
+    fdlIncrementalStateFile.right = new FormAttachment(100, 0);
+    wIncrementalStateFile.setLayoutData(fdlIncrementalStateFile);
+
+    //incremental key field
+    wIncrementalKeyFieldName = new Label(shell, SWT.RIGHT);
+    wIncrementalKeyFieldName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.IncrementalKeyField"));
+    props.setLook(wIncrementalKeyFieldName);
+    fdlIncrementalKeyFieldName = new FormData();
+    fdlIncrementalKeyFieldName.left = new FormAttachment(0, 0);
+    fdlIncrementalKeyFieldName.top = new FormAttachment(wIncrementalStateFileName, 15);
+    fdlIncrementalKeyFieldName.right = new FormAttachment(middle, -margin);
+    wIncrementalKeyFieldName.setLayoutData(fdlIncrementalKeyFieldName);
+    wIncrementalKeyField = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wIncrementalKeyField.setText("");
+    wIncrementalKeyField.addModifyListener(lsMod);
+    props.setLook(wIncrementalKeyField);
+    fdlIncrementalKeyField = new FormData();
+    fdlIncrementalKeyField.left = new FormAttachment(middle, 0);
+    fdlIncrementalKeyField.top = new FormAttachment(wIncrementalStateFileName, 15);
+    fdlIncrementalKeyField.right = new FormAttachment(100, 0);
+    wIncrementalKeyField.setLayoutData(fdlIncrementalKeyField);
+
     // OK and cancel buttons
     wOK = new Button(shell, SWT.PUSH);
     wOK.setText(BaseMessages.getString(PKG, "System.Button.OK"));
     wCancel = new Button(shell, SWT.PUSH);
     wCancel.setText(BaseMessages.getString(PKG, "System.Button.Cancel"));
-    setButtonPositions(new Button[]{wOK, wCancel}, margin, wCheckValidName);
+    setButtonPositions(new Button[]{wOK, wCancel}, margin, wIncrementalKeyFieldName);
+
+    //additional input fields, extracted in the same pass
+    wAdditionalFieldsName = new Label(shell, SWT.LEFT);
+    wAdditionalFieldsName.setText(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.Output.AdditionalFields"));
+    props.setLook(wAdditionalFieldsName);
+    FormData fdlAdditionalFieldsName = new FormData();
+    fdlAdditionalFieldsName.left = new FormAttachment(0, 0);
+    fdlAdditionalFieldsName.top = new FormAttachment(wMaxColumnsName, 15);
+    wAdditionalFieldsName.setLayoutData(fdlAdditionalFieldsName);
+    String[] modes = new String[]{
+      BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.AdditionalFields.Parse"),
+      BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.AdditionalFields.FindMatches") };
+    ColumnInfo[] columns = new ColumnInfo[]{
+      new ColumnInfo(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.AdditionalFields.InField"),
+        ColumnInfo.COLUMN_TYPE_CCOMBO, wInFieldCombo.getItems(), false),
+      new ColumnInfo(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.AdditionalFields.OutField"),
+        ColumnInfo.COLUMN_TYPE_TEXT, false),
+      new ColumnInfo(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.AdditionalFields.CountryCodeField"),
+        ColumnInfo.COLUMN_TYPE_TEXT, false),
+      new ColumnInfo(BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.AdditionalFields.Mode"),
+        ColumnInfo.COLUMN_TYPE_CCOMBO, modes, true) };
+    wAdditionalFields = new TableView(transMeta, shell, SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI, columns,
+      meta.getAdditionalInFields().length, lsMod, props);
+    FormData fdAdditionalFields = new FormData();
+    fdAdditionalFields.left = new FormAttachment(0, 0);
+    fdAdditionalFields.top = new FormAttachment(wAdditionalFieldsName, margin);
+    fdAdditionalFields.right = new FormAttachment(100, 0);
+    fdAdditionalFields.bottom = new FormAttachment(wOK, -2 * margin);
+    wAdditionalFields.setLayoutData(fdAdditionalFields);
 
     // Add listeners for cancel and OK
     lsCancel = new Listener() {
@@ -314,6 +1267,46 @@ public class LibPhonenumberPDIPluginDialog extends BaseStepDialog implements Ste
     wOutField.addSelectionListener(lsDef);
     wInFieldCombo.addSelectionListener(lsDef);
     wRegionField.addSelectionListener(lsDef);
+    wCacheSize.addSelectionListener(lsDef);
+    wPrefilterMinDigits.addSelectionListener(lsDef);
+    wNanpFastPath.addSelectionListener(lsDef);
+    wParallelWorkers.addSelectionListener(lsDef);
+    wRegionInField.addSelectionListener(lsDef);
+    wWarmUp.addSelectionListener(lsDef);
+    wWarmUpRegions.addSelectionListener(lsDef);
+    wErrorMode.addSelectionListener(lsDef);
+    wMetricsEnabled.addSelectionListener(lsDef);
+    wMetricsJmx.addSelectionListener(lsDef);
+    wE164Field.addSelectionListener(lsDef);
+    wInternationalField.addSelectionListener(lsDef);
+    wNationalField.addSelectionListener(lsDef);
+    wRfc3966Field.addSelectionListener(lsDef);
+    wDedupe.addSelectionListener(lsDef);
+    wDedupeMemoryMb.addSelectionListener(lsDef);
+    wAggregate.addSelectionListener(lsDef);
+    wCountField.addSelectionListener(lsDef);
+    wTopK.addSelectionListener(lsDef);
+    wChunkSize.addSelectionListener(lsDef);
+    wLeniency.addSelectionListener(lsDef);
+    wMaxTries.addSelectionListener(lsDef);
+    wMaxRowChars.addSelectionListener(lsDef);
+    wMaxRowMillis.addSelectionListener(lsDef);
+    wOverBudgetMode.addSelectionListener(lsDef);
+    wOutputMode.addSelectionListener(lsDef);
+    wDelimiter.addSelectionListener(lsDef);
+    wMaxColumns.addSelectionListener(lsDef);
+    wLocationField.addSelectionListener(lsDef);
+    wCarrierField.addSelectionListener(lsDef);
+    wTimeZoneField.addSelectionListener(lsDef);
+    wEnrichmentLanguage.addSelectionListener(lsDef);
+    wNumberTypeField.addSelectionListener(lsDef);
+    wReferenceFile.addSelectionListener(lsDef);
+    wReferenceMode.addSelectionListener(lsDef);
+    wReferenceFlagField.addSelectionListener(lsDef);
+    wPersistentCacheFile.addSelectionListener(lsDef);
+    wPersistentCacheEntries.addSelectionListener(lsDef);
+    wIncrementalStateFile.addSelectionListener(lsDef);
+    wIncrementalKeyField.addSelectionListener(lsDef);
 
 
     // Detect X or ALT-F4 or something that kills this window and cancel the dialog properly
@@ -357,6 +1350,58 @@ public class LibPhonenumberPDIPluginDialog extends BaseStepDialog implements Ste
     wcheckValid.setSelection(meta.isCheckValid());
     wFindMatches.setSelection(meta.isFindMatches());
     wRegionField.setText(Const.NVL(meta.getRegion(), ""));
+    wCacheSize.setText(Integer.toString(meta.getCacheSize()));
+    wPrefilterMinDigits.setText(Integer.toString(meta.getPrefilterMinDigits()));
+    wNanpFastPath.setSelection(meta.isNanpFastPath());
+    wParallelWorkers.setText(Integer.toString(meta.getParallelWorkers()));
+    wRegionInField.setText(Const.NVL(meta.getRegionInField(), ""));
+    wWarmUp.setSelection(meta.isWarmUp());
+    wWarmUpRegions.setText(Const.NVL(meta.getWarmUpRegions(), ""));
+    wErrorMode.select(Math.max(0, Arrays.asList(LibPhonenumberPDIPluginMeta.ERROR_MODES).indexOf(meta.getErrorMode())));
+    wMetricsEnabled.setSelection(meta.isMetricsEnabled());
+    wMetricsJmx.setSelection(meta.isMetricsJmx());
+    wE164Field.setText(Const.NVL(meta.getE164Field(), ""));
+    wInternationalField.setText(Const.NVL(meta.getInternationalField(), ""));
+    wNationalField.setText(Const.NVL(meta.getNationalField(), ""));
+    wRfc3966Field.setText(Const.NVL(meta.getRfc3966Field(), ""));
+    wDedupe.setSelection(meta.isDedupe());
+    wDedupeMemoryMb.setText(Integer.toString(meta.getDedupeMemoryMb()));
+    wAggregate.setSelection(meta.isAggregate());
+    wCountField.setText(Const.NVL(meta.getCountField(), ""));
+    wTopK.setText(Integer.toString(meta.getTopK()));
+    wChunkSize.setText(Integer.toString(meta.getChunkSize()));
+    wLeniency.select(Math.max(0, Arrays.asList(LibPhonenumberPDIPluginMeta.LENIENCIES).indexOf(meta.getLeniency())));
+    wMaxTries.setText(Long.toString(meta.getMaxTries()));
+    wMaxRowChars.setText(Integer.toString(meta.getMaxRowChars()));
+    wMaxRowMillis.setText(Integer.toString(meta.getMaxRowMillis()));
+    wOverBudgetMode.select(Math.max(0, Arrays.asList(LibPhonenumberPDIPluginMeta.OVER_BUDGET_MODES).indexOf(meta.getOverBudgetMode())));
+    wOutputMode.select(Math.max(0, Arrays.asList(LibPhonenumberPDIPluginMeta.OUTPUT_MODES).indexOf(meta.getOutputMode())));
+    wDelimiter.setText(Const.NVL(meta.getDelimiter(), ""));
+    wMaxColumns.setText(Integer.toString(meta.getMaxColumns()));
+    String[] modes = new String[]{
+      BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.AdditionalFields.Parse"),
+      BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.AdditionalFields.FindMatches") };
+    for(int i = 0; i < meta.getAdditionalInFields().length; i++){
+      TableItem item = wAdditionalFields.table.getItem(i);
+      item.setText(1, Const.NVL(meta.getAdditionalInFields()[i], ""));
+      item.setText(2, Const.NVL(meta.getAdditionalOutFields()[i], ""));
+      item.setText(3, Const.NVL(meta.getAdditionalCountryCodeFields()[i], ""));
+      item.setText(4, modes[meta.getAdditionalFindMatches()[i] ? 1 : 0]);
+    }
+    wAdditionalFields.setRowNums();
+    wAdditionalFields.optWidth(true);
+    wLocationField.setText(Const.NVL(meta.getLocationField(), ""));
+    wCarrierField.setText(Const.NVL(meta.getCarrierField(), ""));
+    wTimeZoneField.setText(Const.NVL(meta.getTimeZoneField(), ""));
+    wEnrichmentLanguage.setText(Const.NVL(meta.getEnrichmentLanguage(), ""));
+    wNumberTypeField.setText(Const.NVL(meta.getNumberTypeField(), ""));
+    wReferenceFile.setText(Const.NVL(meta.getReferenceFile(), ""));
+    wReferenceMode.select(Math.max(0, Arrays.asList(LibPhonenumberPDIPluginMeta.REFERENCE_MODES).indexOf(meta.getReferenceMode())));
+    wReferenceFlagField.setText(Const.NVL(meta.getReferenceFlagField(), ""));
+    wPersistentCacheFile.setText(Const.NVL(meta.getPersistentCacheFile(), ""));
+    wPersistentCacheEntries.setText(Long.toString(meta.getPersistentCacheEntries()));
+    wIncrementalStateFile.setText(Const.NVL(meta.getIncrementalStateFile(), ""));
+    wIncrementalKeyField.setText(Const.NVL(meta.getIncrementalKeyField(), ""));
     wStepname.setFocus();
   }
 
@@ -383,6 +1428,46 @@ public class LibPhonenumberPDIPluginDialog extends BaseStepDialog implements Ste
     String region = wRegionField.getText();
     boolean checkValid = wcheckValid.getSelection();
     boolean findMatches = wFindMatches.getSelection();
+    int cacheSize = Const.toInt(wCacheSize.getText(), 0);
+    int prefilterMinDigits = Const.toInt(wPrefilterMinDigits.getText(), 0);
+    boolean nanpFastPath = wNanpFastPath.getSelection();
+    int parallelWorkers = Const.toInt(wParallelWorkers.getText(), 0);
+    String regionInField = wRegionInField.getText();
+    boolean warmUp = wWarmUp.getSelection();
+    String warmUpRegions = wWarmUpRegions.getText();
+    String errorMode = LibPhonenumberPDIPluginMeta.ERROR_MODES[Math.max(0, wErrorMode.getSelectionIndex())];
+    boolean metricsEnabled = wMetricsEnabled.getSelection();
+    boolean metricsJmx = wMetricsJmx.getSelection();
+    String e164Field = wE164Field.getText();
+    String internationalField = wInternationalField.getText();
+    String nationalField = wNationalField.getText();
+    String rfc3966Field = wRfc3966Field.getText();
+    boolean dedupe = wDedupe.getSelection();
+    int dedupeMemoryMb = Const.toInt(wDedupeMemoryMb.getText(), 0);
+    boolean aggregate = wAggregate.getSelection();
+    String countField = wCountField.getText();
+    int topK = Const.toInt(wTopK.getText(), 0);
+    int chunkSize = Const.toInt(wChunkSize.getText(), 0);
+    String leniency = LibPhonenumberPDIPluginMeta.LENIENCIES[Math.max(0, wLeniency.getSelectionIndex())];
+    long maxTries = Const.toLong(wMaxTries.getText(), 0);
+    int maxRowChars = Const.toInt(wMaxRowChars.getText(), 0);
+    int maxRowMillis = Const.toInt(wMaxRowMillis.getText(), 0);
+    String overBudgetMode = LibPhonenumberPDIPluginMeta.OVER_BUDGET_MODES[Math.max(0, wOverBudgetMode.getSelectionIndex())];
+    String outputMode = LibPhonenumberPDIPluginMeta.OUTPUT_MODES[Math.max(0, wOutputMode.getSelectionIndex())];
+    String delimiter = wDelimiter.getText();
+    int maxColumns = Const.toInt(wMaxColumns.getText(), LibPhonenumberPDIPluginMeta.DEFAULT_MAX_COLUMNS);
+    String locationField = wLocationField.getText();
+    String carrierField = wCarrierField.getText();
+    String timeZoneField = wTimeZoneField.getText();
+    String enrichmentLanguage = wEnrichmentLanguage.getText();
+    String numberTypeField = wNumberTypeField.getText();
+    String referenceFile = wReferenceFile.getText();
+    String referenceMode = LibPhonenumberPDIPluginMeta.REFERENCE_MODES[Math.max(0, wReferenceMode.getSelectionIndex())];
+    String referenceFlagField = wReferenceFlagField.getText();
+    String persistentCacheFile = wPersistentCacheFile.getText();
+    long persistentCacheEntries = Const.toLong(wPersistentCacheEntries.getText(), LibPhonenumberPDIPluginMeta.DEFAULT_PERSISTENT_CACHE_ENTRIES);
+    String incrementalStateFile = wIncrementalStateFile.getText();
+    String incrementalKeyField = wIncrementalKeyField.getText();
 
     meta.setInField(inField);
     meta.setOutField(outField);
@@ -390,6 +1475,56 @@ public class LibPhonenumberPDIPluginDialog extends BaseStepDialog implements Ste
     meta.setFindMatches(findMatches);
     meta.setCheckValid(checkValid);
     meta.setRegion(region);
+    meta.setCacheSize(cacheSize);
+    meta.setPrefilterMinDigits(prefilterMinDigits);
+    meta.setNanpFastPath(nanpFastPath);
+    meta.setParallelWorkers(parallelWorkers);
+    meta.setRegionInField(regionInField);
+    meta.setWarmUp(warmUp);
+    meta.setWarmUpRegions(warmUpRegions);
+    meta.setErrorMode(errorMode);
+    meta.setMetricsEnabled(metricsEnabled);
+    meta.setMetricsJmx(metricsJmx);
+    meta.setE164Field(e164Field);
+    meta.setInternationalField(internationalField);
+    meta.setNationalField(nationalField);
+    meta.setRfc3966Field(rfc3966Field);
+    meta.setDedupe(dedupe);
+    meta.setDedupeMemoryMb(dedupeMemoryMb);
+    meta.setAggregate(aggregate);
+    meta.setCountField(countField);
+    meta.setTopK(topK);
+    meta.setChunkSize(chunkSize);
+    meta.setLeniency(leniency);
+    meta.setMaxTries(maxTries);
+    meta.setMaxRowChars(maxRowChars);
+    meta.setMaxRowMillis(maxRowMillis);
+    meta.setOverBudgetMode(overBudgetMode);
+    meta.setOutputMode(outputMode);
+    meta.setDelimiter(delimiter);
+    meta.setMaxColumns(maxColumns);
+    String findMatchesMode = BaseMessages.getString(PKG, "LibPhonenumberPDIPluginDialog.AdditionalFields.FindMatches");
+    int additional = wAdditionalFields.nrNonEmpty();
+    meta.allocateAdditionalFields(additional);
+    for(int i = 0; i < additional; i++){
+      TableItem item = wAdditionalFields.getNonEmpty(i);
+      meta.getAdditionalInFields()[i] = item.getText(1);
+      meta.getAdditionalOutFields()[i] = item.getText(2);
+      meta.getAdditionalCountryCodeFields()[i] = item.getText(3);
+      meta.getAdditionalFindMatches()[i] = findMatchesMode.equals(item.getText(4));
+    }
+    meta.setLocationField(locationField);
+    meta.setCarrierField(carrierField);
+    meta.setTimeZoneField(timeZoneField);
+    meta.setEnrichmentLanguage(enrichmentLanguage);
+    meta.setNumberTypeField(numberTypeField);
+    meta.setReferenceFile(referenceFile);
+    meta.setReferenceMode(referenceMode);
+    meta.setReferenceFlagField(referenceFlagField);
+    meta.setPersistentCacheFile(persistentCacheFile);
+    meta.setPersistentCacheEntries(persistentCacheEntries);
+    meta.setIncrementalStateFile(incrementalStateFile);
+    meta.setIncrementalKeyField(incrementalKeyField);
     dispose();
   }
 }
\ No newline at end of file
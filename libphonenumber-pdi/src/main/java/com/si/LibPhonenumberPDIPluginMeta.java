@@ -28,8 +28,11 @@ import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.exception.KettleXMLException;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBoolean;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
 import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.xml.XMLHandler;
 import org.pentaho.di.i18n.BaseMessages;
@@ -56,6 +59,90 @@ public class LibPhonenumberPDIPluginMeta extends BaseStepMeta implements StepMet
   private String countryCodeField;
   private boolean checkValid;
   private boolean findMatches;
+  private int cacheSize;
+  private int prefilterMinDigits;
+  private boolean nanpFastPath;
+  private int parallelWorkers;
+  private String regionInField;
+  private boolean warmUp;
+  private String warmUpRegions;
+  private String errorMode;
+  private boolean metricsEnabled;
+  private boolean metricsJmx;
+  private String e164Field;
+  private String internationalField;
+  private String nationalField;
+  private String rfc3966Field;
+  private boolean dedupe;
+  private int dedupeMemoryMb;
+  private boolean aggregate;
+  private String countField;
+  private int topK;
+  private int chunkSize;
+  private String leniency;
+  private long maxTries;
+  private int maxRowChars;
+  private int maxRowMillis;
+  private String overBudgetMode;
+  private String outputMode;
+  private String delimiter;
+  private int maxColumns;
+  private String locationField;
+  private String carrierField;
+  private String timeZoneField;
+  private String enrichmentLanguage;
+  private String numberTypeField;
+  private String referenceFile;
+  private String referenceMode;
+  private String referenceFlagField;
+  private String persistentCacheFile;
+  private long persistentCacheEntries;
+  private String incrementalStateFile;
+  private String incrementalKeyField;
+  private String[] additionalInFields = new String[0];
+  private String[] additionalOutFields = new String[0];
+  private String[] additionalCountryCodeFields = new String[0];
+  private boolean[] additionalFindMatches = new boolean[0];
+
+  /** Keep the row with an empty output field. */
+  public static final String ERROR_MODE_PASS = "pass";
+  /** Drop the row. */
+  public static final String ERROR_MODE_DROP = "drop";
+  /** Send the row to the error hop. */
+  public static final String ERROR_MODE_ERROR = "error";
+  public static final String[] ERROR_MODES = { ERROR_MODE_PASS, ERROR_MODE_DROP, ERROR_MODE_ERROR };
+
+  /** Scan rows over the budget up to the budget and keep what was found. */
+  public static final String OVER_BUDGET_TRUNCATE = "truncate";
+  /** Pass rows over the budget through without numbers. */
+  public static final String OVER_BUDGET_PASS = "pass";
+  /** Send rows over the budget to the error hop. */
+  public static final String OVER_BUDGET_ERROR = "error";
+  public static final String[] OVER_BUDGET_MODES = { OVER_BUDGET_TRUNCATE, OVER_BUDGET_PASS, OVER_BUDGET_ERROR };
+
+  /** One output row per number found. */
+  public static final String OUTPUT_ROWS = "rows";
+  /** One output row per input row, the numbers joined with the delimiter. */
+  public static final String OUTPUT_DELIMITED = "delimited";
+  /** One output row per input row, the numbers in indexed columns. */
+  public static final String OUTPUT_COLUMNS = "columns";
+  public static final String[] OUTPUT_MODES = { OUTPUT_ROWS, OUTPUT_DELIMITED, OUTPUT_COLUMNS };
+  /** The indexed columns per output field unless set. */
+  public static final int DEFAULT_MAX_COLUMNS = 5;
+
+  /** Flag each number found in the reference index. */
+  public static final String REFERENCE_FLAG = "flag";
+  /** Keep only the numbers found in the reference index. */
+  public static final String REFERENCE_KEEP = "keep";
+  /** Drop the numbers found in the reference index. */
+  public static final String REFERENCE_DROP = "drop";
+  public static final String[] REFERENCE_MODES = { REFERENCE_FLAG, REFERENCE_KEEP, REFERENCE_DROP };
+
+  /** The results kept in the persistent cache file unless set. */
+  public static final long DEFAULT_PERSISTENT_CACHE_ENTRIES = 1L << 24;
+
+  /** The matcher leniencies, by PhoneNumberUtil.Leniency name, loosest first. */
+  public static final String[] LENIENCIES = { "POSSIBLE", "VALID", "STRICT_GROUPING", "EXACT_GROUPING" };
 
   private static Class<?> PKG = LibPhonenumberPDIPlugin.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
 
@@ -111,6 +198,355 @@ public class LibPhonenumberPDIPluginMeta extends BaseStepMeta implements StepMet
     this.findMatches = findMatches;
   }
 
+  public int getCacheSize() {
+    return cacheSize;
+  }
+
+  public void setCacheSize(int cacheSize) {
+    this.cacheSize = cacheSize;
+  }
+
+  public int getPrefilterMinDigits() {
+    return prefilterMinDigits;
+  }
+
+  public void setPrefilterMinDigits(int prefilterMinDigits) {
+    this.prefilterMinDigits = prefilterMinDigits;
+  }
+
+  public boolean isNanpFastPath() {
+    return nanpFastPath;
+  }
+
+  public void setNanpFastPath(boolean nanpFastPath) {
+    this.nanpFastPath = nanpFastPath;
+  }
+
+  public int getParallelWorkers() {
+    return parallelWorkers;
+  }
+
+  public void setParallelWorkers(int parallelWorkers) {
+    this.parallelWorkers = parallelWorkers;
+  }
+
+  public String getRegionInField() {
+    return regionInField;
+  }
+
+  public void setRegionInField(String regionInField) {
+    this.regionInField = regionInField;
+  }
+
+  public boolean isWarmUp() {
+    return warmUp;
+  }
+
+  public void setWarmUp(boolean warmUp) {
+    this.warmUp = warmUp;
+  }
+
+  public String getWarmUpRegions() {
+    return warmUpRegions;
+  }
+
+  public void setWarmUpRegions(String warmUpRegions) {
+    this.warmUpRegions = warmUpRegions;
+  }
+
+  public String getErrorMode() {
+    return errorMode;
+  }
+
+  public void setErrorMode(String errorMode) {
+    this.errorMode = errorMode;
+  }
+
+  public boolean isMetricsEnabled() {
+    return metricsEnabled;
+  }
+
+  public void setMetricsEnabled(boolean metricsEnabled) {
+    this.metricsEnabled = metricsEnabled;
+  }
+
+  public boolean isMetricsJmx() {
+    return metricsJmx;
+  }
+
+  public void setMetricsJmx(boolean metricsJmx) {
+    this.metricsJmx = metricsJmx;
+  }
+
+  public String getE164Field() {
+    return e164Field;
+  }
+
+  public void setE164Field(String e164Field) {
+    this.e164Field = e164Field;
+  }
+
+  public String getInternationalField() {
+    return internationalField;
+  }
+
+  public void setInternationalField(String internationalField) {
+    this.internationalField = internationalField;
+  }
+
+  public String getNationalField() {
+    return nationalField;
+  }
+
+  public void setNationalField(String nationalField) {
+    this.nationalField = nationalField;
+  }
+
+  public String getRfc3966Field() {
+    return rfc3966Field;
+  }
+
+  public void setRfc3966Field(String rfc3966Field) {
+    this.rfc3966Field = rfc3966Field;
+  }
+
+  public boolean isDedupe() {
+    return dedupe;
+  }
+
+  public void setDedupe(boolean dedupe) {
+    this.dedupe = dedupe;
+  }
+
+  public int getDedupeMemoryMb() {
+    return dedupeMemoryMb;
+  }
+
+  public void setDedupeMemoryMb(int dedupeMemoryMb) {
+    this.dedupeMemoryMb = dedupeMemoryMb;
+  }
+
+  public boolean isAggregate() {
+    return aggregate;
+  }
+
+  public void setAggregate(boolean aggregate) {
+    this.aggregate = aggregate;
+  }
+
+  public String getCountField() {
+    return countField;
+  }
+
+  public void setCountField(String countField) {
+    this.countField = countField;
+  }
+
+  public int getTopK() {
+    return topK;
+  }
+
+  public void setTopK(int topK) {
+    this.topK = topK;
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public void setChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  public String getLeniency() {
+    return leniency;
+  }
+
+  public void setLeniency(String leniency) {
+    this.leniency = leniency;
+  }
+
+  public long getMaxTries() {
+    return maxTries;
+  }
+
+  public void setMaxTries(long maxTries) {
+    this.maxTries = maxTries;
+  }
+
+  public int getMaxRowChars() {
+    return maxRowChars;
+  }
+
+  public void setMaxRowChars(int maxRowChars) {
+    this.maxRowChars = maxRowChars;
+  }
+
+  public int getMaxRowMillis() {
+    return maxRowMillis;
+  }
+
+  public void setMaxRowMillis(int maxRowMillis) {
+    this.maxRowMillis = maxRowMillis;
+  }
+
+  public String getOverBudgetMode() {
+    return overBudgetMode;
+  }
+
+  public void setOverBudgetMode(String overBudgetMode) {
+    this.overBudgetMode = overBudgetMode;
+  }
+
+  public String getOutputMode() {
+    return outputMode;
+  }
+
+  public void setOutputMode(String outputMode) {
+    this.outputMode = outputMode;
+  }
+
+  public String getDelimiter() {
+    return delimiter;
+  }
+
+  public void setDelimiter(String delimiter) {
+    this.delimiter = delimiter;
+  }
+
+  public int getMaxColumns() {
+    return maxColumns;
+  }
+
+  public void setMaxColumns(int maxColumns) {
+    this.maxColumns = maxColumns;
+  }
+
+  /**
+   * Size the additional field lists, extracted in the same pass as the
+   * input field.
+   *
+   * @param count       The number of additional fields
+   */
+  public void allocateAdditionalFields(int count) {
+    additionalInFields = new String[count];
+    additionalOutFields = new String[count];
+    additionalCountryCodeFields = new String[count];
+    additionalFindMatches = new boolean[count];
+  }
+
+  public String[] getAdditionalInFields() {
+    return additionalInFields;
+  }
+
+  public String[] getAdditionalOutFields() {
+    return additionalOutFields;
+  }
+
+  public String[] getAdditionalCountryCodeFields() {
+    return additionalCountryCodeFields;
+  }
+
+  public boolean[] getAdditionalFindMatches() {
+    return additionalFindMatches;
+  }
+
+  public String getLocationField() {
+    return locationField;
+  }
+
+  public void setLocationField(String locationField) {
+    this.locationField = locationField;
+  }
+
+  public String getCarrierField() {
+    return carrierField;
+  }
+
+  public void setCarrierField(String carrierField) {
+    this.carrierField = carrierField;
+  }
+
+  public String getTimeZoneField() {
+    return timeZoneField;
+  }
+
+  public void setTimeZoneField(String timeZoneField) {
+    this.timeZoneField = timeZoneField;
+  }
+
+  public String getEnrichmentLanguage() {
+    return enrichmentLanguage;
+  }
+
+  public void setEnrichmentLanguage(String enrichmentLanguage) {
+    this.enrichmentLanguage = enrichmentLanguage;
+  }
+
+  public String getNumberTypeField() {
+    return numberTypeField;
+  }
+
+  public void setNumberTypeField(String numberTypeField) {
+    this.numberTypeField = numberTypeField;
+  }
+
+  public String getReferenceFile() {
+    return referenceFile;
+  }
+
+  public void setReferenceFile(String referenceFile) {
+    this.referenceFile = referenceFile;
+  }
+
+  public String getReferenceMode() {
+    return referenceMode;
+  }
+
+  public void setReferenceMode(String referenceMode) {
+    this.referenceMode = referenceMode;
+  }
+
+  public String getReferenceFlagField() {
+    return referenceFlagField;
+  }
+
+  public void setReferenceFlagField(String referenceFlagField) {
+    this.referenceFlagField = referenceFlagField;
+  }
+
+  public String getPersistentCacheFile() {
+    return persistentCacheFile;
+  }
+
+  public void setPersistentCacheFile(String persistentCacheFile) {
+    this.persistentCacheFile = persistentCacheFile;
+  }
+
+  public long getPersistentCacheEntries() {
+    return persistentCacheEntries;
+  }
+
+  public void setPersistentCacheEntries(long persistentCacheEntries) {
+    this.persistentCacheEntries = persistentCacheEntries;
+  }
+
+  public String getIncrementalStateFile() {
+    return incrementalStateFile;
+  }
+
+  public void setIncrementalStateFile(String incrementalStateFile) {
+    this.incrementalStateFile = incrementalStateFile;
+  }
+
+  public String getIncrementalKeyField() {
+    return incrementalKeyField;
+  }
+
+  public void setIncrementalKeyField(String incrementalKeyField) {
+    this.incrementalKeyField = incrementalKeyField;
+  }
+
   public String getXML() throws KettleValueException {
     StringBuilder xml = new StringBuilder();
     xml.append( XMLHandler.addTagValue( "inField", inField ) );
@@ -119,6 +555,56 @@ public class LibPhonenumberPDIPluginMeta extends BaseStepMeta implements StepMet
     xml.append(XMLHandler.addTagValue("checkValid", checkValid));
     xml.append(XMLHandler.addTagValue("findMatches", findMatches));
     xml.append(XMLHandler.addTagValue("region", region));
+    xml.append(XMLHandler.addTagValue("cacheSize", cacheSize));
+    xml.append(XMLHandler.addTagValue("prefilterMinDigits", prefilterMinDigits));
+    xml.append(XMLHandler.addTagValue("nanpFastPath", nanpFastPath));
+    xml.append(XMLHandler.addTagValue("parallelWorkers", parallelWorkers));
+    xml.append(XMLHandler.addTagValue("regionInField", regionInField));
+    xml.append(XMLHandler.addTagValue("warmUp", warmUp));
+    xml.append(XMLHandler.addTagValue("warmUpRegions", warmUpRegions));
+    xml.append(XMLHandler.addTagValue("errorMode", errorMode));
+    xml.append(XMLHandler.addTagValue("metricsEnabled", metricsEnabled));
+    xml.append(XMLHandler.addTagValue("metricsJmx", metricsJmx));
+    xml.append(XMLHandler.addTagValue("e164Field", e164Field));
+    xml.append(XMLHandler.addTagValue("internationalField", internationalField));
+    xml.append(XMLHandler.addTagValue("nationalField", nationalField));
+    xml.append(XMLHandler.addTagValue("rfc3966Field", rfc3966Field));
+    xml.append(XMLHandler.addTagValue("dedupe", dedupe));
+    xml.append(XMLHandler.addTagValue("dedupeMemoryMb", dedupeMemoryMb));
+    xml.append(XMLHandler.addTagValue("aggregate", aggregate));
+    xml.append(XMLHandler.addTagValue("countField", countField));
+    xml.append(XMLHandler.addTagValue("topK", topK));
+    xml.append(XMLHandler.addTagValue("chunkSize", chunkSize));
+    xml.append(XMLHandler.addTagValue("leniency", leniency));
+    xml.append(XMLHandler.addTagValue("maxTries", maxTries));
+    xml.append(XMLHandler.addTagValue("maxRowChars", maxRowChars));
+    xml.append(XMLHandler.addTagValue("maxRowMillis", maxRowMillis));
+    xml.append(XMLHandler.addTagValue("overBudgetMode", overBudgetMode));
+    xml.append(XMLHandler.addTagValue("outputMode", outputMode));
+    xml.append(XMLHandler.addTagValue("delimiter", delimiter));
+    xml.append(XMLHandler.addTagValue("maxColumns", maxColumns));
+    xml.append(XMLHandler.openTag("additionalFields"));
+    for(int i = 0; i < additionalInFields.length; i++){
+      xml.append(XMLHandler.openTag("field"));
+      xml.append(XMLHandler.addTagValue("inField", additionalInFields[i]));
+      xml.append(XMLHandler.addTagValue("outField", additionalOutFields[i]));
+      xml.append(XMLHandler.addTagValue("countryCodeField", additionalCountryCodeFields[i]));
+      xml.append(XMLHandler.addTagValue("findMatches", additionalFindMatches[i]));
+      xml.append(XMLHandler.closeTag("field"));
+    }
+    xml.append(XMLHandler.closeTag("additionalFields"));
+    xml.append(XMLHandler.addTagValue("locationField", locationField));
+    xml.append(XMLHandler.addTagValue("carrierField", carrierField));
+    xml.append(XMLHandler.addTagValue("timeZoneField", timeZoneField));
+    xml.append(XMLHandler.addTagValue("enrichmentLanguage", enrichmentLanguage));
+    xml.append(XMLHandler.addTagValue("numberTypeField", numberTypeField));
+    xml.append(XMLHandler.addTagValue("referenceFile", referenceFile));
+    xml.append(XMLHandler.addTagValue("referenceMode", referenceMode));
+    xml.append(XMLHandler.addTagValue("referenceFlagField", referenceFlagField));
+    xml.append(XMLHandler.addTagValue("persistentCacheFile", persistentCacheFile));
+    xml.append(XMLHandler.addTagValue("persistentCacheEntries", persistentCacheEntries));
+    xml.append(XMLHandler.addTagValue("incrementalStateFile", incrementalStateFile));
+    xml.append(XMLHandler.addTagValue("incrementalKeyField", incrementalKeyField));
     return xml.toString();
   }
 
@@ -127,7 +613,11 @@ public class LibPhonenumberPDIPluginMeta extends BaseStepMeta implements StepMet
   }
 
   public Object clone() {
-    Object retval = super.clone();
+    LibPhonenumberPDIPluginMeta retval = (LibPhonenumberPDIPluginMeta) super.clone();
+    retval.additionalInFields = additionalInFields.clone();
+    retval.additionalOutFields = additionalOutFields.clone();
+    retval.additionalCountryCodeFields = additionalCountryCodeFields.clone();
+    retval.additionalFindMatches = additionalFindMatches.clone();
     return retval;
   }
   
@@ -139,6 +629,56 @@ public class LibPhonenumberPDIPluginMeta extends BaseStepMeta implements StepMet
       setRegion(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "region")), ""));
       setCheckValid(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "checkValid")), "N").equals("Y"));
       setFindMatches(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "findMatches")), "N").equals("Y"));
+      setCacheSize(Const.toInt(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "cacheSize")), 0));
+      setPrefilterMinDigits(Const.toInt(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "prefilterMinDigits")), 0));
+      setNanpFastPath(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "nanpFastPath")), "N").equals("Y"));
+      setParallelWorkers(Const.toInt(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "parallelWorkers")), 0));
+      setRegionInField(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "regionInField")), ""));
+      setWarmUp(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "warmUp")), "N").equals("Y"));
+      setWarmUpRegions(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "warmUpRegions")), ""));
+      setErrorMode(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "errorMode")), ERROR_MODE_PASS));
+      setMetricsEnabled(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "metricsEnabled")), "N").equals("Y"));
+      setMetricsJmx(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "metricsJmx")), "N").equals("Y"));
+      setE164Field(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "e164Field")), ""));
+      setInternationalField(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "internationalField")), ""));
+      setNationalField(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "nationalField")), ""));
+      setRfc3966Field(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "rfc3966Field")), ""));
+      setDedupe(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "dedupe")), "N").equals("Y"));
+      setDedupeMemoryMb(Const.toInt(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "dedupeMemoryMb")), 0));
+      setAggregate(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "aggregate")), "N").equals("Y"));
+      setCountField(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "countField")), "count"));
+      setTopK(Const.toInt(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "topK")), 0));
+      setChunkSize(Const.toInt(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "chunkSize")), 0));
+      setLeniency(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "leniency")), "VALID"));
+      setMaxTries(Const.toLong(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "maxTries")), 0));
+      setMaxRowChars(Const.toInt(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "maxRowChars")), 0));
+      setMaxRowMillis(Const.toInt(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "maxRowMillis")), 0));
+      setOverBudgetMode(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "overBudgetMode")), OVER_BUDGET_TRUNCATE));
+      setOutputMode(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "outputMode")), OUTPUT_ROWS));
+      setDelimiter(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "delimiter")), ","));
+      setMaxColumns(Const.toInt(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "maxColumns")), DEFAULT_MAX_COLUMNS));
+      Node fields = XMLHandler.getSubNode(stepnode, "additionalFields");
+      int count = fields == null ? 0 : XMLHandler.countNodes(fields, "field");
+      allocateAdditionalFields(count);
+      for(int i = 0; i < count; i++){
+        Node field = XMLHandler.getSubNodeByNr(fields, "field", i);
+        additionalInFields[i] = Const.NVL(XMLHandler.getTagValue(field, "inField"), "");
+        additionalOutFields[i] = Const.NVL(XMLHandler.getTagValue(field, "outField"), "");
+        additionalCountryCodeFields[i] = Const.NVL(XMLHandler.getTagValue(field, "countryCodeField"), "");
+        additionalFindMatches[i] = "Y".equals(XMLHandler.getTagValue(field, "findMatches"));
+      }
+      setLocationField(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "locationField")), ""));
+      setCarrierField(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "carrierField")), ""));
+      setTimeZoneField(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "timeZoneField")), ""));
+      setEnrichmentLanguage(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "enrichmentLanguage")), "en"));
+      setNumberTypeField(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "numberTypeField")), ""));
+      setReferenceFile(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "referenceFile")), ""));
+      setReferenceMode(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "referenceMode")), REFERENCE_FLAG));
+      setReferenceFlagField(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "referenceFlagField")), ""));
+      setPersistentCacheFile(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "persistentCacheFile")), ""));
+      setPersistentCacheEntries(Const.toLong(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "persistentCacheEntries")), DEFAULT_PERSISTENT_CACHE_ENTRIES));
+      setIncrementalStateFile(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "incrementalStateFile")), ""));
+      setIncrementalKeyField(Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "incrementalKeyField")), ""));
     } catch ( Exception e ) {
       throw new KettleXMLException( "Demo plugin unable to read step info from XML node", e );
     }
@@ -151,6 +691,47 @@ public class LibPhonenumberPDIPluginMeta extends BaseStepMeta implements StepMet
     region = "";
     checkValid = false;
     findMatches = false;
+    cacheSize = 0;
+    prefilterMinDigits = 0;
+    nanpFastPath = false;
+    parallelWorkers = 0;
+    regionInField = "";
+    warmUp = false;
+    warmUpRegions = "";
+    errorMode = ERROR_MODE_PASS;
+    metricsEnabled = false;
+    metricsJmx = false;
+    e164Field = "";
+    internationalField = "";
+    nationalField = "";
+    rfc3966Field = "";
+    dedupe = false;
+    dedupeMemoryMb = 0;
+    aggregate = false;
+    countField = "count";
+    topK = 0;
+    chunkSize = 0;
+    leniency = "VALID";
+    maxTries = 0;
+    maxRowChars = 0;
+    maxRowMillis = 0;
+    overBudgetMode = OVER_BUDGET_TRUNCATE;
+    outputMode = OUTPUT_ROWS;
+    delimiter = ",";
+    maxColumns = DEFAULT_MAX_COLUMNS;
+    allocateAdditionalFields(0);
+    locationField = "";
+    carrierField = "";
+    timeZoneField = "";
+    enrichmentLanguage = "en";
+    numberTypeField = "";
+    referenceFile = "";
+    referenceMode = REFERENCE_FLAG;
+    referenceFlagField = "";
+    persistentCacheFile = "";
+    persistentCacheEntries = DEFAULT_PERSISTENT_CACHE_ENTRIES;
+    incrementalStateFile = "";
+    incrementalKeyField = "";
   }
 
   public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases ) throws KettleException {
@@ -161,6 +742,58 @@ public class LibPhonenumberPDIPluginMeta extends BaseStepMeta implements StepMet
       checkValid = rep.getStepAttributeBoolean(id_step, "checkValid");
       findMatches = rep.getStepAttributeBoolean(id_step, "findMatches");
       region = rep.getStepAttributeString(id_step, "region");
+      cacheSize = (int) rep.getStepAttributeInteger(id_step, "cacheSize");
+      prefilterMinDigits = (int) rep.getStepAttributeInteger(id_step, "prefilterMinDigits");
+      nanpFastPath = rep.getStepAttributeBoolean(id_step, "nanpFastPath");
+      parallelWorkers = (int) rep.getStepAttributeInteger(id_step, "parallelWorkers");
+      regionInField = Const.NVL(rep.getStepAttributeString(id_step, "regionInField"), "");
+      warmUp = rep.getStepAttributeBoolean(id_step, "warmUp");
+      warmUpRegions = Const.NVL(rep.getStepAttributeString(id_step, "warmUpRegions"), "");
+      errorMode = Const.NVL(rep.getStepAttributeString(id_step, "errorMode"), ERROR_MODE_PASS);
+      metricsEnabled = rep.getStepAttributeBoolean(id_step, "metricsEnabled");
+      metricsJmx = rep.getStepAttributeBoolean(id_step, "metricsJmx");
+      e164Field = Const.NVL(rep.getStepAttributeString(id_step, "e164Field"), "");
+      internationalField = Const.NVL(rep.getStepAttributeString(id_step, "internationalField"), "");
+      nationalField = Const.NVL(rep.getStepAttributeString(id_step, "nationalField"), "");
+      rfc3966Field = Const.NVL(rep.getStepAttributeString(id_step, "rfc3966Field"), "");
+      dedupe = rep.getStepAttributeBoolean(id_step, "dedupe");
+      dedupeMemoryMb = (int) rep.getStepAttributeInteger(id_step, "dedupeMemoryMb");
+      aggregate = rep.getStepAttributeBoolean(id_step, "aggregate");
+      countField = Const.NVL(rep.getStepAttributeString(id_step, "countField"), "count");
+      topK = (int) rep.getStepAttributeInteger(id_step, "topK");
+      chunkSize = (int) rep.getStepAttributeInteger(id_step, "chunkSize");
+      leniency = Const.NVL(rep.getStepAttributeString(id_step, "leniency"), "VALID");
+      maxTries = rep.getStepAttributeInteger(id_step, "maxTries");
+      maxRowChars = (int) rep.getStepAttributeInteger(id_step, "maxRowChars");
+      maxRowMillis = (int) rep.getStepAttributeInteger(id_step, "maxRowMillis");
+      overBudgetMode = Const.NVL(rep.getStepAttributeString(id_step, "overBudgetMode"), OVER_BUDGET_TRUNCATE);
+      outputMode = Const.NVL(rep.getStepAttributeString(id_step, "outputMode"), OUTPUT_ROWS);
+      delimiter = Const.NVL(rep.getStepAttributeString(id_step, "delimiter"), ",");
+      maxColumns = (int) rep.getStepAttributeInteger(id_step, "maxColumns");
+      if(maxColumns <= 0){
+        // saved before the setting existed
+        maxColumns = DEFAULT_MAX_COLUMNS;
+      }
+      int count = rep.countNrStepAttributes(id_step, "additional_in_field");
+      allocateAdditionalFields(count);
+      for(int i = 0; i < count; i++){
+        additionalInFields[i] = Const.NVL(rep.getStepAttributeString(id_step, i, "additional_in_field"), "");
+        additionalOutFields[i] = Const.NVL(rep.getStepAttributeString(id_step, i, "additional_out_field"), "");
+        additionalCountryCodeFields[i] = Const.NVL(rep.getStepAttributeString(id_step, i, "additional_country_code_field"), "");
+        additionalFindMatches[i] = rep.getStepAttributeBoolean(id_step, i, "additional_find_matches");
+      }
+      locationField = Const.NVL(rep.getStepAttributeString(id_step, "locationField"), "");
+      carrierField = Const.NVL(rep.getStepAttributeString(id_step, "carrierField"), "");
+      timeZoneField = Const.NVL(rep.getStepAttributeString(id_step, "timeZoneField"), "");
+      enrichmentLanguage = Const.NVL(rep.getStepAttributeString(id_step, "enrichmentLanguage"), "en");
+      numberTypeField = Const.NVL(rep.getStepAttributeString(id_step, "numberTypeField"), "");
+      referenceFile = Const.NVL(rep.getStepAttributeString(id_step, "referenceFile"), "");
+      referenceMode = Const.NVL(rep.getStepAttributeString(id_step, "referenceMode"), REFERENCE_FLAG);
+      referenceFlagField = Const.NVL(rep.getStepAttributeString(id_step, "referenceFlagField"), "");
+      persistentCacheFile = Const.NVL(rep.getStepAttributeString(id_step, "persistentCacheFile"), "");
+      persistentCacheEntries = rep.getStepAttributeInteger(id_step, "persistentCacheEntries");
+      incrementalStateFile = Const.NVL(rep.getStepAttributeString(id_step, "incrementalStateFile"), "");
+      incrementalKeyField = Const.NVL(rep.getStepAttributeString(id_step, "incrementalKeyField"), "");
     } catch ( Exception e ) {
       throw new KettleException( "Unable to load step from repository", e );
     }
@@ -175,6 +808,52 @@ public class LibPhonenumberPDIPluginMeta extends BaseStepMeta implements StepMet
       rep.saveStepAttribute( id_transformation, id_step, "checkValid", checkValid);
       rep.saveStepAttribute( id_transformation, id_step, "findMatches", findMatches);
       rep.saveStepAttribute( id_transformation, id_step, "region", region);
+      rep.saveStepAttribute( id_transformation, id_step, "cacheSize", cacheSize);
+      rep.saveStepAttribute( id_transformation, id_step, "prefilterMinDigits", prefilterMinDigits);
+      rep.saveStepAttribute( id_transformation, id_step, "nanpFastPath", nanpFastPath);
+      rep.saveStepAttribute( id_transformation, id_step, "parallelWorkers", parallelWorkers);
+      rep.saveStepAttribute( id_transformation, id_step, "regionInField", regionInField);
+      rep.saveStepAttribute( id_transformation, id_step, "warmUp", warmUp);
+      rep.saveStepAttribute( id_transformation, id_step, "warmUpRegions", warmUpRegions);
+      rep.saveStepAttribute( id_transformation, id_step, "errorMode", errorMode);
+      rep.saveStepAttribute( id_transformation, id_step, "metricsEnabled", metricsEnabled);
+      rep.saveStepAttribute( id_transformation, id_step, "metricsJmx", metricsJmx);
+      rep.saveStepAttribute( id_transformation, id_step, "e164Field", e164Field);
+      rep.saveStepAttribute( id_transformation, id_step, "internationalField", internationalField);
+      rep.saveStepAttribute( id_transformation, id_step, "nationalField", nationalField);
+      rep.saveStepAttribute( id_transformation, id_step, "rfc3966Field", rfc3966Field);
+      rep.saveStepAttribute( id_transformation, id_step, "dedupe", dedupe);
+      rep.saveStepAttribute( id_transformation, id_step, "dedupeMemoryMb", dedupeMemoryMb);
+      rep.saveStepAttribute( id_transformation, id_step, "aggregate", aggregate);
+      rep.saveStepAttribute( id_transformation, id_step, "countField", countField);
+      rep.saveStepAttribute( id_transformation, id_step, "topK", topK);
+      rep.saveStepAttribute( id_transformation, id_step, "chunkSize", chunkSize);
+      rep.saveStepAttribute( id_transformation, id_step, "leniency", leniency);
+      rep.saveStepAttribute( id_transformation, id_step, "maxTries", maxTries);
+      rep.saveStepAttribute( id_transformation, id_step, "maxRowChars", maxRowChars);
+      rep.saveStepAttribute( id_transformation, id_step, "maxRowMillis", maxRowMillis);
+      rep.saveStepAttribute( id_transformation, id_step, "overBudgetMode", overBudgetMode);
+      rep.saveStepAttribute( id_transformation, id_step, "outputMode", outputMode);
+      rep.saveStepAttribute( id_transformation, id_step, "delimiter", delimiter);
+      rep.saveStepAttribute( id_transformation, id_step, "maxColumns", maxColumns);
+      for(int i = 0; i < additionalInFields.length; i++){
+        rep.saveStepAttribute( id_transformation, id_step, i, "additional_in_field", additionalInFields[i]);
+        rep.saveStepAttribute( id_transformation, id_step, i, "additional_out_field", additionalOutFields[i]);
+        rep.saveStepAttribute( id_transformation, id_step, i, "additional_country_code_field", additionalCountryCodeFields[i]);
+        rep.saveStepAttribute( id_transformation, id_step, i, "additional_find_matches", additionalFindMatches[i]);
+      }
+      rep.saveStepAttribute( id_transformation, id_step, "locationField", locationField);
+      rep.saveStepAttribute( id_transformation, id_step, "carrierField", carrierField);
+      rep.saveStepAttribute( id_transformation, id_step, "timeZoneField", timeZoneField);
+      rep.saveStepAttribute( id_transformation, id_step, "enrichmentLanguage", enrichmentLanguage);
+      rep.saveStepAttribute( id_transformation, id_step, "numberTypeField", numberTypeField);
+      rep.saveStepAttribute( id_transformation, id_step, "referenceFile", referenceFile);
+      rep.saveStepAttribute( id_transformation, id_step, "referenceMode", referenceMode);
+      rep.saveStepAttribute( id_transformation, id_step, "referenceFlagField", referenceFlagField);
+      rep.saveStepAttribute( id_transformation, id_step, "persistentCacheFile", persistentCacheFile);
+      rep.saveStepAttribute( id_transformation, id_step, "persistentCacheEntries", persistentCacheEntries);
+      rep.saveStepAttribute( id_transformation, id_step, "incrementalStateFile", incrementalStateFile);
+      rep.saveStepAttribute( id_transformation, id_step, "incrementalKeyField", incrementalKeyField);
     } catch ( Exception e ) {
       throw new KettleException( "Unable to save step into repository: " + id_step, e );
     }
@@ -182,16 +861,131 @@ public class LibPhonenumberPDIPluginMeta extends BaseStepMeta implements StepMet
   
   public void getFields( RowMetaInterface rowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep, 
     VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
-    ValueMetaInteger v0 = new ValueMetaInteger(outField);
-    v0.setOrigin(origin);
-    rowMeta.addValueMeta(v0);
+    if(aggregate){
+      // one row per distinct number, the input fields do not carry over
+      rowMeta.clear();
+    }
+    String mode = getEffectiveOutputMode();
+    addNumberField(rowMeta, outField, mode, ValueMetaInterface.TYPE_INTEGER, origin);
 
     if(this.getCountryCodeField() != null && this.getCountryCodeField().trim().length() > 0){
-      ValueMetaInteger v1 = new ValueMetaInteger(countryCodeField);
-      v1.setOrigin(origin);
-      rowMeta.addValueMeta(v1);
+      addNumberField(rowMeta, countryCodeField, mode, ValueMetaInterface.TYPE_INTEGER, origin);
+    }
+
+    for(String formatField : getFormatFields()){
+      if(!Const.isEmpty(formatField)){
+        addNumberField(rowMeta, formatField, mode, ValueMetaInterface.TYPE_STRING, origin);
+      }
+    }
+
+    for(String enrichmentField : getEnrichmentFields()){
+      if(!Const.isEmpty(enrichmentField)){
+        addNumberField(rowMeta, enrichmentField, mode, ValueMetaInterface.TYPE_STRING, origin);
+      }
+    }
+
+    if(isReferenceFlagged()){
+      addNumberField(rowMeta, referenceFlagField, mode, ValueMetaInterface.TYPE_BOOLEAN, origin);
+    }
+
+    if(!aggregate){
+      // each additional field holds its first number unless the layout keeps them all
+      for(int i = 0; i < additionalInFields.length; i++){
+        if(!Const.isEmpty(additionalOutFields[i])){
+          addNumberField(rowMeta, additionalOutFields[i], mode, ValueMetaInterface.TYPE_INTEGER, origin);
+        }
+        if(!Const.isEmpty(additionalCountryCodeFields[i])){
+          addNumberField(rowMeta, additionalCountryCodeFields[i], mode, ValueMetaInterface.TYPE_INTEGER, origin);
+        }
+      }
+    }
+
+    if(aggregate){
+      ValueMetaInteger vc = new ValueMetaInteger(countField);
+      vc.setOrigin(origin);
+      rowMeta.addValueMeta(vc);
+    }
+  }
+
+  /**
+   * Add an output field in the layout of the output mode: one field, or
+   * maxColumns indexed fields next to each other. Joined values are
+   * always strings.
+   *
+   * @param rowMeta     The row meta to add to
+   * @param name        The field name
+   * @param mode        The output mode
+   * @param type        The type of a single value: integer, string or boolean
+   * @param origin      The origin step
+   */
+  private void addNumberField(RowMetaInterface rowMeta, String name, String mode, int type, String origin){
+    int columns = OUTPUT_COLUMNS.equals(mode) ? Math.max(1, maxColumns) : 0;
+    for(int i = columns == 0 ? 0 : 1; i <= columns; i++){
+      String column = columns == 0 ? name : columnName(name, i);
+      ValueMetaInterface v;
+      if(OUTPUT_DELIMITED.equals(mode) || type == ValueMetaInterface.TYPE_STRING){
+        v = new ValueMetaString(column);
+      }else if(type == ValueMetaInterface.TYPE_BOOLEAN){
+        v = new ValueMetaBoolean(column);
+      }else{
+        v = new ValueMetaInteger(column);
+      }
+      v.setOrigin(origin);
+      rowMeta.addValueMeta(v);
     }
   }
+
+  /**
+   * Get the name of an indexed output column.
+   *
+   * @param name        The output field name
+   * @param index       The 1-based column index
+   * @return            The column name
+   */
+  public static String columnName(String name, int index) {
+    return name + "_" + index;
+  }
+
+  /**
+   * Get the output mode in effect. Aggregation always emits one row per
+   * number.
+   *
+   * @return      The output mode
+   */
+  public String getEffectiveOutputMode() {
+    if(aggregate || Const.isEmpty(outputMode)){
+      return OUTPUT_ROWS;
+    }
+    return outputMode;
+  }
+
+  /**
+   * Get the formatted output fields, indexed by PhoneNumberFormat ordinal.
+   *
+   * @return      The field names, empty when the format is not wanted
+   */
+  public String[] getFormatFields() {
+    return new String[]{ e164Field, internationalField, nationalField, rfc3966Field };
+  }
+
+  /**
+   * Get the enrichment output fields, indexed by the NumberEnricher outputs.
+   *
+   * @return      The field names, empty when the output is not wanted
+   */
+  public String[] getEnrichmentFields() {
+    return new String[]{ locationField, carrierField, timeZoneField, numberTypeField };
+  }
+
+  /**
+   * Check whether each number gets a flag for being in the reference index.
+   *
+   * @return      True if a reference file and flag field are set in flag mode
+   */
+  public boolean isReferenceFlagged() {
+    return !Const.isEmpty(referenceFile) && !Const.isEmpty(referenceFlagField)
+      && (Const.isEmpty(referenceMode) || REFERENCE_FLAG.equals(referenceMode));
+  }
   
   public void check( List<CheckResultInterface> remarks, TransMeta transMeta, 
     StepMeta stepMeta, RowMetaInterface prev, String input[], String output[],
@@ -226,6 +1020,10 @@ public class LibPhonenumberPDIPluginMeta extends BaseStepMeta implements StepMet
     return new LibPhonenumberPDIPluginData();
   }
 
+  public boolean supportsErrorHandling() {
+    return true;
+  }
+
   public String getDialogClassName() {
     return "com.si.LibPhonenumberPDIPluginDialog";
   }
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+/**
+ * A Bloom filter over longs. It answers "maybe seen" or "definitely not
+ * seen" in a fixed amount of memory. Probes use double hashing from two
+ * 64 bit mixes of the key.
+ */
+public class LongBloomFilter {
+  private final long[] bits;
+  private final long bitCount;
+  private final int hashes;
+
+  /**
+   * @param bytes       The memory to use
+   * @param hashes      The number of probes per key
+   */
+  public LongBloomFilter(long bytes, int hashes) {
+    long words = Math.max(1, Math.min(bytes / 8, Integer.MAX_VALUE - 8));
+    this.bits = new long[(int) words];
+    this.bitCount = words * 64;
+    this.hashes = hashes;
+  }
+
+  /**
+   * Add a key.
+   *
+   * @param key     The key
+   * @return        True if the key was definitely not in the filter before
+   */
+  public boolean add(long key) {
+    long h1 = mix(key);
+    long h2 = mix(h1) | 1;
+    boolean added = false;
+    for (int i = 0; i < hashes; i++) {
+      long bit = ((h1 + i * h2) & Long.MAX_VALUE) % bitCount;
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      if ((bits[word] & mask) == 0) {
+        bits[word] |= mask;
+        added = true;
+      }
+    }
+    return added;
+  }
+
+  public long bytes() {
+    return (long) bits.length * 8;
+  }
+
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
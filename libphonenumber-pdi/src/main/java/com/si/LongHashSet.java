@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+/**
+ * An open-addressing set of non-zero longs with linear probing. Keys live
+ * in a single long array, so a key costs 8 to 16 bytes instead of the
+ * 50 or more a boxed HashSet entry needs.
+ */
+public class LongHashSet {
+  private static final int MIN_CAPACITY = 16;
+  /** The largest table, 8 GB of keys. */
+  static final int MAX_CAPACITY = 1 << 30;
+
+  private final int maxCapacity;
+  private long[] keys;
+  private int mask;
+  private int size;
+  private int resizeAt;
+
+  public LongHashSet(int expected) {
+    this(expected, MAX_CAPACITY);
+  }
+
+  /**
+   * @param expected        The expected number of keys
+   * @param maxCapacity     The largest table, a power of two up to MAX_CAPACITY
+   */
+  LongHashSet(int expected, int maxCapacity) {
+    this.maxCapacity = maxCapacity;
+    int capacity = Math.min(MIN_CAPACITY, maxCapacity);
+    while (capacity * 3L / 4 < expected && capacity < maxCapacity) {
+      capacity <<= 1;
+    }
+    allocate(capacity);
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    mask = capacity - 1;
+    resizeAt = capacity / 4 * 3;
+  }
+
+  /**
+   * Add a key.
+   *
+   * @param key     The key, must not be 0
+   * @return        True if the key was not in the set
+   * @throws IllegalStateException  If the key is new and the table is full and cannot grow
+   */
+  public boolean add(long key) {
+    int slot = slot(key);
+    while (keys[slot] != 0) {
+      if (keys[slot] == key) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if (size >= resizeAt) {
+      throw new IllegalStateException("The set is full at " + size + " keys");
+    }
+    keys[slot] = key;
+    if (++size >= resizeAt) {
+      grow();
+    }
+    return true;
+  }
+
+  public boolean contains(long key) {
+    int slot = slot(key);
+    while (keys[slot] != 0) {
+      if (keys[slot] == key) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Check if the next add may grow the table.
+   *
+   * @return        True if the table is full enough to double on the next add
+   */
+  public boolean isFull() {
+    return size + 1 >= resizeAt;
+  }
+
+  /**
+   * Check if the table may still double.
+   *
+   * @return        False once the table is at its largest
+   */
+  public boolean canGrow() {
+    return keys.length < maxCapacity;
+  }
+
+  /**
+   * Get the bytes the table would take after growing.
+   *
+   * @return        The size in bytes
+   */
+  public long grownBytes() {
+    return (long) keys.length * 2 * 8;
+  }
+
+  public long bytes() {
+    return (long) keys.length * 8;
+  }
+
+  private void grow() {
+    if (!canGrow()) {
+      // at its largest the table fills to the load factor, then refuses new keys
+      return;
+    }
+    long[] old = keys;
+    allocate(old.length * 2);
+    for (long key : old) {
+      if (key != 0) {
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+      }
+    }
+  }
+
+  private int slot(long key) {
+    return mix(key) & mask;
+  }
+
+  static int mix(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
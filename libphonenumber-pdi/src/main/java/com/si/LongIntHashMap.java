@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing map from non-zero longs to int counts with linear
+ * probing, kept in two primitive arrays.
+ */
+public class LongIntHashMap {
+  private static final int MIN_CAPACITY = 16;
+  /** The largest table, 12 GB of keys and counts. */
+  static final int MAX_CAPACITY = 1 << 30;
+
+  private final int maxCapacity;
+  private long[] keys;
+  private int[] values;
+  private int mask;
+  private int size;
+  private int resizeAt;
+
+  public LongIntHashMap(int expected) {
+    this(expected, MAX_CAPACITY);
+  }
+
+  /**
+   * @param expected        The expected number of keys
+   * @param maxCapacity     The largest table, a power of two up to MAX_CAPACITY
+   */
+  LongIntHashMap(int expected, int maxCapacity) {
+    this.maxCapacity = maxCapacity;
+    int capacity = Math.min(MIN_CAPACITY, maxCapacity);
+    while (capacity * 3L / 4 < expected && capacity < maxCapacity) {
+      capacity <<= 1;
+    }
+    allocate(capacity);
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new int[capacity];
+    mask = capacity - 1;
+    resizeAt = capacity / 4 * 3;
+  }
+
+  /**
+   * Add to the count of a key, saturating at Integer.MAX_VALUE.
+   *
+   * @param key     The key, must not be 0
+   * @param delta   The amount to add
+   * @throws IllegalStateException  If the key is new and the table is full and cannot grow
+   */
+  public void increment(long key, int delta) {
+    int slot = LongHashSet.mix(key) & mask;
+    while (keys[slot] != 0) {
+      if (keys[slot] == key) {
+        long sum = (long) values[slot] + delta;
+        values[slot] = sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) sum;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if (size >= resizeAt) {
+      throw new IllegalStateException("The map is full at " + size + " keys");
+    }
+    keys[slot] = key;
+    values[slot] = delta;
+    if (++size >= resizeAt) {
+      grow();
+    }
+  }
+
+  public int get(long key) {
+    int slot = LongHashSet.mix(key) & mask;
+    while (keys[slot] != 0) {
+      if (keys[slot] == key) {
+        return values[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Check if the next new key may grow the table.
+   *
+   * @return        True if the table is full enough to double on the next new key
+   */
+  public boolean isFull() {
+    return size + 1 >= resizeAt;
+  }
+
+  /**
+   * Check if the table may still double.
+   *
+   * @return        False once the table is at its largest
+   */
+  public boolean canGrow() {
+    return keys.length < maxCapacity;
+  }
+
+  /** @return       The number of slots, for iterating with keyAt and valueAt */
+  public int capacity() {
+    return keys.length;
+  }
+
+  /** @return       The key in a slot, 0 if the slot is empty */
+  public long keyAt(int slot) {
+    return keys[slot];
+  }
+
+  public int valueAt(int slot) {
+    return values[slot];
+  }
+
+  /**
+   * Get the slots of the k largest counts, largest first. Ties are broken
+   * by slot, so the result is stable for a given map.
+   *
+   * @param k       The number of slots
+   * @return        The slots
+   */
+  public int[] topSlots(int k) {
+    int n = Math.min(k, size);
+    // min-heap of (count << 32 | slot), the root is the smallest count kept
+    long[] heap = new long[n];
+    int heapSize = 0;
+    for (int slot = 0; slot < keys.length && n > 0; slot++) {
+      if (keys[slot] == 0) {
+        continue;
+      }
+      long entry = ((long) values[slot] << 32) | (0xFFFFFFFFL & ~slot);
+      if (heapSize < n) {
+        heap[heapSize] = entry;
+        siftUp(heap, heapSize++);
+      } else if (entry > heap[0]) {
+        heap[0] = entry;
+        siftDown(heap, heapSize);
+      }
+    }
+    Arrays.sort(heap, 0, heapSize);
+    int[] slots = new int[heapSize];
+    for (int i = 0; i < heapSize; i++) {
+      slots[i] = ~(int) heap[heapSize - 1 - i];
+    }
+    return slots;
+  }
+
+  private static void siftUp(long[] heap, int i) {
+    long entry = heap[i];
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (heap[parent] <= entry) {
+        break;
+      }
+      heap[i] = heap[parent];
+      i = parent;
+    }
+    heap[i] = entry;
+  }
+
+  private static void siftDown(long[] heap, int size) {
+    long entry = heap[0];
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && heap[child + 1] < heap[child]) {
+        child += 1;
+      }
+      if (heap[child] >= entry) {
+        break;
+      }
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = entry;
+  }
+
+  private void grow() {
+    if (!canGrow()) {
+      // at its largest the table fills to the load factor, then refuses new keys
+      return;
+    }
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    allocate(oldKeys.length * 2);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != 0) {
+        int slot = LongHashSet.mix(oldKeys[i]) & mask;
+        while (keys[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+}
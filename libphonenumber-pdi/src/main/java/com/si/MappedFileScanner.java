@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Finds numbers in a file by memory-mapping it and matching directly on
+ * the bytes.
+ *
+ * Files are mapped a segment at a time with ChunkedScanner.OVERLAP bytes
+ * of context on each side, so files of any size can be scanned. A match is
+ * reported by the segment it starts in, with its byte offset in the file.
+ */
+public class MappedFileScanner {
+  static final int SEGMENT_SIZE = 64 << 20;
+
+  private final PhoneNumberExtractor extractor;
+  private final PhoneNumberExtractor.Region region;
+  private final int segmentSize;
+
+  public MappedFileScanner(PhoneNumberExtractor extractor, PhoneNumberExtractor.Region region) {
+    this(extractor, region, SEGMENT_SIZE);
+  }
+
+  MappedFileScanner(PhoneNumberExtractor extractor, PhoneNumberExtractor.Region region, int segmentSize) {
+    this.extractor = extractor;
+    this.region = region;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * Scan a file.
+   *
+   * @param file          The file
+   * @param sink          Receives each number with its byte offset
+   * @return              The matches dropped by the validity check
+   * @throws IOException  If the file cannot be read
+   */
+  public int scan(File file, ChunkedScanner.Sink sink) throws IOException {
+    int invalid = 0;
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long size = channel.size();
+      for (long segment = 0; segment < size; segment += segmentSize) {
+        long mapStart = Math.max(0, segment - ChunkedScanner.OVERLAP);
+        long mapEnd = Math.min(size, segment + segmentSize + ChunkedScanner.OVERLAP);
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+        int keepFrom = (int) (segment - mapStart);
+        int keepTo = (int) (Math.min(size, segment + segmentSize) - mapStart);
+        invalid += extractor.findNumbers(new ByteCharSequence(bytes, 0, (int) (mapEnd - mapStart)), region,
+            keepFrom, keepTo, mapStart, sink);
+      }
+    } finally {
+      raf.close();
+    }
+    return invalid;
+  }
+}
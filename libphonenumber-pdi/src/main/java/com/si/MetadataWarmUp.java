@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberMatch;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Loads region metadata and runs the parse, validate and match paths once
+ * per region so the first rows do not pay for it.
+ *
+ * libphonenumber keeps its metadata in a process-wide singleton, so each
+ * region is only warmed up once per JVM no matter how many step copies ask.
+ * A copy asking for a region another copy is still warming up waits for
+ * it, and a warm-up that fails is tried again by the next caller.
+ */
+public class MetadataWarmUp {
+  private static final ConcurrentMap<String, FutureTask<Void>> WARMED = new ConcurrentHashMap<String, FutureTask<Void>>();
+
+  private MetadataWarmUp() {
+  }
+
+  /**
+   * Split a comma separated region list, dropping blanks and regions
+   * libphonenumber does not know.
+   *
+   * @param util        The phone number util
+   * @param list        The region list
+   * @return            The upper-cased region codes
+   */
+  public static List<String> parseRegions(PhoneNumberUtil util, String list) {
+    List<String> regions = new ArrayList<String>();
+    if (list == null) {
+      return regions;
+    }
+    for (String value : list.split(",")) {
+      String code = value.trim().toUpperCase(Locale.ROOT);
+      if (util.getSupportedRegions().contains(code) && !regions.contains(code)) {
+        regions.add(code);
+      }
+    }
+    return regions;
+  }
+
+  /**
+   * Warm up the given regions.
+   *
+   * @param util        The phone number util
+   * @param regions     The region codes
+   * @return            The number of regions warmed up by this call
+   */
+  public static int warmUp(PhoneNumberUtil util, List<String> regions) {
+    int warmed = 0;
+    for (String region : regions) {
+      if (warmUp(util, region)) {
+        warmed += 1;
+      }
+    }
+    return warmed;
+  }
+
+  /**
+   * Warm up one region, or wait for the copy already warming it up.
+   *
+   * @param util        The phone number util
+   * @param region      The region code
+   * @return            True if this call warmed the region up
+   */
+  private static boolean warmUp(final PhoneNumberUtil util, final String region) {
+    FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+      public void run() {
+        warmUpRegion(util, region);
+      }
+    }, null);
+    FutureTask<Void> running = WARMED.putIfAbsent(region, task);
+    if (running == null) {
+      running = task;
+      task.run();
+    }
+    try {
+      running.get();
+      return running == task;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException e) {
+      // the step still works without it, the next caller tries again
+      WARMED.remove(region, running);
+      return false;
+    }
+  }
+
+  /**
+   * Check whether a region has been warmed up.
+   *
+   * @param region      The region code
+   * @return            True once a warm-up of the region has finished
+   */
+  static boolean isWarm(String region) {
+    FutureTask<Void> task = WARMED.get(region);
+    if (task == null || !task.isDone()) {
+      return false;
+    }
+    try {
+      task.get();
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException e) {
+      return false;
+    }
+  }
+
+  private static void warmUpRegion(PhoneNumberUtil util, String region) {
+    Phonenumber.PhoneNumber example = util.getExampleNumber(region);
+    if (example == null) {
+      return;
+    }
+    String national = util.format(example, PhoneNumberUtil.PhoneNumberFormat.NATIONAL);
+    String international = util.format(example, PhoneNumberUtil.PhoneNumberFormat.E164);
+    try {
+      util.isValidNumber(util.parse(national, region));
+      // reaches the metadata through the calling code rather than the region
+      util.isValidNumber(util.parse(international, "ZZ"));
+    } catch (NumberParseException e) {
+      // the example numbers always parse, nothing is lost if one does not
+    }
+    for (PhoneNumberMatch match : util.findNumbers("call " + national + " or " + international, region)) {
+      util.isValidNumber(match.number());
+    }
+  }
+}
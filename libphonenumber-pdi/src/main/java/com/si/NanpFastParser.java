@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+/**
+ * Parser for plain North American numbers that works straight from the
+ * characters. It only accepts input it can parse exactly like
+ * PhoneNumberUtil.parse with a US or CA default region:
+ *
+ *   [+1] NPA NXX XXXX   or   1 NPA NXX XXXX
+ *
+ * with ASCII digits, an NPA starting with 2-9 and any mix of space, - . ( ) /
+ * between digits. Everything else returns UNDECIDED and must go through
+ * libphonenumber.
+ *
+ * Validity follows the NANP rules: an NXX starting with 0 or 1 is never
+ * valid. Other numbers are checked with libphonenumber once per thousands
+ * block (NPA-NXX-X), the smallest unit the plan assigns, and remembered.
+ */
+public class NanpFastParser {
+  public static final long UNDECIDED = -1L;
+  public static final int COUNTRY_CODE = 1;
+
+  private static final int MAX_INPUT_LENGTH = 250;
+  private static final long TEN_DIGITS = 10000000000L;
+  private static final long NPA_MIN = 2000000000L;
+
+  private static final byte UNKNOWN = 0;
+  private static final byte INVALID = 1;
+  private static final byte VALID = 2;
+
+  private static byte[] sharedBlocks;
+
+  private final PhoneNumberUtil util;
+  private final byte[] blocks;
+
+  public NanpFastParser(PhoneNumberUtil util) {
+    this.util = util;
+    this.blocks = sharedBlocks();
+  }
+
+  /**
+   * The block table is shared by every parser in the JVM. Entries are single
+   * bytes written with the value libphonenumber returned, so a racing reader
+   * at worst repeats the lookup.
+   */
+  private static synchronized byte[] sharedBlocks() {
+    if (sharedBlocks == null) {
+      sharedBlocks = new byte[800 * 800 * 10];
+    }
+    return sharedBlocks;
+  }
+
+  /**
+   * Check if the parser applies to a default region.
+   *
+   * @param region      The default region
+   * @return            True for US and CA
+   */
+  public static boolean supportsRegion(String region) {
+    return "US".equals(region) || "CA".equals(region);
+  }
+
+  /**
+   * Parse the national number.
+   *
+   * @param text        The input text
+   * @return            The 10 digit national number or UNDECIDED
+   */
+  public long parse(CharSequence text) {
+    int length = text.length();
+    if (length > MAX_INPUT_LENGTH) {
+      return UNDECIDED;
+    }
+
+    long number = 0;
+    int digits = 0;
+    boolean plus = false;
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c >= '0' && c <= '9') {
+        if (digits == 11) {
+          return UNDECIDED;
+        }
+        number = number * 10 + (c - '0');
+        digits += 1;
+      } else if (c == '+') {
+        if (plus || digits > 0) {
+          return UNDECIDED;
+        }
+        plus = true;
+      } else if (c != ' ' && c != '-' && c != '.' && c != '(' && c != ')' && c != '/') {
+        return UNDECIDED;
+      }
+    }
+
+    if (digits == 11 && number / TEN_DIGITS == 1) {
+      number -= TEN_DIGITS;
+    } else if (digits != 10 || plus) {
+      return UNDECIDED;
+    }
+    return number >= NPA_MIN ? number : UNDECIDED;
+  }
+
+  /**
+   * Build the proto for a parsed national number.
+   *
+   * @param national    The national number from parse
+   * @return            The proto number
+   */
+  public Phonenumber.PhoneNumber toPhoneNumber(long national) {
+    return new Phonenumber.PhoneNumber().setCountryCode(COUNTRY_CODE).setNationalNumber(national);
+  }
+
+  /**
+   * Check the validity of a number returned by parse.
+   *
+   * @param number      The proto number
+   * @return            Whether the number is valid
+   */
+  public boolean isValid(Phonenumber.PhoneNumber number) {
+    long national = number.getNationalNumber();
+    int npa = (int) (national / 10000000L);
+    int nxx = (int) (national / 10000L % 1000);
+    if (nxx < 200) {
+      return false;
+    }
+    int block = ((npa - 200) * 800 + (nxx - 200)) * 10 + (int) (national / 1000L % 10);
+    byte state = blocks[block];
+    if (state == UNKNOWN) {
+      state = util.isValidNumber(number) ? VALID : INVALID;
+      blocks[block] = state;
+    }
+    return state == VALID;
+  }
+}
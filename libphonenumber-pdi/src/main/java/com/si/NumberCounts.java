@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.Phonenumber;
+import org.pentaho.di.core.exception.KettleException;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Counts how often each number occurs in the stream, keyed by its packed
+ * form in a primitive map.
+ *
+ * One instance is shared by all copies of a step. Every copy calls finish
+ * when its input ends and the last one to do so emits the counts.
+ */
+public class NumberCounts {
+  private static final Map<Object, NumberCounts> SHARED = new IdentityHashMap<Object, NumberCounts>();
+  private static final int INITIAL_SIZE = 1 << 16;
+
+  private final LongIntHashMap counts;
+  private long unpackable;
+  private int references;
+  private int running;
+
+  NumberCounts() {
+    this(LongIntHashMap.MAX_CAPACITY);
+  }
+
+  /**
+   * @param maxCapacity     The largest count table
+   */
+  NumberCounts(int maxCapacity) {
+    this.counts = new LongIntHashMap(INITIAL_SIZE, maxCapacity);
+  }
+
+  /**
+   * Get the counts shared by every copy of a step, creating them on first use.
+   *
+   * @param owner       The object shared by the copies (the step meta)
+   * @return            The shared counts
+   */
+  public static NumberCounts acquire(Object owner) {
+    synchronized (SHARED) {
+      NumberCounts shared = SHARED.get(owner);
+      if (shared == null) {
+        shared = new NumberCounts();
+        SHARED.put(owner, shared);
+      }
+      shared.references += 1;
+      shared.running += 1;
+      return shared;
+    }
+  }
+
+  /**
+   * Mark one copy's input as done.
+   *
+   * @param owner       The object passed to acquire
+   * @return            True if every copy is done and the caller should emit
+   */
+  public static boolean finish(Object owner) {
+    synchronized (SHARED) {
+      NumberCounts shared = SHARED.get(owner);
+      if (shared == null) {
+        return false;
+      }
+      shared.running -= 1;
+      return shared.running == 0;
+    }
+  }
+
+  /**
+   * Release the shared counts, dropping them once the last copy lets go.
+   *
+   * @param owner       The object passed to acquire
+   * @return            True if this was the last reference
+   */
+  public static boolean release(Object owner) {
+    synchronized (SHARED) {
+      NumberCounts shared = SHARED.get(owner);
+      if (shared == null) {
+        return false;
+      }
+      shared.references -= 1;
+      if (shared.references <= 0) {
+        SHARED.remove(owner);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Count the numbers found for a row.
+   *
+   * @param numbers     The numbers
+   * @param count       The number of entries to use
+   * @throws KettleException    If the table cannot hold another distinct number
+   */
+  public synchronized void add(Phonenumber.PhoneNumber[] numbers, int count) throws KettleException {
+    for (int i = 0; i < count; i++) {
+      long key = PackedNumber.pack(numbers[i]);
+      if (key == PackedNumber.NOT_PACKABLE) {
+        unpackable += 1;
+      } else {
+        if (counts.isFull() && !counts.canGrow() && counts.get(key) == 0) {
+          throw new KettleException("More than " + counts.size() + " distinct numbers to count");
+        }
+        counts.increment(key, 1);
+      }
+    }
+  }
+
+  /**
+   * Get the map once every copy has finished.
+   *
+   * @return        The counts
+   */
+  public synchronized LongIntHashMap counts() {
+    return counts;
+  }
+
+  /**
+   * @return        The numbers too long to count
+   */
+  public synchronized long unpackable() {
+    return unpackable;
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.Phonenumber;
+import org.pentaho.di.core.exception.KettleException;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Remembers every number seen in the stream so only its first occurrence
+ * is emitted.
+ *
+ * Numbers are packed into longs and kept in a LongHashSet. With a memory
+ * ceiling, the set stops growing once doubling it would pass half the
+ * ceiling. New numbers then go to a Bloom filter that uses the other
+ * half. The set stays exact for the numbers it holds. A Bloom false
+ * positive can drop a first occurrence, at roughly the rate reported by
+ * the step, but a duplicate is never emitted. The set also stops growing
+ * at its largest table; without a ceiling, the dedupe fails at that point
+ * rather than silently turning inexact.
+ *
+ * One dedupe is shared by all copies of a step, the same way as the
+ * parse cache.
+ */
+public class NumberDedupe {
+  private static final Map<Object, NumberDedupe> SHARED = new IdentityHashMap<Object, NumberDedupe>();
+  private static final int INITIAL_SIZE = 1 << 16;
+  private static final int BLOOM_HASHES = 7;
+
+  private final LongHashSet set;
+  private final long maxBytes;
+  private LongBloomFilter bloom;
+  private long bloomAdded;
+  private long duplicates;
+  private int references;
+
+  /**
+   * @param maxBytes    The memory ceiling, 0 to keep every number exactly
+   */
+  public NumberDedupe(long maxBytes) {
+    this(maxBytes, LongHashSet.MAX_CAPACITY);
+  }
+
+  /**
+   * @param maxBytes        The memory ceiling, 0 to keep every number exactly
+   * @param maxCapacity     The largest set table
+   */
+  NumberDedupe(long maxBytes, int maxCapacity) {
+    this.maxBytes = maxBytes;
+    this.set = new LongHashSet(INITIAL_SIZE, maxCapacity);
+  }
+
+  /**
+   * Get the dedupe shared by every copy of a step, creating it on first use.
+   *
+   * @param owner       The object shared by the copies (the step meta)
+   * @param maxBytes    The memory ceiling
+   * @return            The shared dedupe
+   */
+  public static NumberDedupe acquire(Object owner, long maxBytes) {
+    synchronized (SHARED) {
+      NumberDedupe shared = SHARED.get(owner);
+      if (shared == null) {
+        shared = new NumberDedupe(maxBytes);
+        SHARED.put(owner, shared);
+      }
+      shared.references += 1;
+      return shared;
+    }
+  }
+
+  /**
+   * Release a shared dedupe, dropping it once the last copy lets go.
+   *
+   * @param owner       The object passed to acquire
+   * @return            True if this was the last reference
+   */
+  public static boolean release(Object owner) {
+    synchronized (SHARED) {
+      NumberDedupe shared = SHARED.get(owner);
+      if (shared == null) {
+        return false;
+      }
+      shared.references -= 1;
+      if (shared.references <= 0) {
+        SHARED.remove(owner);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Copy the numbers not seen before into out.
+   *
+   * @param numbers     The numbers found for a row
+   * @param count       The number of entries to use
+   * @param out         Receives the new numbers, at least count long
+   * @return            The number of new numbers
+   * @throws KettleException    If there is no ceiling and the set cannot hold another number
+   */
+  public synchronized int retainFirstSeen(Phonenumber.PhoneNumber[] numbers, int count, Phonenumber.PhoneNumber[] out)
+      throws KettleException {
+    int kept = 0;
+    for (int i = 0; i < count; i++) {
+      if (firstSeen(PackedNumber.pack(numbers[i]))) {
+        out[kept++] = numbers[i];
+      } else {
+        duplicates += 1;
+      }
+    }
+    return kept;
+  }
+
+  /**
+   * Check a key and remember it.
+   *
+   * @param key     The packed number
+   * @return        True if the key was not seen before
+   * @throws KettleException    If there is no ceiling and the set cannot hold another number
+   */
+  public synchronized boolean firstSeen(long key) throws KettleException {
+    if (key == PackedNumber.NOT_PACKABLE) {
+      // cannot be tracked; too long to be a real number anyway
+      return true;
+    }
+    if (bloom == null) {
+      if (!set.isFull() || (set.canGrow() && (maxBytes <= 0 || set.bytes() + set.grownBytes() <= maxBytes / 2))) {
+        return set.add(key);
+      }
+      if (maxBytes <= 0) {
+        if (set.contains(key)) {
+          return false;
+        }
+        throw new KettleException("More than " + set.size() + " distinct numbers to dedupe exactly, "
+            + "set a dedupe memory ceiling to go on with a Bloom filter");
+      }
+      bloom = new LongBloomFilter(maxBytes / 2, BLOOM_HASHES);
+    }
+    if (set.contains(key)) {
+      return false;
+    }
+    if (bloom.add(key)) {
+      bloomAdded += 1;
+      return true;
+    }
+    return false;
+  }
+
+  public synchronized long distinct() {
+    return set.size() + bloomAdded;
+  }
+
+  public synchronized long duplicates() {
+    return duplicates;
+  }
+
+  public synchronized boolean isBloomActive() {
+    return bloom != null;
+  }
+
+  /**
+   * Estimate the Bloom filter false positive rate at its current fill.
+   *
+   * @return        The estimated rate, 0 while the filter is not in use
+   */
+  public synchronized double bloomFalsePositiveRate() {
+    if (bloom == null) {
+      return 0;
+    }
+    double bits = bloom.bytes() * 8.0;
+    return Math.pow(1 - Math.exp(-BLOOM_HASHES * bloomAdded / bits), BLOOM_HASHES);
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.PhoneNumberToCarrierMapper;
+import com.google.i18n.phonenumbers.PhoneNumberToTimeZonesMapper;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+import com.google.i18n.phonenumbers.geocoding.PhoneNumberOfflineGeocoder;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Adds location, carrier, time zone and number type to numbers using the
+ * offline mappers that ship with libphonenumber.
+ *
+ * The mappers are only created for the outputs in use, and they read the
+ * prefix file of a calling code and language the first time a number
+ * needs it. Each of the mappers' public lookups works out the number type
+ * first, which runs the metadata patterns; here the type is worked out
+ * once per number, by a NumberTypeClassifier, and the cheaper lookups
+ * for a known type are used.
+ * Results are kept in a direct-mapped cache keyed by the packed number.
+ *
+ * An instance belongs to a single thread.
+ */
+public class NumberEnricher {
+  public static final int LOCATION = 0;
+  public static final int CARRIER = 1;
+  public static final int TIME_ZONE = 2;
+  public static final int NUMBER_TYPE = 3;
+  static final int OUTPUTS = 4;
+
+  private static final String[] NONE = new String[OUTPUTS];
+  private static final String[] UNKNOWN = new String[OUTPUTS];
+
+  static {
+    UNKNOWN[NUMBER_TYPE] = PhoneNumberUtil.PhoneNumberType.UNKNOWN.name();
+  }
+
+  private final PhoneNumberUtil util;
+  private final Locale locale;
+  private final boolean[] wanted;
+  private final NumberTypeClassifier classifier;
+  private PhoneNumberOfflineGeocoder geocoder;
+  private PhoneNumberToCarrierMapper carriers;
+  private PhoneNumberToTimeZonesMapper timeZones;
+  private final StringBuilder sb = new StringBuilder();
+
+  private final int mask;
+  private final long[] cachedKeys;
+  private final String[][] cachedValues;
+  private long lookups;
+  private long hits;
+
+  /**
+   * @param util          The phone number util
+   * @param locale        The language for locations and carrier names
+   * @param wanted        The outputs to produce, indexed by LOCATION, CARRIER, TIME_ZONE and NUMBER_TYPE
+   * @param cacheSize     The result cache size, rounded up to a power of 2, 0 for none
+   * @param assumeValid   Whether every number passed in is known to be valid
+   */
+  public NumberEnricher(PhoneNumberUtil util, Locale locale, boolean[] wanted, int cacheSize, boolean assumeValid) {
+    this.util = util;
+    this.locale = locale;
+    this.wanted = wanted.clone();
+    this.classifier = new NumberTypeClassifier(util, assumeValid);
+    int size = cacheSize <= 0 ? 0 : Integer.highestOneBit(Math.max(1, cacheSize * 2 - 1));
+    this.mask = size - 1;
+    this.cachedKeys = new long[size];
+    this.cachedValues = new String[size][];
+  }
+
+  /**
+   * Look up a number.
+   *
+   * @param number      The number
+   * @return            The values indexed by LOCATION, CARRIER, TIME_ZONE and NUMBER_TYPE,
+   *                    null where unknown or not wanted; must not be changed
+   */
+  public String[] enrich(Phonenumber.PhoneNumber number) {
+    lookups += 1;
+    long key = cachedKeys.length > 0 ? PackedNumber.pack(number) : PackedNumber.NOT_PACKABLE;
+    int slot = 0;
+    if (key != PackedNumber.NOT_PACKABLE) {
+      slot = LongHashSet.mix(key) & mask;
+      if (cachedKeys[slot] == key && cachedValues[slot] != null) {
+        hits += 1;
+        return cachedValues[slot];
+      }
+    }
+
+    String[] values = lookUp(number);
+
+    if (key != PackedNumber.NOT_PACKABLE) {
+      cachedKeys[slot] = key;
+      cachedValues[slot] = values;
+    }
+    return values;
+  }
+
+  private String[] lookUp(Phonenumber.PhoneNumber number) {
+    PhoneNumberUtil.PhoneNumberType type = classifier.classify(number);
+    if (type == PhoneNumberUtil.PhoneNumberType.UNKNOWN) {
+      return wanted[NUMBER_TYPE] ? UNKNOWN : NONE;
+    }
+    boolean geographical = util.isNumberGeographical(type, number.getCountryCode());
+    String[] values = new String[OUTPUTS];
+    if (wanted[NUMBER_TYPE]) {
+      values[NUMBER_TYPE] = type.name();
+    }
+    if (wanted[LOCATION]) {
+      if (geocoder == null) {
+        geocoder = PhoneNumberOfflineGeocoder.getInstance();
+      }
+      values[LOCATION] = geographical ? emptyToNull(geocoder.getDescriptionForValidNumber(number, locale))
+          : countryName(number);
+    }
+    if (wanted[CARRIER] && (type == PhoneNumberUtil.PhoneNumberType.MOBILE
+        || type == PhoneNumberUtil.PhoneNumberType.FIXED_LINE_OR_MOBILE
+        || type == PhoneNumberUtil.PhoneNumberType.PAGER)) {
+      if (carriers == null) {
+        carriers = PhoneNumberToCarrierMapper.getInstance();
+      }
+      values[CARRIER] = emptyToNull(carriers.getNameForValidNumber(number, locale));
+    }
+    if (wanted[TIME_ZONE]) {
+      if (timeZones == null) {
+        timeZones = PhoneNumberToTimeZonesMapper.getInstance();
+      }
+      // the country level zones for other numbers are only reachable through the full lookup
+      values[TIME_ZONE] = join(geographical ? timeZones.getTimeZonesForGeographicalNumber(number)
+          : timeZones.getTimeZonesForNumber(number));
+    }
+    return values;
+  }
+
+  private String countryName(Phonenumber.PhoneNumber number) {
+    String region = util.getRegionCodeForNumber(number);
+    if (region == null || region.equals("ZZ") || region.equals(PhoneNumberUtil.REGION_CODE_FOR_NON_GEO_ENTITY)) {
+      return null;
+    }
+    return emptyToNull(new Locale("", region).getDisplayCountry(locale));
+  }
+
+  private String join(List<String> zones) {
+    sb.setLength(0);
+    for (String zone : zones) {
+      if (zone.equals(PhoneNumberToTimeZonesMapper.getUnknownTimeZone())) {
+        continue;
+      }
+      if (sb.length() > 0) {
+        sb.append(',');
+      }
+      sb.append(zone);
+    }
+    return sb.length() == 0 ? null : sb.toString();
+  }
+
+  private static String emptyToNull(String value) {
+    return value == null || value.isEmpty() ? null : value;
+  }
+
+  public long lookups() {
+    return lookups;
+  }
+
+  public long hits() {
+    return hits;
+  }
+
+  /** @return     The numbers typed from the classifier's leading digits decisions */
+  public long typesDecided() {
+    return classifier.decided();
+  }
+}
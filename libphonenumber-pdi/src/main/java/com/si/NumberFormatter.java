@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+/**
+ * Formats numbers into the requested string forms.
+ *
+ * E.164 is built directly from a cached "+cc" prefix per calling code.
+ * The other forms go through PhoneNumberUtil with a reused builder. The
+ * results for plain numbers are kept in a direct-mapped cache, because
+ * the same numbers tend to come up again and again in a stream.
+ *
+ * An instance belongs to a single thread.
+ */
+public class NumberFormatter {
+  private static final PhoneNumberUtil.PhoneNumberFormat[] FORMATS = PhoneNumberUtil.PhoneNumberFormat.values();
+  private static final int MAX_CALLING_CODE = 999;
+  private static final String UNKNOWN_REGION = "ZZ";
+  /** Marks calling codes without metadata, which PhoneNumberUtil formats itself. */
+  private static final String NO_PREFIX = new String("");
+
+  private final PhoneNumberUtil util;
+  private final boolean[] wanted = new boolean[FORMATS.length];
+  private final String[] prefixes = new String[MAX_CALLING_CODE + 1];
+  private final StringBuilder sb = new StringBuilder(32);
+
+  private final int mask;
+  private final long[] cachedNationals;
+  private final int[] cachedCodes;
+  private final String[][] cachedValues;
+
+  /**
+   * @param util          The phone number util
+   * @param formats       The formats to produce
+   * @param cacheSize     The result cache size, rounded up to a power of 2, 0 for none
+   */
+  public NumberFormatter(PhoneNumberUtil util, PhoneNumberUtil.PhoneNumberFormat[] formats, int cacheSize) {
+    this.util = util;
+    for (PhoneNumberUtil.PhoneNumberFormat format : formats) {
+      wanted[format.ordinal()] = true;
+    }
+    int size = cacheSize <= 0 ? 0 : Integer.highestOneBit(Math.max(1, cacheSize * 2 - 1));
+    this.mask = size - 1;
+    this.cachedNationals = new long[size];
+    this.cachedCodes = new int[size];
+    this.cachedValues = new String[size][];
+  }
+
+  /**
+   * Format a number.
+   *
+   * @param number      The number
+   * @return            The strings indexed by PhoneNumberFormat ordinal, null
+   *                    for formats not requested; must not be changed
+   */
+  public String[] format(Phonenumber.PhoneNumber number) {
+    boolean cacheable = cachedValues.length > 0 && !number.hasExtension() && !number.isItalianLeadingZero()
+      && number.getCountryCode() <= MAX_CALLING_CODE;
+    int slot = 0;
+    if (cacheable) {
+      long national = number.getNationalNumber();
+      int code = number.getCountryCode();
+      slot = hash(national, code) & mask;
+      String[] cached = cachedValues[slot];
+      if (cached != null && cachedNationals[slot] == national && cachedCodes[slot] == code) {
+        return cached;
+      }
+    }
+
+    String[] values = new String[FORMATS.length];
+    for (int i = 0; i < FORMATS.length; i++) {
+      if (wanted[i]) {
+        values[i] = FORMATS[i] == PhoneNumberUtil.PhoneNumberFormat.E164 ? e164(number) : format(number, FORMATS[i]);
+      }
+    }
+
+    if (cacheable) {
+      cachedNationals[slot] = number.getNationalNumber();
+      cachedCodes[slot] = number.getCountryCode();
+      cachedValues[slot] = values;
+    }
+    return values;
+  }
+
+  private String format(Phonenumber.PhoneNumber number, PhoneNumberUtil.PhoneNumberFormat format) {
+    sb.setLength(0);
+    util.format(number, format, sb);
+    return sb.toString();
+  }
+
+  /**
+   * Build the E.164 form, which is only "+", the calling code and the
+   * national significant number.
+   *
+   * @param number      The number
+   * @return            The E.164 string
+   */
+  private String e164(Phonenumber.PhoneNumber number) {
+    int code = number.getCountryCode();
+    String prefix = code >= 0 && code <= MAX_CALLING_CODE ? prefixes[code] : NO_PREFIX;
+    if (prefix == null) {
+      prefix = UNKNOWN_REGION.equals(util.getRegionCodeForCountryCode(code)) ? NO_PREFIX : "+" + code;
+      prefixes[code] = prefix;
+    }
+    if (prefix == NO_PREFIX) {
+      return format(number, PhoneNumberUtil.PhoneNumberFormat.E164);
+    }
+    sb.setLength(0);
+    sb.append(prefix);
+    if (number.isItalianLeadingZero()) {
+      for (int i = 0; i < number.getNumberOfLeadingZeros(); i++) {
+        sb.append('0');
+      }
+    }
+    sb.append(number.getNationalNumber());
+    return sb.toString();
+  }
+
+  private static int hash(long national, int code) {
+    long h = national * 0x9E3779B97F4A7C15L + code;
+    return (int) (h ^ (h >>> 32));
+  }
+}
@@ -0,0 +1,345 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonemetadata;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Works out the type of numbers, giving the same answer as
+ * PhoneNumberUtil.getNumberType, mostly without running its patterns.
+ *
+ * A decision is kept per (calling code, length, leading digits). For each
+ * region of the calling code, every type pattern is run once on the
+ * leading digits alone. A pattern that fails without reaching the end of
+ * them cannot match any number that starts with them. When at most one
+ * type is still possible across all regions, every valid number with
+ * those leading digits has that type. Decisions are looked up from one
+ * leading digit up to MAX_PREFIX, and numbers that are still undecided
+ * fall back to getNumberType.
+ *
+ * A decided number still has to be valid. With assumeValid set, numbers
+ * are known to be valid already and a decision is a single lookup.
+ * Otherwise the one possible type is checked with the general pattern and
+ * that type's pattern, instead of the whole chain.
+ *
+ * An instance belongs to a single thread.
+ */
+public class NumberTypeClassifier {
+  static final int MAX_PREFIX = 8;
+  static final int MAX_DECISIONS = 1 << 20;
+
+  private static final String METADATA_FILE = "/com/google/i18n/phonenumbers/data/PhoneNumberMetadataProto_";
+  private static final PhoneNumberUtil.PhoneNumberType[] TYPES = PhoneNumberUtil.PhoneNumberType.values();
+  private static final int UNDECIDED = -1;
+  private static final int MAX_CALLING_CODE = 999;
+  private static final int MAX_LENGTH = 31;
+
+  /** The type descriptions in the order getNumberType checks them, after the general one. */
+  private static final int GENERAL = 0;
+  private static final int FIXED_LINE = 9;
+  private static final int MOBILE = 10;
+  private static final PhoneNumberUtil.PhoneNumberType[] CHECKED = {
+    null,
+    PhoneNumberUtil.PhoneNumberType.PREMIUM_RATE,
+    PhoneNumberUtil.PhoneNumberType.TOLL_FREE,
+    PhoneNumberUtil.PhoneNumberType.SHARED_COST,
+    PhoneNumberUtil.PhoneNumberType.VOIP,
+    PhoneNumberUtil.PhoneNumberType.PERSONAL_NUMBER,
+    PhoneNumberUtil.PhoneNumberType.PAGER,
+    PhoneNumberUtil.PhoneNumberType.UAN,
+    PhoneNumberUtil.PhoneNumberType.VOICEMAIL,
+    PhoneNumberUtil.PhoneNumberType.FIXED_LINE,
+    PhoneNumberUtil.PhoneNumberType.MOBILE
+  };
+
+  /** The compiled metadata per calling code, shared and never changed once built. */
+  private static final Map<Integer, Family> FAMILIES = new ConcurrentHashMap<Integer, Family>();
+  private static final Family NO_FAMILY = new Family(new ArrayList<Region>());
+
+  private final PhoneNumberUtil util;
+  private final boolean assumeValid;
+  private final LongIntHashMap decisions = new LongIntHashMap(1024);
+  private long lookups;
+  private long decided;
+
+  /**
+   * @param util            The phone number util
+   * @param assumeValid     Whether every number passed in is known to be valid
+   */
+  public NumberTypeClassifier(PhoneNumberUtil util, boolean assumeValid) {
+    this.util = util;
+    this.assumeValid = assumeValid;
+  }
+
+  /**
+   * Get the type of a number.
+   *
+   * @param number      The number
+   * @return            The same type as PhoneNumberUtil.getNumberType
+   */
+  public PhoneNumberUtil.PhoneNumberType classify(Phonenumber.PhoneNumber number) {
+    lookups += 1;
+    int cc = number.getCountryCode();
+    String nsn = util.getNationalSignificantNumber(number);
+    int length = nsn.length();
+    Family family = cc > 0 && cc <= MAX_CALLING_CODE && length <= MAX_LENGTH ? family(cc) : NO_FAMILY;
+    if (family.regions.isEmpty()) {
+      return util.getNumberType(number);
+    }
+    long prefix = 0;
+    for (int k = 1; k <= Math.min(length, MAX_PREFIX); k++) {
+      prefix = prefix * 10 + (nsn.charAt(k - 1) - '0');
+      long key = ((((long) cc << 5 | length) << 4 | k) << 27) | prefix;
+      int decision = decisions.get(key);
+      if (decision == 0) {
+        decision = family.decide(nsn.substring(0, k), length);
+        if (decisions.size() < MAX_DECISIONS) {
+          decisions.increment(key, decision);
+        }
+      }
+      if (decision != UNDECIDED) {
+        decided += 1;
+        PhoneNumberUtil.PhoneNumberType type = TYPES[decision - 1];
+        if (assumeValid || type == PhoneNumberUtil.PhoneNumberType.UNKNOWN) {
+          return type;
+        }
+        return family.verify(nsn, type);
+      }
+    }
+    return util.getNumberType(number);
+  }
+
+  /** @return     The numbers classified */
+  public long lookups() {
+    return lookups;
+  }
+
+  /** @return     The numbers classified from a leading digits decision */
+  public long decided() {
+    return decided;
+  }
+
+  private static Family family(int cc) {
+    Family family = FAMILIES.get(cc);
+    if (family == null) {
+      family = loadFamily(cc);
+      FAMILIES.put(cc, family);
+    }
+    return family;
+  }
+
+  /**
+   * Read the metadata of every region of a calling code from the data files
+   * in the libphonenumber jar, in the order PhoneNumberUtil tries them.
+   */
+  private static Family loadFamily(int cc) {
+    List<String> codes = PhoneNumberUtil.getInstance().getRegionCodesForCountryCode(cc);
+    List<Region> regions = new ArrayList<Region>();
+    for (String code : codes) {
+      String file = METADATA_FILE + (PhoneNumberUtil.REGION_CODE_FOR_NON_GEO_ENTITY.equals(code) ? cc : code);
+      InputStream in = NumberTypeClassifier.class.getResourceAsStream(file);
+      if (in == null) {
+        return NO_FAMILY;
+      }
+      try {
+        ObjectInputStream objects = new ObjectInputStream(in);
+        try {
+          Phonemetadata.PhoneMetadataCollection collection = new Phonemetadata.PhoneMetadataCollection();
+          collection.readExternal(objects);
+          if (collection.getMetadataList().isEmpty()) {
+            return NO_FAMILY;
+          }
+          regions.add(new Region(collection.getMetadataList().get(0)));
+        } finally {
+          objects.close();
+        }
+      } catch (IOException e) {
+        return NO_FAMILY;
+      }
+    }
+    return new Family(regions);
+  }
+
+  /**
+   * The regions sharing a calling code.
+   */
+  private static class Family {
+    final List<Region> regions;
+
+    Family(List<Region> regions) {
+      this.regions = regions;
+    }
+
+    /**
+     * Decide the type of all valid numbers starting with a prefix.
+     *
+     * @return    The type ordinal plus one, or UNDECIDED
+     */
+    int decide(String prefix, int length) {
+      int possible = 0;
+      for (Region region : regions) {
+        possible |= region.possibleTypes(prefix, length);
+      }
+      if (possible == 0) {
+        return PhoneNumberUtil.PhoneNumberType.UNKNOWN.ordinal() + 1;
+      }
+      if (Integer.bitCount(possible) > 1) {
+        return UNDECIDED;
+      }
+      return Integer.numberOfTrailingZeros(possible) + 1;
+    }
+
+    /**
+     * Check a number against the only type it can have, picking its region
+     * the way PhoneNumberUtil does.
+     */
+    PhoneNumberUtil.PhoneNumberType verify(String nsn, PhoneNumberUtil.PhoneNumberType type) {
+      Region chosen = regions.size() == 1 ? regions.get(0) : null;
+      for (int i = 0; chosen == null && i < regions.size(); i++) {
+        Region region = regions.get(i);
+        if (region.leadingDigits != null ? region.leadingDigits.matcher(nsn).lookingAt() : region.hasType(nsn, type)) {
+          chosen = region;
+        }
+      }
+      return chosen != null && chosen.hasType(nsn, type) ? type : PhoneNumberUtil.PhoneNumberType.UNKNOWN;
+    }
+  }
+
+  /**
+   * The compiled type descriptions of one region.
+   */
+  private static class Region {
+    final Pattern[] patterns = new Pattern[CHECKED.length];
+    final int[][] lengths = new int[CHECKED.length][];
+    final Pattern leadingDigits;
+    final boolean sameMobileAndFixedLine;
+
+    Region(Phonemetadata.PhoneMetadata metadata) {
+      Phonemetadata.PhoneNumberDesc[] descs = {
+        metadata.getGeneralDesc(), metadata.getPremiumRate(), metadata.getTollFree(), metadata.getSharedCost(),
+        metadata.getVoip(), metadata.getPersonalNumber(), metadata.getPager(), metadata.getUan(),
+        metadata.getVoicemail(), metadata.getFixedLine(), metadata.getMobile()
+      };
+      for (int i = 0; i < descs.length; i++) {
+        String pattern = descs[i].getNationalNumberPattern();
+        patterns[i] = pattern == null || pattern.isEmpty() ? null : Pattern.compile(pattern);
+        List<Integer> possible = descs[i].getPossibleLengthList();
+        lengths[i] = new int[possible.size()];
+        for (int l = 0; l < lengths[i].length; l++) {
+          lengths[i][l] = possible.get(l);
+        }
+      }
+      leadingDigits = metadata.hasLeadingDigits() ? Pattern.compile(metadata.getLeadingDigits()) : null;
+      sameMobileAndFixedLine = metadata.getSameMobileAndFixedLinePattern();
+    }
+
+    private boolean lengthPossible(int desc, int length) {
+      if (lengths[desc].length == 0) {
+        return true;
+      }
+      for (int l : lengths[desc]) {
+        if (l == length) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /** Whether some number of the length starting with the prefix may match. */
+    private boolean mayMatch(int desc, String prefix, int length) {
+      if (patterns[desc] == null || !lengthPossible(desc, length)) {
+        return false;
+      }
+      Matcher m = patterns[desc].matcher(prefix);
+      boolean matches = m.matches();
+      return prefix.length() == length ? matches : matches || m.hitEnd();
+    }
+
+    private boolean matches(int desc, String nsn) {
+      return patterns[desc] != null && lengthPossible(desc, nsn.length()) && patterns[desc].matcher(nsn).matches();
+    }
+
+    /** The bit set of types a number starting with the prefix may get in this region. */
+    int possibleTypes(String prefix, int length) {
+      if (!mayMatch(GENERAL, prefix, length)) {
+        return 0;
+      }
+      int possible = 0;
+      for (int i = 1; i < FIXED_LINE; i++) {
+        if (mayMatch(i, prefix, length)) {
+          possible |= bit(CHECKED[i]);
+        }
+      }
+      boolean fixedLine = mayMatch(FIXED_LINE, prefix, length);
+      boolean mobile = mayMatch(MOBILE, prefix, length);
+      if (fixedLine) {
+        if (sameMobileAndFixedLine) {
+          possible |= bit(PhoneNumberUtil.PhoneNumberType.FIXED_LINE_OR_MOBILE);
+        } else {
+          possible |= bit(PhoneNumberUtil.PhoneNumberType.FIXED_LINE);
+          if (mobile) {
+            possible |= bit(PhoneNumberUtil.PhoneNumberType.FIXED_LINE_OR_MOBILE);
+          }
+        }
+      }
+      if (!sameMobileAndFixedLine && mobile) {
+        possible |= bit(PhoneNumberUtil.PhoneNumberType.MOBILE);
+      }
+      return possible;
+    }
+
+    /** Whether the number is valid here with the given type, when no other type is possible. */
+    boolean hasType(String nsn, PhoneNumberUtil.PhoneNumberType type) {
+      if (!matches(GENERAL, nsn)) {
+        return false;
+      }
+      switch (type) {
+        case FIXED_LINE:
+          return matches(FIXED_LINE, nsn);
+        case MOBILE:
+          return matches(MOBILE, nsn);
+        case FIXED_LINE_OR_MOBILE:
+          return matches(FIXED_LINE, nsn) && (sameMobileAndFixedLine || matches(MOBILE, nsn));
+        default:
+          for (int i = 1; i < FIXED_LINE; i++) {
+            if (CHECKED[i] == type) {
+              return matches(i, nsn);
+            }
+          }
+          return false;
+      }
+    }
+
+    private static int bit(PhoneNumberUtil.PhoneNumberType type) {
+      return 1 << type.ordinal();
+    }
+  }
+}
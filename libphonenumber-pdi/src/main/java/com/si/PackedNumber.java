@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.Phonenumber;
+
+/**
+ * Packs a number into one long so numbers can be kept in primitive
+ * collections. The calling code takes the top 10 bits, the count of
+ * Italian leading zeros the next 2 and the national number the low 52,
+ * enough for every national number of up to 15 digits.
+ *
+ * Extensions are not part of the key.
+ */
+public final class PackedNumber {
+  /** Returned for numbers that do not fit, never a valid key. */
+  public static final long NOT_PACKABLE = -1L;
+
+  private static final int NATIONAL_BITS = 52;
+  private static final long NATIONAL_MASK = (1L << NATIONAL_BITS) - 1;
+  private static final int ZEROS_SHIFT = NATIONAL_BITS;
+  private static final int MAX_ZEROS = 3;
+  private static final int CODE_SHIFT = NATIONAL_BITS + 2;
+  private static final int MAX_CALLING_CODE = 999;
+
+  private PackedNumber() {
+  }
+
+  /**
+   * Pack a number.
+   *
+   * @param countryCode     The calling code
+   * @param leadingZeros    The Italian leading zeros, 0 for none
+   * @param national        The national number
+   * @return                The key, never 0, or NOT_PACKABLE
+   */
+  public static long pack(int countryCode, int leadingZeros, long national) {
+    if (countryCode <= 0 || countryCode > MAX_CALLING_CODE || national < 0 || national > NATIONAL_MASK
+        || leadingZeros < 0 || leadingZeros > MAX_ZEROS) {
+      return NOT_PACKABLE;
+    }
+    return ((long) countryCode << CODE_SHIFT) | ((long) leadingZeros << ZEROS_SHIFT) | national;
+  }
+
+  public static long pack(Phonenumber.PhoneNumber number) {
+    int zeros = number.isItalianLeadingZero() ? number.getNumberOfLeadingZeros() : 0;
+    return pack(number.getCountryCode(), zeros, number.getNationalNumber());
+  }
+
+  public static int countryCode(long key) {
+    return (int) (key >>> CODE_SHIFT);
+  }
+
+  public static int leadingZeros(long key) {
+    return (int) (key >>> ZEROS_SHIFT) & MAX_ZEROS;
+  }
+
+  public static long nationalNumber(long key) {
+    return key & NATIONAL_MASK;
+  }
+
+  /**
+   * Rebuild the number a key was packed from.
+   *
+   * @param key     The key
+   * @return        The number without extension
+   */
+  public static Phonenumber.PhoneNumber toPhoneNumber(long key) {
+    Phonenumber.PhoneNumber number = new Phonenumber.PhoneNumber()
+        .setCountryCode(countryCode(key))
+        .setNationalNumber(nationalNumber(key));
+    int zeros = leadingZeros(key);
+    if (zeros > 0) {
+      number.setItalianLeadingZero(true);
+      if (zeros > 1) {
+        number.setNumberOfLeadingZeros(zeros);
+      }
+    }
+    return number;
+  }
+}
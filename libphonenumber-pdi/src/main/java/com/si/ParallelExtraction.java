@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.Phonenumber;
+import org.pentaho.di.core.exception.KettleException;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs extraction for batches of rows on a pool of worker threads and
+ * hands the batches back in the order they were added.
+ *
+ * Only the step thread calls add, next and finish, so rows are still
+ * written by the step thread. At most maxInFlight batches are queued or
+ * running; add blocks on the oldest batch once that limit is reached.
+ */
+public class ParallelExtraction {
+  private final ExecutorService executor;
+  private final ArrayDeque<Future<Batch>> inFlight = new ArrayDeque<Future<Batch>>();
+  private final PhoneNumberExtractor extractor;
+  private final int fieldIdx;
+  private final int batchSize;
+  private final int maxInFlight;
+  private boolean metricsEnabled;
+  private AdditionalFields additionalFields;
+  private IncrementalState incremental;
+  private int keyIdx = -1;
+  private Batch current;
+
+  /**
+   * @param name          The step name, used for the thread names
+   * @param workers       The number of worker threads
+   * @param batchSize     The number of rows per batch
+   * @param extractor     The shared extractor
+   * @param fieldIdx      The index of the text field
+   */
+  public ParallelExtraction(String name, int workers, int batchSize, PhoneNumberExtractor extractor, int fieldIdx) {
+    this.executor = Executors.newFixedThreadPool(workers, new WorkerFactory(name));
+    this.extractor = extractor;
+    this.fieldIdx = fieldIdx;
+    this.batchSize = batchSize;
+    this.maxInFlight = workers * 2;
+  }
+
+  /**
+   * Have each batch collect its own metrics for the step to add up.
+   *
+   * @param metricsEnabled    Whether to collect metrics
+   */
+  public void setMetricsEnabled(boolean metricsEnabled) {
+    this.metricsEnabled = metricsEnabled;
+  }
+
+  /**
+   * Extract the additional fields of each row on the workers as well.
+   *
+   * @param additionalFields    The additional fields, null for none
+   */
+  public void setAdditionalFields(AdditionalFields additionalFields) {
+    this.additionalFields = additionalFields;
+  }
+
+  /**
+   * Reuse the results of the last run for unchanged rows.
+   *
+   * @param incremental     The shared state, null for none
+   * @param keyIdx          The index of the row key field
+   */
+  public void setIncremental(IncrementalState incremental, int keyIdx) {
+    this.incremental = incremental;
+    this.keyIdx = keyIdx;
+  }
+
+  /**
+   * Add a row to the current batch, submitting the batch when it is full.
+   *
+   * @param row           The resized output row
+   * @param regionValue   The region field value as a string, null to use the default region
+   */
+  public void add(Object[] row, String regionValue) {
+    if (current == null) {
+      current = new Batch(batchSize);
+      if (metricsEnabled) {
+        current.metrics = new ExtractionMetrics(extractor.isCheckValid());
+      }
+    }
+    current.rows[current.size] = row;
+    current.regions[current.size++] = regionValue;
+    if (current.size == batchSize) {
+      submit();
+    }
+  }
+
+  /**
+   * Submit the partly filled batch, used at the end of the input.
+   */
+  public void finish() {
+    if (current != null && current.size > 0) {
+      submit();
+    }
+  }
+
+  private void submit() {
+    final Batch batch = current;
+    current = null;
+    inFlight.addLast(executor.submit(new Callable<Batch>() {
+      public Batch call() {
+        batch.run(extractor, fieldIdx, additionalFields, incremental, keyIdx);
+        return batch;
+      }
+    }));
+  }
+
+  /**
+   * Get the oldest batch if it can be emitted.
+   *
+   * @param drain   Wait for the oldest batch even when the queue is not full
+   * @return        The batch or null
+   */
+  public Batch next(boolean drain) throws KettleException {
+    Future<Batch> head = inFlight.peekFirst();
+    if (head == null || (!drain && !head.isDone() && inFlight.size() < maxInFlight)) {
+      return null;
+    }
+    inFlight.removeFirst();
+    try {
+      return head.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new KettleException("Interrupted waiting for phone number workers", e);
+    } catch (ExecutionException e) {
+      throw new KettleException("Phone number worker failed", e.getCause());
+    }
+  }
+
+  /**
+   * Stop the workers, dropping anything still queued.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+    inFlight.clear();
+  }
+
+  /**
+   * A batch of rows and the numbers found for each of them.
+   */
+  public static class Batch {
+    public final Object[][] rows;
+    final String[] regions;
+    public final Phonenumber.PhoneNumber[][] numbers;
+    public final NumberParseException[] errors;
+    public final boolean[] overBudget;
+    public int size;
+    /** The rows whose main field the pre-filter skipped. */
+    public long prefilterSkipped;
+    /** The additional fields that failed to parse. */
+    public long additionalFailures;
+    /** The per-row counts and latencies, if metrics are enabled. */
+    public ExtractionMetrics metrics;
+
+    Batch(int capacity) {
+      rows = new Object[capacity][];
+      regions = new String[capacity];
+      numbers = new Phonenumber.PhoneNumber[capacity][];
+      errors = new NumberParseException[capacity];
+      overBudget = new boolean[capacity];
+    }
+
+    void run(PhoneNumberExtractor extractor, int fieldIdx, AdditionalFields additionalFields,
+             IncrementalState incremental, int keyIdx) {
+      PhoneNumberExtractor.Buffer buffer = new PhoneNumberExtractor.Buffer();
+      for (int i = 0; i < size; i++) {
+        if (additionalFields != null) {
+          additionalFailures += additionalFields.fill(rows[i], regions[i], buffer);
+        }
+        PhoneNumberExtractor.Region region = extractor.resolveRegion(regions[i]);
+        long start = metrics != null ? System.nanoTime() : 0L;
+        if (incremental != null) {
+          incremental.extract(extractor, rows[i][keyIdx], rows[i][fieldIdx], region, buffer);
+        } else {
+          extractor.extractValue(rows[i][fieldIdx], region, buffer);
+        }
+        if (metrics != null) {
+          metrics.recordRow(buffer.count, buffer.invalid, System.nanoTime() - start);
+        }
+        if (buffer.prefilterSkipped) {
+          prefilterSkipped += 1;
+        }
+        numbers[i] = buffer.copy();
+        errors[i] = buffer.error;
+        overBudget[i] = buffer.overBudget;
+      }
+    }
+  }
+
+  private static class WorkerFactory implements ThreadFactory {
+    private final String name;
+    private final AtomicInteger count = new AtomicInteger();
+
+    WorkerFactory(String name) {
+      this.name = name;
+    }
+
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, name + " worker " + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
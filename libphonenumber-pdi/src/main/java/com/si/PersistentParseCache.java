@@ -0,0 +1,395 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Parse results kept in a memory-mapped file so they survive the run and
+ * the next run over mostly the same texts skips the parsing.
+ *
+ * The file is an open addressing hash table with a fixed number of
+ * slots, twice the configured entries. Each slot holds a 128 bit hash of
+ * the text, region and extraction mode, and up to MAX_NUMBERS packed
+ * numbers; an empty result is stored too. Results with more numbers or
+ * with an extension are not stored. Once the table is three quarters
+ * full nothing more is added.
+ *
+ * The header carries a stamp of the libphonenumber version and one of
+ * the step options that change results. A file with other stamps, a
+ * different size or one left open by a failed run is started over.
+ *
+ * One cache is shared by all copies of a step, the same way as the parse
+ * cache. Lookups and stores are synchronized.
+ */
+public class PersistentParseCache {
+  static final long MAGIC = 0x504E504152534543L;
+  static final int VERSION = 1;
+  static final int MAX_NUMBERS = 2;
+  static final int HEADER_SIZE = 64;
+  private static final int SLOT_LONGS = 2 + MAX_NUMBERS;
+  private static final int SEGMENT_SHIFT = 24;
+  private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+  private static final int MIN_CAPACITY = 1 << 10;
+  private static final int MAX_PROBES = 64;
+
+  /** Header fields, by long index. */
+  private static final int H_MAGIC = 0;
+  private static final int H_VERSION = 1;
+  private static final int H_METADATA = 2;
+  private static final int H_OPTIONS = 3;
+  private static final int H_CAPACITY = 4;
+  private static final int H_SIZE = 5;
+  private static final int H_CLEAN = 6;
+
+  private static final String VERSION_RESOURCE = "/META-INF/maven/com.googlecode.libphonenumber/libphonenumber/pom.properties";
+  private static final String METADATA_RESOURCE = "/com/google/i18n/phonenumbers/data/PhoneNumberMetadataProto_US";
+
+  private static final Map<Object, PersistentParseCache> SHARED = new IdentityHashMap<Object, PersistentParseCache>();
+
+  private final MappedByteBuffer headerBytes;
+  private final LongBuffer header;
+  private final MappedByteBuffer[] segmentBytes;
+  private final LongBuffer[] segments;
+  private final long mask;
+  private final long maxSize;
+  private final boolean reused;
+  private long size;
+  private long hits;
+  private long misses;
+  private int references;
+
+  /**
+   * Open a cache file, starting it over unless it was written with the
+   * same stamps and size.
+   *
+   * @param file            The cache file
+   * @param entries         The number of results to keep
+   * @param metadataStamp   The stamp of the libphonenumber version, see metadataStamp
+   * @param optionsStamp    The stamp of the options that change results
+   * @throws IOException    If the file cannot be mapped
+   */
+  public PersistentParseCache(File file, long entries, long metadataStamp, long optionsStamp) throws IOException {
+    long capacity = Math.max(MIN_CAPACITY, Long.highestOneBit(Math.max(1, entries * 2 - 1)) << 1);
+    long length = HEADER_SIZE + capacity * SLOT_LONGS * 8;
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      FileChannel channel = raf.getChannel();
+      boolean reuse = false;
+      if (channel.size() == length) {
+        LongBuffer existing = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).asLongBuffer();
+        reuse = existing.get(H_MAGIC) == MAGIC && existing.get(H_VERSION) == VERSION
+            && existing.get(H_METADATA) == metadataStamp && existing.get(H_OPTIONS) == optionsStamp
+            && existing.get(H_CAPACITY) == capacity && existing.get(H_CLEAN) == 1;
+      }
+      if (!reuse) {
+        // a sparse file of empty slots
+        raf.setLength(0);
+        raf.setLength(length);
+      }
+      headerBytes = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+      header = headerBytes.asLongBuffer();
+      int count = (int) ((capacity + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+      segmentBytes = new MappedByteBuffer[count];
+      segments = new LongBuffer[count];
+      for (int s = 0; s < count; s++) {
+        long first = (long) s << SEGMENT_SHIFT;
+        long slots = Math.min(capacity - first, 1L << SEGMENT_SHIFT);
+        segmentBytes[s] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + first * SLOT_LONGS * 8,
+            slots * SLOT_LONGS * 8);
+        segments[s] = segmentBytes[s].asLongBuffer();
+      }
+      if (!reuse) {
+        header.put(H_MAGIC, MAGIC);
+        header.put(H_VERSION, VERSION);
+        header.put(H_METADATA, metadataStamp);
+        header.put(H_OPTIONS, optionsStamp);
+        header.put(H_CAPACITY, capacity);
+        header.put(H_SIZE, 0);
+      }
+      // marked clean again by close, so a run that dies leaves a file the next run discards
+      header.put(H_CLEAN, 0);
+      headerBytes.force();
+      this.reused = reuse;
+      this.size = header.get(H_SIZE);
+      this.mask = capacity - 1;
+      this.maxSize = capacity / 4 * 3;
+    } finally {
+      // the mappings stay valid once the file is closed
+      raf.close();
+    }
+  }
+
+  /**
+   * Get the cache shared by every copy of a step, opening it on first use.
+   *
+   * @param owner           The object shared by the copies (the step meta)
+   * @param file            The cache file
+   * @param entries         The number of results to keep
+   * @param optionsStamp    The stamp of the options that change results
+   * @return                The shared cache
+   * @throws IOException    If the file cannot be mapped
+   */
+  public static PersistentParseCache acquire(Object owner, File file, long entries, long optionsStamp)
+      throws IOException {
+    synchronized (SHARED) {
+      PersistentParseCache shared = SHARED.get(owner);
+      if (shared == null) {
+        shared = new PersistentParseCache(file, entries, metadataStamp(), optionsStamp);
+        SHARED.put(owner, shared);
+      }
+      shared.references += 1;
+      return shared;
+    }
+  }
+
+  /**
+   * Release a shared cache, writing it out once the last copy lets go.
+   *
+   * @param owner       The object passed to acquire
+   * @return            True if this was the last reference
+   */
+  public static boolean release(Object owner) {
+    synchronized (SHARED) {
+      PersistentParseCache shared = SHARED.get(owner);
+      if (shared == null) {
+        return false;
+      }
+      shared.references -= 1;
+      if (shared.references <= 0) {
+        SHARED.remove(owner);
+        shared.close();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Get the stamp of the libphonenumber in use: its version, or a hash of
+   * the US metadata if the version cannot be read.
+   *
+   * @return      The stamp
+   */
+  public static long metadataStamp() {
+    try {
+      InputStream in = PhoneNumberUtil.class.getResourceAsStream(VERSION_RESOURCE);
+      if (in != null) {
+        try {
+          Properties properties = new Properties();
+          properties.load(in);
+          String version = properties.getProperty("version");
+          if (version != null) {
+            return hash("libphonenumber " + version);
+          }
+        } finally {
+          in.close();
+        }
+      }
+      in = PhoneNumberUtil.class.getResourceAsStream(METADATA_RESOURCE);
+      if (in != null) {
+        try {
+          long h = 0xcbf29ce484222325L;
+          for (int b = in.read(); b >= 0; b = in.read()) {
+            h = (h ^ b) * 0x100000001b3L;
+          }
+          return fmix(h);
+        } finally {
+          in.close();
+        }
+      }
+    } catch (IOException e) {
+      // fall through to a stamp that matches no file
+    }
+    return System.nanoTime();
+  }
+
+  /**
+   * Hash a string to 64 bits, used for the stamps.
+   *
+   * @param s     The string
+   * @return      The hash
+   */
+  public static long hash(String s) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < s.length(); i++) {
+      h = (h ^ s.charAt(i)) * 0x100000001b3L;
+    }
+    return fmix(h);
+  }
+
+  private static long fmix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private long get(long slot, int field) {
+    return segments[(int) (slot >>> SEGMENT_SHIFT)].get((int) (slot & SEGMENT_MASK) * SLOT_LONGS + field);
+  }
+
+  private void put(long slot, int field, long value) {
+    segments[(int) (slot >>> SEGMENT_SHIFT)].put((int) (slot & SEGMENT_MASK) * SLOT_LONGS + field, value);
+  }
+
+  /**
+   * Look up a result.
+   *
+   * @param probe   The key, filled in with set()
+   * @param keys    Receives the packed numbers, at least MAX_NUMBERS long
+   * @return        The number of numbers, or -1 on a miss
+   */
+  public synchronized int get(Probe probe, long[] keys) {
+    long slot = probe.h1 & mask;
+    for (int p = 0; p < MAX_PROBES; p++) {
+      long stored = get(slot, 0);
+      if (stored == 0) {
+        break;
+      }
+      if (stored == probe.h1 && get(slot, 1) == probe.h2) {
+        int count = 0;
+        for (int n = 0; n < MAX_NUMBERS; n++) {
+          long key = get(slot, 2 + n);
+          if (key != 0) {
+            keys[count++] = key;
+          }
+        }
+        hits += 1;
+        return count;
+      }
+      slot = (slot + 1) & mask;
+    }
+    misses += 1;
+    return -1;
+  }
+
+  /**
+   * Store a result, unless it cannot be kept or the table is full.
+   *
+   * @param probe       The key, filled in with set()
+   * @param numbers     The numbers found
+   * @param count       The number of entries to use
+   * @return            True if the result was stored
+   */
+  public synchronized boolean put(Probe probe, Phonenumber.PhoneNumber[] numbers, int count) {
+    if (count > MAX_NUMBERS || size >= maxSize) {
+      return false;
+    }
+    long[] keys = new long[MAX_NUMBERS];
+    for (int n = 0; n < count; n++) {
+      keys[n] = PackedNumber.pack(numbers[n]);
+      if (keys[n] == PackedNumber.NOT_PACKABLE || numbers[n].hasExtension()) {
+        return false;
+      }
+    }
+    long slot = probe.h1 & mask;
+    for (int p = 0; p < MAX_PROBES; p++) {
+      long stored = get(slot, 0);
+      if (stored == probe.h1 && get(slot, 1) == probe.h2) {
+        return false;
+      }
+      if (stored == 0) {
+        for (int n = 0; n < MAX_NUMBERS; n++) {
+          put(slot, 2 + n, keys[n]);
+        }
+        put(slot, 1, probe.h2);
+        put(slot, 0, probe.h1);
+        size += 1;
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * Write the results to disk and mark the file as complete. The cache
+   * must not be used afterwards.
+   */
+  public synchronized void close() {
+    for (MappedByteBuffer segment : segmentBytes) {
+      segment.force();
+    }
+    header.put(H_SIZE, size);
+    header.put(H_CLEAN, 1);
+    headerBytes.force();
+  }
+
+  /** @return     Whether the file held the results of an earlier run */
+  public boolean isReused() {
+    return reused;
+  }
+
+  public synchronized long size() {
+    return size;
+  }
+
+  public synchronized long hits() {
+    return hits;
+  }
+
+  public synchronized long misses() {
+    return misses;
+  }
+
+  /**
+   * A 128 bit key for a text, region and extraction mode. A probe may be
+   * refilled for each lookup to avoid allocating.
+   */
+  public static final class Probe {
+    private long h1;
+    private long h2;
+
+    public Probe set(String text, String region, int mode) {
+      long a = 0xcbf29ce484222325L;
+      long b = 0x9E3779B97F4A7C15L;
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        a = (a ^ c) * 0x100000001b3L;
+        b = (b + c) * 0xc2b2ae3d27d4eb4fL;
+      }
+      for (int i = 0; i < region.length(); i++) {
+        char c = region.charAt(i);
+        a = (a ^ c) * 0x100000001b3L;
+        b = (b + c) * 0xc2b2ae3d27d4eb4fL;
+      }
+      a = fmix(a ^ mode ^ ((long) text.length() << 32));
+      b = fmix(b + mode * 31L + text.length());
+      // 0 marks an empty slot
+      h1 = a == 0 ? 1 : a;
+      h2 = b;
+      return this;
+    }
+  }
+}
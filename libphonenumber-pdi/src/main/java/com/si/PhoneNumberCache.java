@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of parse results keyed by input text, region and mode.
+ *
+ * One cache is shared by all copies of a step. Copies acquire it from the
+ * step meta they share and release it when they are disposed.
+ */
+public class PhoneNumberCache {
+  private static final Map<Object, PhoneNumberCache> SHARED = new IdentityHashMap<Object, PhoneNumberCache>();
+
+  private final Cache<Key, Phonenumber.PhoneNumber[]> cache;
+  private int references;
+
+  public PhoneNumberCache(int maxSize) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Get the cache shared by every copy of a step, creating it on first use.
+   *
+   * @param owner       The object shared by the copies (the step meta)
+   * @param maxSize     The maximum number of entries
+   * @return            The shared cache
+   */
+  public static PhoneNumberCache acquire(Object owner, int maxSize) {
+    synchronized (SHARED) {
+      PhoneNumberCache shared = SHARED.get(owner);
+      if (shared == null) {
+        shared = new PhoneNumberCache(maxSize);
+        SHARED.put(owner, shared);
+      }
+      shared.references += 1;
+      return shared;
+    }
+  }
+
+  /**
+   * Release a shared cache. The cache is dropped once the last copy lets go.
+   *
+   * @param owner       The object passed to acquire
+   * @return            True if this was the last reference
+   */
+  public static boolean release(Object owner) {
+    synchronized (SHARED) {
+      PhoneNumberCache shared = SHARED.get(owner);
+      if (shared == null) {
+        return false;
+      }
+      shared.references -= 1;
+      if (shared.references <= 0) {
+        SHARED.remove(owner);
+        shared.cache.invalidateAll();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Look up a cached result.
+   *
+   * @param text        The input text
+   * @param region      The default region
+   * @param mode        The extraction mode
+   * @return            The cached numbers or null on a miss
+   */
+  public Phonenumber.PhoneNumber[] get(String text, String region, int mode) {
+    return cache.getIfPresent(new Key().set(text, region, mode));
+  }
+
+  /**
+   * Look up a cached result with a reusable probe key.
+   *
+   * @param probe       A key filled in with set()
+   * @return            The cached numbers or null on a miss
+   */
+  public Phonenumber.PhoneNumber[] get(Key probe) {
+    return cache.getIfPresent(probe);
+  }
+
+  /**
+   * Store a result. The array must not be modified afterwards.
+   *
+   * @param text        The input text
+   * @param region      The default region
+   * @param mode        The extraction mode
+   * @param numbers     The numbers found for the text
+   */
+  public void put(String text, String region, int mode, Phonenumber.PhoneNumber[] numbers) {
+    cache.put(new Key().set(text, region, mode), numbers);
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /**
+   * Composite cache key. Keys stored in the cache are never changed; a
+   * probe key may be refilled for each lookup to avoid allocating.
+   */
+  public static final class Key {
+    private String text;
+    private String region;
+    private int mode;
+    private int hash;
+
+    public Key set(String text, String region, int mode) {
+      this.text = text;
+      this.region = region;
+      this.mode = mode;
+      this.hash = (text.hashCode() * 31 + region.hashCode()) * 31 + mode;
+      return this;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key k = (Key) o;
+      return hash == k.hash && mode == k.mode && text.equals(k.text) && region.equals(k.region);
+    }
+  }
+}
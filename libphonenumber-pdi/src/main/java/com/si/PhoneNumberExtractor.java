@@ -0,0 +1,567 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberMatch;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parses or finds the numbers in a piece of text.
+ *
+ * The extractor holds only configuration and shared, thread-safe helpers so
+ * one instance can serve several threads. Everything that changes per call
+ * lives in a Buffer, which belongs to a single thread. Options must be set
+ * before the first call to extract.
+ */
+public class PhoneNumberExtractor {
+  public static final Phonenumber.PhoneNumber[] NO_NUMBERS = new Phonenumber.PhoneNumber[0];
+  /** Cached for texts the pre-filter skipped, so cache hits still report the skip. */
+  private static final Phonenumber.PhoneNumber[] PREFILTERED = new Phonenumber.PhoneNumber[0];
+
+  /** Stop remembering unknown region values past this many distinct entries. */
+  private static final int MAX_REGION_VALUES = 10000;
+
+  private final PhoneNumberUtil util;
+  private final String defaultRegionCode;
+  private final boolean findMatches;
+  private final boolean checkValid;
+
+  private int prefilterMinDigits;
+  private int chunkSize;
+  private PhoneNumberUtil.Leniency leniency = PhoneNumberUtil.Leniency.VALID;
+  private long maxTries = Long.MAX_VALUE;
+  private int maxChars;
+  private long maxNanos;
+  private boolean truncateOverBudget;
+  private NanpFastParser nanpParser;
+  private PhoneNumberCache cache;
+  private PersistentParseCache persistentCache;
+  private int cacheMode;
+
+  private final Set<String> supportedRegions;
+  private final ConcurrentHashMap<String, Region> regionsByCode = new ConcurrentHashMap<String, Region>();
+  private final ConcurrentHashMap<String, Region> regionsByValue = new ConcurrentHashMap<String, Region>();
+  private volatile Region defaultRegion;
+  private volatile boolean defaultResolved;
+
+  /**
+   * @param util              The phone number util
+   * @param defaultRegion     The region used when a row has none, must be 2 letters
+   * @param findMatches       Find all numbers in the text instead of parsing it
+   * @param checkValid        Keep valid numbers only
+   */
+  public PhoneNumberExtractor(PhoneNumberUtil util, String defaultRegion, boolean findMatches, boolean checkValid) {
+    this.util = util;
+    this.defaultRegionCode = defaultRegion;
+    this.findMatches = findMatches;
+    this.checkValid = checkValid;
+    this.supportedRegions = util.getSupportedRegions();
+  }
+
+  /**
+   * Get the fallback region.
+   *
+   * @return            The region or null if none was configured
+   */
+  public Region getDefaultRegion() {
+    if (!defaultResolved) {
+      if (defaultRegionCode != null && defaultRegionCode.length() == 2) {
+        defaultRegion = regionFor(defaultRegionCode);
+      }
+      defaultResolved = true;
+    }
+    return defaultRegion;
+  }
+
+  /**
+   * Resolve a region value from a row. Values are trimmed and upper-cased
+   * and must name a region libphonenumber supports; anything else,
+   * including null, gets the default region. Results are remembered per
+   * distinct value so repeated values cost a single map lookup.
+   *
+   * @param value       The value of the region field
+   * @return            The region or null if neither value nor default is usable
+   */
+  public Region resolveRegion(String value) {
+    if (value == null) {
+      return getDefaultRegion();
+    }
+    Region region = regionsByValue.get(value);
+    if (region != null) {
+      return region;
+    }
+    String code = value.trim().toUpperCase(Locale.ROOT);
+    region = supportedRegions.contains(code) ? regionFor(code) : getDefaultRegion();
+    if (region != null && regionsByValue.size() < MAX_REGION_VALUES) {
+      regionsByValue.put(value, region);
+    }
+    return region;
+  }
+
+  private Region regionFor(String code) {
+    Region region = regionsByCode.get(code);
+    if (region == null) {
+      DigitPrefilter prefilter = null;
+      if (findMatches && prefilterMinDigits > 0) {
+        prefilter = DigitPrefilter.forRegion(util, code, prefilterMinDigits,
+            leniency == PhoneNumberUtil.Leniency.POSSIBLE);
+      }
+      boolean nanp = !findMatches && nanpParser != null && NanpFastParser.supportsRegion(code);
+      region = new Region(code, prefilter, nanp);
+      Region existing = regionsByCode.putIfAbsent(code, region);
+      if (existing != null) {
+        region = existing;
+      }
+    }
+    return region;
+  }
+
+  public boolean isFindMatches() {
+    return findMatches;
+  }
+
+  public boolean isCheckValid() {
+    return checkValid;
+  }
+
+  public void setPrefilterMinDigits(int prefilterMinDigits) {
+    this.prefilterMinDigits = prefilterMinDigits;
+  }
+
+  /**
+   * Scan texts longer than the chunk size, and all binary values, in chunks
+   * instead of as one string. Only applies when finding matches.
+   *
+   * @param chunkSize     The characters per chunk, 0 to scan whole texts
+   */
+  public void setChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Set how strictly the matcher checks candidates when finding matches.
+   * Looser leniencies do less work per candidate but let more through.
+   *
+   * @param leniency      The leniency, VALID by default
+   */
+  public void setLeniency(PhoneNumberUtil.Leniency leniency) {
+    this.leniency = leniency;
+  }
+
+  /**
+   * Cap the number of candidates the matcher tries per text, or per window
+   * when scanning in chunks, bounding the time spent on digit-heavy text.
+   * Matches after the cap are missed.
+   *
+   * @param maxTries      The maximum tries, 0 for no limit
+   */
+  public void setMaxTries(long maxTries) {
+    this.maxTries = maxTries > 0 ? maxTries : Long.MAX_VALUE;
+  }
+
+  /**
+   * Bound the work spent on one value. Values over the character budget
+   * are cut to it or skipped; a scan over the time budget stops and keeps
+   * or drops what it found so far. Either way Buffer.overBudget is set.
+   * The time budget applies when finding matches only, and binary values
+   * are measured in bytes.
+   *
+   * @param maxChars      The characters to scan per value, 0 for no limit
+   * @param maxNanos      The time to scan per value, 0 for no limit
+   * @param truncate      Keep the numbers within the budget instead of none
+   */
+  public void setBudget(int maxChars, long maxNanos, boolean truncate) {
+    this.maxChars = maxChars;
+    this.maxNanos = maxNanos;
+    this.truncateOverBudget = truncate;
+  }
+
+  public void setNanpParser(NanpFastParser nanpParser) {
+    this.nanpParser = nanpParser;
+  }
+
+  public void setCache(PhoneNumberCache cache) {
+    this.cache = cache;
+    this.cacheMode = (findMatches ? 1 : 0) | (checkValid ? 2 : 0);
+  }
+
+  /**
+   * Keep results in a file as well, checked after the in-memory cache.
+   *
+   * @param persistentCache     The cache, opened with a stamp of the other options
+   */
+  public void setPersistentCache(PersistentParseCache persistentCache) {
+    this.persistentCache = persistentCache;
+    this.cacheMode = (findMatches ? 1 : 0) | (checkValid ? 2 : 0);
+  }
+
+  /**
+   * Fill the buffer with numbers kept packed from an earlier extraction.
+   *
+   * @param keys        The packed numbers
+   * @param count       The number of entries to use
+   * @param buffer      The calling thread's buffer
+   */
+  public void restore(long[] keys, int count, Buffer buffer) {
+    buffer.reset();
+    for (int i = 0; i < count; i++) {
+      buffer.append(PackedNumber.toPhoneNumber(keys[i]));
+    }
+  }
+
+  /**
+   * Extract the numbers from a field value, either a String or the UTF-8
+   * bytes of a binary field.
+   *
+   * @param value       The field value
+   * @param region      The resolved region, null to skip the value
+   * @param buffer      The calling thread's buffer
+   * @return            The number of numbers found
+   */
+  public int extractValue(Object value, Region region, Buffer buffer) {
+    if (value instanceof byte[]) {
+      byte[] bytes = (byte[]) value;
+      int length = bytes.length;
+      boolean cut = maxChars > 0 && length > maxChars;
+      if (cut) {
+        if (!truncateOverBudget) {
+          buffer.reset();
+          buffer.overBudget = true;
+          return 0;
+        }
+        length = maxChars;
+      }
+      if (findMatches && chunkSize > 0 && region != null) {
+        buffer.reset();
+        scanChunked(new InputStreamReader(new ByteArrayInputStream(bytes, 0, length), StandardCharsets.UTF_8), region,
+            buffer);
+      } else {
+        extract(new String(bytes, 0, length, StandardCharsets.UTF_8), region, buffer);
+      }
+      buffer.overBudget |= cut;
+      return buffer.count;
+    }
+    return extract((String) value, region, buffer);
+  }
+
+  /**
+   * Extract the numbers from the text with the default region.
+   *
+   * @param text        The input text
+   * @param buffer      The calling thread's buffer
+   * @return            The number of numbers found
+   */
+  public int extract(String text, Buffer buffer) {
+    return extract(text, getDefaultRegion(), buffer);
+  }
+
+  /**
+   * Extract the numbers from the text. The result is left in the buffer and
+   * stays usable until the buffer is passed in again.
+   *
+   * @param text        The input text
+   * @param region      The resolved region, null to skip the text
+   * @param buffer      The calling thread's buffer
+   * @return            The number of numbers found
+   */
+  public int extract(String text, Region region, Buffer buffer) {
+    buffer.reset();
+    if (text == null || region == null) {
+      return 0;
+    }
+    if (maxChars > 0 && text.length() > maxChars) {
+      buffer.overBudget = true;
+      if (!truncateOverBudget) {
+        return 0;
+      }
+      text = text.substring(0, maxChars);
+    }
+    if (findMatches && chunkSize > 0 && text.length() > chunkSize) {
+      // too big to cache, and the pre-filter would read the whole text
+      scanChunked(new StringReader(text), region, buffer);
+      return buffer.count;
+    }
+    if (cache != null) {
+      Phonenumber.PhoneNumber[] cached = cache.get(buffer.probe.set(text, region.code, cacheMode));
+      if (cached != null) {
+        buffer.numbers = cached;
+        buffer.count = cached.length;
+        buffer.prefilterSkipped = cached == PREFILTERED;
+        return buffer.count;
+      }
+    }
+    if (persistentCache != null) {
+      int stored = persistentCache.get(buffer.persistentProbe.set(text, region.code, cacheMode), buffer.packed);
+      if (stored >= 0) {
+        restore(buffer.packed, stored, buffer);
+        if (cache != null) {
+          cache.put(text, region.code, cacheMode, buffer.copy());
+        }
+        return buffer.count;
+      }
+    }
+
+    if (findMatches) {
+      findNumbers(text, region, buffer);
+    } else {
+      parseNumber(text, region, buffer);
+    }
+
+    if (cache != null && buffer.error == null && !buffer.overBudget) {
+      cache.put(text, region.code, cacheMode, buffer.prefilterSkipped ? PREFILTERED
+          : buffer.count == 0 ? NO_NUMBERS : Arrays.copyOf(buffer.numbers, buffer.count));
+    }
+    if (persistentCache != null && buffer.error == null && !buffer.overBudget) {
+      persistentCache.put(buffer.persistentProbe, buffer.numbers, buffer.count);
+    }
+    return buffer.count;
+  }
+
+  /**
+   * Find phone numbers in the text.
+   *
+   * @param sentence        The text containing numbers
+   * @param region          The region
+   * @param buffer          The buffer to fill
+   */
+  private void findNumbers(String sentence, Region region, Buffer buffer) {
+    if (region.prefilter != null && !region.prefilter.mayContainNumber(sentence)) {
+      buffer.prefilterSkipped = true;
+      return;
+    }
+    CharSequence text = sentence;
+    if (maxNanos > 0) {
+      text = new DeadlineCharSequence(sentence, System.nanoTime() + maxNanos);
+    }
+    try {
+      for (PhoneNumberMatch protoMatch : util.findNumbers(text, region.code, leniency, maxTries)) {
+        addNumber(protoMatch.number(), buffer);
+      }
+    } catch (RuntimeException e) {
+      overTime(e, buffer);
+    }
+  }
+
+  /**
+   * Handle a scan stopped by the time budget, rethrowing anything else.
+   *
+   * @param e               The exception the scan stopped with
+   * @param buffer          The buffer holding the numbers found so far
+   */
+  private void overTime(RuntimeException e, Buffer buffer) {
+    if (e != DeadlineCharSequence.EXCEEDED) {
+      throw e;
+    }
+    if (!truncateOverBudget) {
+      buffer.reset();
+    }
+    buffer.overBudget = true;
+  }
+
+  /**
+   * Find the numbers in part of a text. Only matches that start in
+   * [keepFrom, keepTo) are reported, the rest of the text is context.
+   *
+   * @param text            The text
+   * @param region          The region
+   * @param keepFrom        The first start index to report
+   * @param keepTo          The start index to stop at
+   * @param offset          Added to the match start for the sink
+   * @param sink            Receives the numbers that pass the validity check
+   * @return                The matches dropped by the validity check
+   */
+  public int findNumbers(CharSequence text, Region region, int keepFrom, int keepTo, long offset,
+                         ChunkedScanner.Sink sink) {
+    int invalid = 0;
+    for (PhoneNumberMatch match : util.findNumbers(text, region.code, leniency, maxTries)) {
+      if (match.start() >= keepTo) {
+        break;
+      }
+      if (match.start() < keepFrom) {
+        continue;
+      }
+      if (checkValid && !util.isValidNumber(match.number())) {
+        invalid += 1;
+      } else {
+        sink.accept(match.number(), offset + match.start());
+      }
+    }
+    return invalid;
+  }
+
+  /**
+   * Find phone numbers in text read a chunk at a time.
+   *
+   * @param reader          The text
+   * @param region          The region
+   * @param buffer          The buffer to fill
+   */
+  private void scanChunked(Reader reader, Region region, final Buffer buffer) {
+    if (buffer.scanner == null) {
+      buffer.scanner = new ChunkedScanner(chunkSize);
+    }
+    if (maxNanos > 0) {
+      buffer.scanner.setDeadline(System.nanoTime() + maxNanos);
+    } else {
+      buffer.scanner.clearDeadline();
+    }
+    try {
+      buffer.invalid += buffer.scanner.scan(reader, this, region, new ChunkedScanner.Sink() {
+        public void accept(Phonenumber.PhoneNumber number, long offset) {
+          buffer.append(number);
+        }
+      });
+    } catch (IOException e) {
+      // in-memory readers do not fail
+      throw new IllegalStateException(e);
+    } catch (RuntimeException e) {
+      overTime(e, buffer);
+    }
+  }
+
+  /**
+   * Parse the text as a single number.
+   *
+   * @param text            The text
+   * @param region          The region
+   * @param buffer          The buffer to fill
+   */
+  private void parseNumber(String text, Region region, Buffer buffer) {
+    if (region.nanp) {
+      long national = nanpParser.parse(text);
+      if (national != NanpFastParser.UNDECIDED) {
+        Phonenumber.PhoneNumber number = nanpParser.toPhoneNumber(national);
+        if (!checkValid || nanpParser.isValid(number)) {
+          buffer.append(number);
+        } else {
+          buffer.invalid += 1;
+        }
+        return;
+      }
+    }
+    try {
+      addNumber(util.parse(text, region.code), buffer);
+    } catch (NumberParseException e) {
+      buffer.error = e;
+    }
+  }
+
+  /**
+   * Add a number to the buffer if it passes the validity check.
+   *
+   * @param number      The proto number
+   * @param buffer      The buffer
+   */
+  private void addNumber(Phonenumber.PhoneNumber number, Buffer buffer) {
+    if (checkValid && !util.isValidNumber(number)) {
+      buffer.invalid += 1;
+      return;
+    }
+    buffer.append(number);
+  }
+
+  /**
+   * A validated region with the helpers that depend on it.
+   */
+  public static final class Region {
+    private final String code;
+    private final DigitPrefilter prefilter;
+    private final boolean nanp;
+
+    Region(String code, DigitPrefilter prefilter, boolean nanp) {
+      this.code = code;
+      this.prefilter = prefilter;
+      this.nanp = nanp;
+    }
+
+    public String getCode() {
+      return code;
+    }
+  }
+
+  /**
+   * Per-thread scratch space and result of the last extract call.
+   */
+  public static class Buffer {
+    private Phonenumber.PhoneNumber[] scratch = new Phonenumber.PhoneNumber[8];
+    private final PhoneNumberCache.Key probe = new PhoneNumberCache.Key();
+    private final PersistentParseCache.Probe persistentProbe = new PersistentParseCache.Probe();
+    private final long[] packed = new long[PersistentParseCache.MAX_NUMBERS];
+    /** The packed numbers of the row, for the incremental state. */
+    final long[] incrementalKeys = new long[IncrementalState.MAX_NUMBERS];
+    private ChunkedScanner scanner;
+
+    /** The numbers found; may be a shared cached array and must not be changed. */
+    public Phonenumber.PhoneNumber[] numbers = scratch;
+    public int count;
+    /** The parse failure for the last text, if any. */
+    public NumberParseException error;
+    /** The numbers the last text held that failed the validity check. */
+    public int invalid;
+    /** Whether the pre-filter skipped the last text, also when the skip came from the cache. */
+    public boolean prefilterSkipped;
+    /** Whether the last value went over the character or time budget. */
+    public boolean overBudget;
+
+    private void reset() {
+      if (numbers == scratch) {
+        Arrays.fill(scratch, 0, count, null);
+      }
+      numbers = scratch;
+      count = 0;
+      error = null;
+      invalid = 0;
+      prefilterSkipped = false;
+      overBudget = false;
+    }
+
+    private void append(Phonenumber.PhoneNumber number) {
+      if (count == scratch.length) {
+        scratch = Arrays.copyOf(scratch, scratch.length * 2);
+        numbers = scratch;
+      }
+      scratch[count++] = number;
+    }
+
+    /**
+     * Copy the current result so it survives the next extract call.
+     *
+     * @return    The numbers found
+     */
+    public Phonenumber.PhoneNumber[] copy() {
+      if (count == 0) {
+        return NO_NUMBERS;
+      }
+      return numbers == scratch ? Arrays.copyOf(scratch, count) : numbers;
+    }
+  }
+}
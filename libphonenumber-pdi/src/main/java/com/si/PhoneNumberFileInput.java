@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input step that memory-maps files and emits one row per number found,
+ * with the file name and byte offset of the match.
+ *
+ * Worker threads each take the next file from the list and hand rows to
+ * the step thread in batches through a bounded queue, so a fast scan cannot
+ * run ahead of the rest of the transformation. Rows from one file stay in
+ * order; files finish in whatever order the workers get through them.
+ */
+public class PhoneNumberFileInput extends BaseStep implements StepInterface {
+  private PhoneNumberFileInputMeta meta;
+  private PhoneNumberFileInputData data;
+
+  public PhoneNumberFileInput( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+    Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  public boolean init( StepMetaInterface stepMetaInterface, StepDataInterface stepDataInterface ) {
+    this.meta = (PhoneNumberFileInputMeta) stepMetaInterface;
+    this.data = (PhoneNumberFileInputData) stepDataInterface;
+    return super.init( stepMetaInterface, stepDataInterface );
+  }
+
+  /**
+   * Stop the workers.
+   *
+   * @param smi   The step meta
+   * @param sdi   The step data
+   */
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    if(data != null && data.executor != null){
+      data.executor.shutdownNow();
+      data.executor = null;
+    }
+    super.dispose( smi, sdi );
+  }
+
+  /**
+   * List the files and start the workers.
+   *
+   * @return      False if there is nothing to do
+   */
+  private boolean start() throws KettleException{
+    data.outputRowMeta = new RowMeta();
+    meta.getFields(data.outputRowMeta, getStepname(), null, null, this, null, null);
+    data.outputRowSize = data.outputRowMeta.size();
+    data.countryCodeEnabled = data.outputRowSize > 3;
+
+    data.extractor = new PhoneNumberExtractor(PhoneNumberUtil.getInstance(), environmentSubstitute(meta.getRegion()),
+      true, meta.isCheckValid());
+    data.region = data.extractor.getDefaultRegion();
+    if(data.region == null){
+      logError("2 Letter Country Code Not Provided");
+      return false;
+    }
+    try{
+      data.files = meta.listFiles(this);
+    }catch(IOException e){
+      throw new KettleException("Unable to list files in " + environmentSubstitute(meta.getDirectory()), e);
+    }
+    if(isBasic()){
+      logBasic("Scanning " + data.files.size() + " files for phone numbers");
+    }
+    if(data.files.isEmpty()){
+      return false;
+    }
+
+    int threads = Math.max(1, Math.min(meta.getThreads(), data.files.size()));
+    data.queue = new ArrayBlockingQueue<PhoneNumberFileInputData.Chunk>(PhoneNumberFileInputData.QUEUE_SIZE);
+    data.running.set(threads);
+    data.executor = Executors.newFixedThreadPool(threads);
+    for(int i = 0; i < threads; i++){
+      data.executor.execute(new Worker());
+    }
+    return true;
+  }
+
+  /**
+   * Wait for the next chunk of rows.
+   *
+   * @return      The chunk, END once every worker is done or the step is stopped
+   */
+  private PhoneNumberFileInputData.Chunk take() throws KettleException{
+    try{
+      while(!isStopped()){
+        PhoneNumberFileInputData.Chunk chunk = data.queue.poll(100, TimeUnit.MILLISECONDS);
+        if(chunk != null){
+          return chunk;
+        }
+      }
+    }catch(InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new KettleException("Interrupted waiting for phone number file workers", e);
+    }
+    return PhoneNumberFileInputData.END;
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    if(first){
+      first = false;
+      if(!start()){
+        setOutputDone();
+        return false;
+      }
+    }
+
+    PhoneNumberFileInputData.Chunk chunk = take();
+    if(chunk == PhoneNumberFileInputData.END){
+      if(data.failedFiles > 0){
+        setErrors(data.failedFiles);
+      }
+      setOutputDone();
+      return false;
+    }
+    if(chunk.error != null){
+      data.failedFiles += 1;
+      logError(chunk.error);
+    }
+    for(int i = 0; i < chunk.size; i++){
+      putRow(data.outputRowMeta, chunk.rows[i]);
+      incrementLinesInput();
+    }
+    return true;
+  }
+
+  /**
+   * Scans files until the list runs out, then signals the end if it is the
+   * last worker.
+   */
+  private class Worker implements Runnable, ChunkedScanner.Sink {
+    private final MappedFileScanner scanner = new MappedFileScanner(data.extractor, data.region);
+    private PhoneNumberFileInputData.Chunk chunk = new PhoneNumberFileInputData.Chunk(PhoneNumberFileInputData.BATCH_SIZE);
+    private String fileName;
+
+    public void run() {
+      try {
+        int i;
+        while ((i = data.nextFile.getAndIncrement()) < data.files.size() && !isStopped()) {
+          scan(data.files.get(i));
+        }
+        flush();
+      } catch (InterruptedException e) {
+        // the step is being disposed, nobody waits for the end
+        return;
+      } catch (RuntimeException e) {
+        PhoneNumberFileInputData.Chunk failure = new PhoneNumberFileInputData.Chunk(0);
+        failure.error = "Phone number file worker failed on " + fileName + ": " + e;
+        putQuietly(failure);
+      }
+      if (data.running.decrementAndGet() == 0) {
+        putQuietly(PhoneNumberFileInputData.END);
+      }
+    }
+
+    private void putQuietly(PhoneNumberFileInputData.Chunk chunk) {
+      try {
+        data.queue.put(chunk);
+      } catch (InterruptedException e) {
+        // the step is being disposed
+      }
+    }
+
+    private void scan(File file) throws InterruptedException {
+      fileName = file.getPath();
+      try {
+        scanner.scan(file, this);
+      } catch (IOException e) {
+        flush();
+        PhoneNumberFileInputData.Chunk failure = new PhoneNumberFileInputData.Chunk(0);
+        failure.error = "Unable to scan " + fileName + ": " + e.getMessage();
+        data.queue.put(failure);
+      } catch (QueueInterrupted e) {
+        throw e.cause;
+      }
+    }
+
+    public void accept(Phonenumber.PhoneNumber number, long offset) {
+      Object[] row = RowDataUtil.allocateRowData(data.outputRowSize);
+      row[0] = fileName;
+      row[1] = offset;
+      row[2] = number.getNationalNumber();
+      if (data.countryCodeEnabled) {
+        row[3] = (long) number.getCountryCode();
+      }
+      chunk.rows[chunk.size++] = row;
+      if (chunk.size == chunk.rows.length) {
+        try {
+          flush();
+        } catch (InterruptedException e) {
+          throw new QueueInterrupted(e);
+        }
+      }
+    }
+
+    private void flush() throws InterruptedException {
+      if (chunk.size > 0) {
+        data.queue.put(chunk);
+        chunk = new PhoneNumberFileInputData.Chunk(PhoneNumberFileInputData.BATCH_SIZE);
+      }
+    }
+  }
+
+  /**
+   * Carries an interrupt out of the scanner's callback.
+   */
+  private static class QueueInterrupted extends RuntimeException {
+    final InterruptedException cause;
+
+    QueueInterrupted(InterruptedException cause) {
+      this.cause = cause;
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.step.BaseStepData;
+import org.pentaho.di.trans.step.StepDataInterface;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class PhoneNumberFileInputData extends BaseStepData implements StepDataInterface {
+  public static final int BATCH_SIZE = 1000;
+  public static final int QUEUE_SIZE = 64;
+  /** Put on the queue by the last worker to finish. */
+  public static final Chunk END = new Chunk(0);
+
+  public RowMetaInterface outputRowMeta;
+  public int outputRowSize;
+  public boolean countryCodeEnabled;
+
+  public PhoneNumberExtractor extractor;
+  public PhoneNumberExtractor.Region region;
+  public List<File> files;
+  public ExecutorService executor;
+  public BlockingQueue<Chunk> queue;
+  public final AtomicInteger nextFile = new AtomicInteger();
+  public final AtomicInteger running = new AtomicInteger();
+  public long failedFiles;
+
+  public PhoneNumberFileInputData() {
+    super();
+  }
+
+  /**
+   * Rows found by a worker, or the failure of one file.
+   */
+  public static class Chunk {
+    public final Object[][] rows;
+    public int size;
+    public String error;
+
+    public Chunk(int capacity) {
+      rows = new Object[capacity][];
+    }
+  }
+}
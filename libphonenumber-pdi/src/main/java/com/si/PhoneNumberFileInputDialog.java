@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.*;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.*;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.ui.core.widget.TextVar;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+public class PhoneNumberFileInputDialog extends BaseStepDialog implements StepDialogInterface {
+
+  private static Class<?> PKG = PhoneNumberFileInputMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
+
+  private PhoneNumberFileInputMeta meta;
+
+  private Text wStepname;
+  private TextVar wDirectory;
+  private TextVar wFileMask;
+  private Button wIncludeSubfolders;
+  private TextVar wRegion;
+  private Button wCheckValid;
+  private TextVar wThreads;
+  private TextVar wFileNameField;
+  private TextVar wOffsetField;
+  private TextVar wOutField;
+  private TextVar wCountryCodeField;
+
+  private ModifyListener lsMod;
+  private int middle;
+  private int margin;
+  private Control lastLabel;
+
+  public PhoneNumberFileInputDialog( Shell parent, Object in, TransMeta tr, String sname ) {
+    super( parent, (BaseStepMeta) in, tr, sname );
+    meta = (PhoneNumberFileInputMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell(parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MIN | SWT.MAX);
+    props.setLook(shell);
+    setShellImage(shell, meta);
+
+    lsMod = new ModifyListener() {
+      public void modifyText(ModifyEvent e) {
+        meta.setChanged();
+      }
+    };
+    boolean changed = meta.hasChanged();
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = Const.FORM_MARGIN;
+    formLayout.marginHeight = Const.FORM_MARGIN;
+    shell.setLayout(formLayout);
+    shell.setText(BaseMessages.getString(PKG, "PhoneNumberFileInputDialog.Shell.Title"));
+    middle = props.getMiddlePct();
+    margin = Const.MARGIN;
+
+    // Stepname line
+    wlStepname = addLabel("PhoneNumberFileInputDialog.Stepname.Label");
+    wStepname = new Text(shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    wStepname.setText(stepname);
+    wStepname.addModifyListener(lsMod);
+    place(wStepname);
+
+    wDirectory = addTextRow("PhoneNumberFileInputDialog.Directory");
+    wFileMask = addTextRow("PhoneNumberFileInputDialog.FileMask");
+    wIncludeSubfolders = addCheckRow("PhoneNumberFileInputDialog.IncludeSubfolders");
+    wRegion = addTextRow("PhoneNumberFileInputDialog.Region");
+    wCheckValid = addCheckRow("PhoneNumberFileInputDialog.CheckValid");
+    wThreads = addTextRow("PhoneNumberFileInputDialog.Threads");
+    wFileNameField = addTextRow("PhoneNumberFileInputDialog.FileNameField");
+    wOffsetField = addTextRow("PhoneNumberFileInputDialog.OffsetField");
+    wOutField = addTextRow("PhoneNumberFileInputDialog.OutField");
+    wCountryCodeField = addTextRow("PhoneNumberFileInputDialog.CountryCodeField");
+
+    // OK and cancel buttons
+    wOK = new Button(shell, SWT.PUSH);
+    wOK.setText(BaseMessages.getString(PKG, "System.Button.OK"));
+    wCancel = new Button(shell, SWT.PUSH);
+    wCancel.setText(BaseMessages.getString(PKG, "System.Button.Cancel"));
+    setButtonPositions(new Button[]{wOK, wCancel}, margin, lastLabel);
+
+    wCancel.addListener(SWT.Selection, new Listener() {
+      public void handleEvent(Event e) {
+        cancel();
+      }
+    });
+    wOK.addListener(SWT.Selection, new Listener() {
+      public void handleEvent(Event e) {
+        ok();
+      }
+    });
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected(SelectionEvent e) {
+        ok();
+      }
+    };
+    wStepname.addSelectionListener(lsDef);
+
+    // Detect X or ALT-F4 or something that kills this window and cancel the dialog properly
+    shell.addShellListener(new ShellAdapter() {
+      public void shellClosed(ShellEvent e) {
+        cancel();
+      }
+    });
+
+    setSize();
+    getData();
+    meta.setChanged(changed);
+
+    shell.open();
+    while (!shell.isDisposed()) {
+      if (!display.readAndDispatch()) {
+        display.sleep();
+      }
+    }
+    return stepname;
+  }
+
+  /**
+   * Add a right aligned label below the previous row.
+   *
+   * @param key     The message key
+   * @return        The label
+   */
+  private Label addLabel(String key) {
+    Label label = new Label(shell, SWT.RIGHT);
+    label.setText(BaseMessages.getString(PKG, key));
+    props.setLook(label);
+    FormData fd = new FormData();
+    fd.left = new FormAttachment(0, 0);
+    fd.top = lastLabel == null ? new FormAttachment(0, margin) : new FormAttachment(lastLabel, 15);
+    fd.right = new FormAttachment(middle, -margin);
+    label.setLayoutData(fd);
+    return label;
+  }
+
+  /**
+   * Place a widget to the right of the label just added.
+   *
+   * @param control   The widget
+   */
+  private void place(Control control) {
+    props.setLook(control);
+    FormData fd = new FormData();
+    fd.left = new FormAttachment(middle, 0);
+    fd.top = lastLabel == null ? new FormAttachment(0, margin) : new FormAttachment(lastLabel, 15);
+    fd.right = new FormAttachment(100, 0);
+    control.setLayoutData(fd);
+    lastLabel = control == wStepname ? wlStepname : lastLabel;
+  }
+
+  private TextVar addTextRow(String key) {
+    Label label = addLabel(key);
+    TextVar text = new TextVar(transMeta, shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER);
+    text.addModifyListener(lsMod);
+    place(text);
+    lastLabel = label;
+    return text;
+  }
+
+  private Button addCheckRow(String key) {
+    Label label = addLabel(key);
+    Button check = new Button(shell, SWT.CHECK);
+    place(check);
+    lastLabel = label;
+    return check;
+  }
+
+  /**
+   * Copy information from the meta-data input to the dialog fields.
+   */
+  public void getData() {
+    wStepname.selectAll();
+    wDirectory.setText(Const.NVL(meta.getDirectory(), ""));
+    wFileMask.setText(Const.NVL(meta.getFileMask(), ""));
+    wIncludeSubfolders.setSelection(meta.isIncludeSubfolders());
+    wRegion.setText(Const.NVL(meta.getRegion(), ""));
+    wCheckValid.setSelection(meta.isCheckValid());
+    wThreads.setText(Integer.toString(meta.getThreads()));
+    wFileNameField.setText(Const.NVL(meta.getFileNameField(), ""));
+    wOffsetField.setText(Const.NVL(meta.getOffsetField(), ""));
+    wOutField.setText(Const.NVL(meta.getOutField(), ""));
+    wCountryCodeField.setText(Const.NVL(meta.getCountryCodeField(), ""));
+    wStepname.setFocus();
+  }
+
+  private void cancel() {
+    stepname = null;
+    dispose();
+  }
+
+  private void ok() {
+    stepname = wStepname.getText();
+    meta.setDirectory(wDirectory.getText());
+    meta.setFileMask(wFileMask.getText());
+    meta.setIncludeSubfolders(wIncludeSubfolders.getSelection());
+    meta.setRegion(wRegion.getText());
+    meta.setCheckValid(wCheckValid.getSelection());
+    meta.setThreads(Const.toInt(wThreads.getText(), 1));
+    meta.setFileNameField(wFileNameField.getText());
+    meta.setOffsetField(wOffsetField.getText());
+    meta.setOutField(wOutField.getText());
+    meta.setCountryCodeField(wCountryCodeField.getText());
+    dispose();
+  }
+}
@@ -0,0 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.*;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+
+/**
+ * Meta for the input step that extracts numbers straight from files.
+ */
+@Step( id = "PhoneNumberFileInput", image = "LibPhonenumberPDIPlugin.svg", name = "Phone Numbers From Files",
+    description = "Extract phone numbers from files without reading them as rows.", categoryDescription = "Input" )
+public class PhoneNumberFileInputMeta extends BaseStepMeta implements StepMetaInterface {
+  private String directory;
+  private String fileMask;
+  private boolean includeSubfolders;
+  private String region;
+  private boolean checkValid;
+  private int threads;
+  private String fileNameField;
+  private String offsetField;
+  private String outField;
+  private String countryCodeField;
+
+  private static Class<?> PKG = PhoneNumberFileInputMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
+
+  public PhoneNumberFileInputMeta() {
+    super();
+  }
+
+  public String getDirectory() {
+    return directory;
+  }
+
+  public void setDirectory(String directory) {
+    this.directory = directory;
+  }
+
+  public String getFileMask() {
+    return fileMask;
+  }
+
+  public void setFileMask(String fileMask) {
+    this.fileMask = fileMask;
+  }
+
+  public boolean isIncludeSubfolders() {
+    return includeSubfolders;
+  }
+
+  public void setIncludeSubfolders(boolean includeSubfolders) {
+    this.includeSubfolders = includeSubfolders;
+  }
+
+  public String getRegion() {
+    return region;
+  }
+
+  public void setRegion(String region) {
+    this.region = region;
+  }
+
+  public boolean isCheckValid() {
+    return checkValid;
+  }
+
+  public void setCheckValid(boolean checkValid) {
+    this.checkValid = checkValid;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  public String getFileNameField() {
+    return fileNameField;
+  }
+
+  public void setFileNameField(String fileNameField) {
+    this.fileNameField = fileNameField;
+  }
+
+  public String getOffsetField() {
+    return offsetField;
+  }
+
+  public void setOffsetField(String offsetField) {
+    this.offsetField = offsetField;
+  }
+
+  public String getOutField() {
+    return outField;
+  }
+
+  public void setOutField(String outField) {
+    this.outField = outField;
+  }
+
+  public String getCountryCodeField() {
+    return countryCodeField;
+  }
+
+  public void setCountryCodeField(String countryCodeField) {
+    this.countryCodeField = countryCodeField;
+  }
+
+  /**
+   * List the files to scan, sorted by path.
+   *
+   * @param space       Resolves variables in the directory and mask
+   * @return            The files
+   * @throws IOException    If the directory cannot be listed
+   */
+  public List<File> listFiles(VariableSpace space) throws IOException {
+    Path dir = Paths.get(space.environmentSubstitute(directory));
+    List<File> files = new ArrayList<File>();
+    if (Files.isRegularFile(dir)) {
+      files.add(dir.toFile());
+      return files;
+    }
+    String mask = Const.isEmpty(fileMask) ? "*" : space.environmentSubstitute(fileMask);
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + mask);
+    Stream<Path> paths = includeSubfolders ? Files.walk(dir) : Files.list(dir);
+    try {
+      Iterator<Path> it = paths.iterator();
+      while (it.hasNext()) {
+        Path path = it.next();
+        if (Files.isRegularFile(path) && matcher.matches(path.getFileName())) {
+          files.add(path.toFile());
+        }
+      }
+    } finally {
+      paths.close();
+    }
+    Collections.sort(files);
+    return files;
+  }
+
+  public String getXML() {
+    StringBuilder xml = new StringBuilder();
+    xml.append(XMLHandler.addTagValue("directory", directory));
+    xml.append(XMLHandler.addTagValue("fileMask", fileMask));
+    xml.append(XMLHandler.addTagValue("includeSubfolders", includeSubfolders));
+    xml.append(XMLHandler.addTagValue("region", region));
+    xml.append(XMLHandler.addTagValue("checkValid", checkValid));
+    xml.append(XMLHandler.addTagValue("threads", threads));
+    xml.append(XMLHandler.addTagValue("fileNameField", fileNameField));
+    xml.append(XMLHandler.addTagValue("offsetField", offsetField));
+    xml.append(XMLHandler.addTagValue("outField", outField));
+    xml.append(XMLHandler.addTagValue("countryCodeField", countryCodeField));
+    return xml.toString();
+  }
+
+  public void loadXML(Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
+    try {
+      directory = Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "directory")), "");
+      fileMask = Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "fileMask")), "");
+      includeSubfolders = "Y".equals(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "includeSubfolders")));
+      region = Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "region")), "");
+      checkValid = "Y".equals(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "checkValid")));
+      threads = Const.toInt(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "threads")), 1);
+      fileNameField = Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "fileNameField")), "");
+      offsetField = Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "offsetField")), "");
+      outField = Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "outField")), "");
+      countryCodeField = Const.NVL(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "countryCodeField")), "");
+    } catch ( Exception e ) {
+      throw new KettleXMLException( "Unable to read phone number file input step from XML", e );
+    }
+  }
+
+  public Object clone() {
+    return super.clone();
+  }
+
+  public void setDefault() {
+    directory = "";
+    fileMask = "*.txt";
+    includeSubfolders = false;
+    region = "US";
+    checkValid = false;
+    threads = 1;
+    fileNameField = "filename";
+    offsetField = "offset";
+    outField = "phone";
+    countryCodeField = "";
+  }
+
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases ) throws KettleException {
+    try {
+      directory = Const.NVL(rep.getStepAttributeString(id_step, "directory"), "");
+      fileMask = Const.NVL(rep.getStepAttributeString(id_step, "fileMask"), "");
+      includeSubfolders = rep.getStepAttributeBoolean(id_step, "includeSubfolders");
+      region = Const.NVL(rep.getStepAttributeString(id_step, "region"), "");
+      checkValid = rep.getStepAttributeBoolean(id_step, "checkValid");
+      threads = (int) rep.getStepAttributeInteger(id_step, "threads");
+      fileNameField = Const.NVL(rep.getStepAttributeString(id_step, "fileNameField"), "");
+      offsetField = Const.NVL(rep.getStepAttributeString(id_step, "offsetField"), "");
+      outField = Const.NVL(rep.getStepAttributeString(id_step, "outField"), "");
+      countryCodeField = Const.NVL(rep.getStepAttributeString(id_step, "countryCodeField"), "");
+    } catch ( Exception e ) {
+      throw new KettleException( "Unable to load step from repository", e );
+    }
+  }
+
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "directory", directory);
+      rep.saveStepAttribute( id_transformation, id_step, "fileMask", fileMask);
+      rep.saveStepAttribute( id_transformation, id_step, "includeSubfolders", includeSubfolders);
+      rep.saveStepAttribute( id_transformation, id_step, "region", region);
+      rep.saveStepAttribute( id_transformation, id_step, "checkValid", checkValid);
+      rep.saveStepAttribute( id_transformation, id_step, "threads", threads);
+      rep.saveStepAttribute( id_transformation, id_step, "fileNameField", fileNameField);
+      rep.saveStepAttribute( id_transformation, id_step, "offsetField", offsetField);
+      rep.saveStepAttribute( id_transformation, id_step, "outField", outField);
+      rep.saveStepAttribute( id_transformation, id_step, "countryCodeField", countryCodeField);
+    } catch ( Exception e ) {
+      throw new KettleException( "Unable to save step into repository: " + id_step, e );
+    }
+  }
+
+  public void getFields( RowMetaInterface rowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
+    VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+    ValueMetaString vf = new ValueMetaString(fileNameField);
+    vf.setOrigin(origin);
+    rowMeta.addValueMeta(vf);
+
+    ValueMetaInteger vo = new ValueMetaInteger(offsetField);
+    vo.setOrigin(origin);
+    rowMeta.addValueMeta(vo);
+
+    ValueMetaInteger vn = new ValueMetaInteger(outField);
+    vn.setOrigin(origin);
+    rowMeta.addValueMeta(vn);
+
+    if(!Const.isEmpty(countryCodeField)){
+      ValueMetaInteger vc = new ValueMetaInteger(countryCodeField);
+      vc.setOrigin(origin);
+      rowMeta.addValueMeta(vc);
+    }
+  }
+
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta,
+    StepMeta stepMeta, RowMetaInterface prev, String input[], String output[],
+    RowMetaInterface info, VariableSpace space, Repository repository,
+    IMetaStore metaStore ) {
+    if ( Const.isEmpty( directory ) ) {
+      remarks.add( new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString( PKG,
+        "PhoneNumberFileInputMeta.CheckResult.NoDirectory" ), stepMeta ) );
+    }
+    if ( input.length > 0 ) {
+      remarks.add( new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString( PKG,
+        "PhoneNumberFileInputMeta.CheckResult.InputIgnored" ), stepMeta ) );
+    }
+  }
+
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr, Trans trans ) {
+    return new PhoneNumberFileInput( stepMeta, stepDataInterface, cnr, tr, trans );
+  }
+
+  public StepDataInterface getStepData() {
+    return new PhoneNumberFileInputData();
+  }
+
+  public String getDialogClassName() {
+    return "com.si.PhoneNumberFileInputDialog";
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.si;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A sorted set of packed numbers in a file, searched in place through a
+ * memory mapping, so lists of hundreds of millions of numbers cost next
+ * to no heap and open at once.
+ *
+ * The file holds a header, the distinct keys in ascending order and a
+ * fence with the first key of every BLOCK keys. A lookup binary searches
+ * the fence, whose pages stay cached, and then a single block of keys.
+ * Keys are mapped a segment at a time, so files over 2 GB work too.
+ *
+ * Build the file with write, or from a text file with one number per line:
+ *
+ *   java -cp &lt;plugin jars&gt; com.si.ReferenceIndex numbers.txt numbers.idx US
+ *
+ * An index is never changed once opened and can be used by any thread.
+ */
+public class ReferenceIndex {
+  static final long MAGIC = 0x504E524546494458L;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 32;
+  static final int BLOCK_SHIFT = 10;
+  private static final int SEGMENT_SHIFT = 27;
+  private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+  private final long count;
+  private final int fenceCount;
+  private final LongBuffer fence;
+  private final LongBuffer[] segments;
+
+  private ReferenceIndex(long count, int fenceCount, LongBuffer fence, LongBuffer[] segments) {
+    this.count = count;
+    this.fenceCount = fenceCount;
+    this.fence = fence;
+    this.segments = segments;
+  }
+
+  /**
+   * Map an index file.
+   *
+   * @param file          The file written by write
+   * @return              The index
+   * @throws IOException  If the file cannot be read or is not an index
+   */
+  public static ReferenceIndex open(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long size = channel.size();
+      if (size < HEADER_SIZE) {
+        throw new IOException("Not a reference index: " + file);
+      }
+      LongBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).asLongBuffer();
+      long count = header.get(2);
+      long fenceCount = header.get(3);
+      if (header.get(0) != MAGIC || (int) (header.get(1) >>> 32) != VERSION
+          || (int) header.get(1) != BLOCK_SHIFT || count < 0 || fenceCount != fenceCount(count)
+          || size != HEADER_SIZE + (count + fenceCount) * 8) {
+        throw new IOException("Not a reference index of version " + VERSION + ": " + file);
+      }
+      LongBuffer[] segments = new LongBuffer[(int) ((count + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+      for (int s = 0; s < segments.length; s++) {
+        long first = (long) s << SEGMENT_SHIFT;
+        long keys = Math.min(count - first, 1L << SEGMENT_SHIFT);
+        segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * 8, keys * 8).asLongBuffer();
+      }
+      LongBuffer fence = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + count * 8, fenceCount * 8)
+          .asLongBuffer();
+      // the mappings stay valid once the file is closed
+      return new ReferenceIndex(count, (int) fenceCount, fence, segments);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static long fenceCount(long count) {
+    return (count + (1L << BLOCK_SHIFT) - 1) >>> BLOCK_SHIFT;
+  }
+
+  /** @return     The number of distinct keys */
+  public long size() {
+    return count;
+  }
+
+  private long keyAt(long i) {
+    return segments[(int) (i >>> SEGMENT_SHIFT)].get((int) (i & SEGMENT_MASK));
+  }
+
+  /**
+   * Check a packed number.
+   *
+   * @param key     The packed number
+   * @return        True if the index holds it
+   */
+  public boolean contains(long key) {
+    if (fenceCount == 0 || key == PackedNumber.NOT_PACKABLE || key < fence.get(0)) {
+      return false;
+    }
+    int lo = 0;
+    int hi = fenceCount - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (fence.get(mid) <= key) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    long from = (long) lo << BLOCK_SHIFT;
+    long to = Math.min(count, from + (1L << BLOCK_SHIFT)) - 1;
+    while (from <= to) {
+      long mid = (from + to) >>> 1;
+      long value = keyAt(mid);
+      if (value < key) {
+        from = mid + 1;
+      } else if (value > key) {
+        to = mid - 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Check a number, ignoring its extension.
+   *
+   * @param number  The number
+   * @return        True if the index holds it
+   */
+  public boolean contains(Phonenumber.PhoneNumber number) {
+    return contains(PackedNumber.pack(number));
+  }
+
+  /**
+   * Write an index. The keys are sorted in place and repeats are dropped,
+   * as is NOT_PACKABLE.
+   *
+   * @param keys          The packed numbers
+   * @param count         The number of entries to use
+   * @param file          The file to write
+   * @return              The number of distinct keys written
+   * @throws IOException  If the file cannot be written
+   */
+  public static long write(long[] keys, int count, File file) throws IOException {
+    Arrays.sort(keys, 0, count);
+    int distinct = 0;
+    for (int i = 0; i < count; i++) {
+      if (keys[i] != PackedNumber.NOT_PACKABLE && (distinct == 0 || keys[distinct - 1] != keys[i])) {
+        keys[distinct++] = keys[i];
+      }
+    }
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+    try {
+      out.writeLong(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(BLOCK_SHIFT);
+      out.writeLong(distinct);
+      out.writeLong(fenceCount(distinct));
+      for (int i = 0; i < distinct; i++) {
+        out.writeLong(keys[i]);
+      }
+      for (int i = 0; i < distinct; i += 1 << BLOCK_SHIFT) {
+        out.writeLong(keys[i]);
+      }
+    } finally {
+      out.close();
+    }
+    return distinct;
+  }
+
+  /**
+   * Build an index from a text file with one number per line. Lines that
+   * do not parse are skipped. All keys are held in memory while sorting,
+   * 8 bytes per number.
+   *
+   * @param text          The text file, UTF-8
+   * @param file          The index file to write
+   * @param util          The phone number util
+   * @param region        The region for numbers without a calling code
+   * @return              The number of lines skipped
+   * @throws IOException  If a file cannot be read or written
+   */
+  public static long build(File text, File file, PhoneNumberUtil util, String region) throws IOException {
+    long[] keys = new long[1 << 16];
+    int count = 0;
+    long skipped = 0;
+    Phonenumber.PhoneNumber number = new Phonenumber.PhoneNumber();
+    BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(text), StandardCharsets.UTF_8));
+    try {
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.trim().isEmpty()) {
+          continue;
+        }
+        try {
+          number.clear();
+          util.parse(line, region, number);
+        } catch (NumberParseException e) {
+          skipped += 1;
+          continue;
+        }
+        if (count == keys.length) {
+          keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+        keys[count++] = PackedNumber.pack(number);
+      }
+    } finally {
+      in.close();
+    }
+    write(keys, count, file);
+    return skipped;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: ReferenceIndex <numbers.txt> <index file> [default region]");
+      System.exit(2);
+    }
+    long skipped = build(new File(args[0]), new File(args[1]), PhoneNumberUtil.getInstance(),
+        args.length > 2 ? args[2] : "ZZ");
+    ReferenceIndex index = open(new File(args[1]));
+    System.out.println("Wrote " + index.size() + " distinct numbers to " + args[1] + ", skipped " + skipped + " lines");
+  }
+}
@@ -0,0 +1,41 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import org.junit.jupiter.api.Test;
+
+class TestAdditionalFields{
+
+    @Test
+    public void shouldExtractEveryFieldIntoTheSameRow(){
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        PhoneNumberExtractor parse = new PhoneNumberExtractor(util, "US", false, false);
+        PhoneNumberExtractor find = new PhoneNumberExtractor(util, "US", true, false);
+        PhoneNumberExtractor[] extractors = { parse, find };
+        int[] in = { 0, 1 };
+
+        // first number only: home -> 2, notes -> 3, country code of notes -> 4
+        AdditionalFields first = new AdditionalFields(extractors, in, new int[]{ 2, 3 }, new int[]{ -1, 4 }, null, 0);
+        Object[] row = { "(303) 411-1234", "call 720 555 3030 or +44 20 7031 3000", null, null, null };
+        assert(first.fill(row, null, new PhoneNumberExtractor.Buffer()) == 0);
+        assert(row[2].equals(3034111234L));
+        assert(row[3].equals(7205553030L));
+        assert(row[4].equals(1L));
+
+        // joined
+        AdditionalFields joined = new AdditionalFields(extractors, in, new int[]{ 2, 3 }, new int[]{ -1, 4 }, ";", 0);
+        row = new Object[]{ "not a number", "call 720 555 3030 or +44 20 7031 3000", null, null, null };
+        assert(joined.fill(row, null, new PhoneNumberExtractor.Buffer()) == 1);
+        assert(row[2] == null);
+        assert(row[3].equals("7205553030;2070313000"));
+        assert(row[4].equals("1;44"));
+
+        // indexed columns: notes_1, notes_2 at 3 and 4
+        AdditionalFields columns = new AdditionalFields(new PhoneNumberExtractor[]{ find }, new int[]{ 1 },
+            new int[]{ 3 }, new int[]{ -1 }, null, 2);
+        row = new Object[]{ null, "720 555 3030, 303 411 1234 and 720 555 3031", null, null, null };
+        assert(columns.fill(row, null, new PhoneNumberExtractor.Buffer()) == 0);
+        assert(row[3].equals(7205553030L));
+        assert(row[4].equals(3034111234L));
+    }
+}
@@ -0,0 +1,72 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.PhoneNumberMatch;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class TestChunkedScanner{
+
+    private String document(Random random, int length){
+        String[] words = {"call", "me", "at", "or", "fax", "the", "office", "on", "x", "ext.", "-", "(", ")", "2019", "+1"};
+        StringBuilder sb = new StringBuilder();
+        while(sb.length() < length){
+            if(random.nextInt(4) == 0){
+                sb.append('(').append(200 + random.nextInt(800)).append(") ")
+                    .append(200 + random.nextInt(800)).append('-').append(1000 + random.nextInt(9000));
+            }else if(random.nextInt(6) == 0){
+                sb.append("+44 20 7031 ").append(1000 + random.nextInt(9000));
+            }else{
+                sb.append(words[random.nextInt(words.length)]);
+            }
+            sb.append(random.nextInt(10) == 0 ? "\n" : " ");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void shouldFindTheSameMatchesAsAFullScan() throws Exception{
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        PhoneNumberExtractor extractor = new PhoneNumberExtractor(util, "US", true, false);
+        Random random = new Random(12);
+        for(int doc = 0; doc < 20; doc++){
+            String text = document(random, 20000 + random.nextInt(20000));
+            List<String> expected = new ArrayList<String>();
+            for(PhoneNumberMatch match : util.findNumbers(text, "US")){
+                expected.add(match.start() + ":" + match.number().getCountryCode() + ":" + match.number().getNationalNumber());
+            }
+            for(int chunk : new int[]{ 1024, 1500, 4096 }){
+                final List<String> found = new ArrayList<String>();
+                new ChunkedScanner(chunk).scan(new StringReader(text), extractor, extractor.getDefaultRegion(),
+                    new ChunkedScanner.Sink(){
+                        public void accept(Phonenumber.PhoneNumber number, long offset){
+                            found.add(offset + ":" + number.getCountryCode() + ":" + number.getNationalNumber());
+                        }
+                    });
+                assert(found.equals(expected));
+            }
+        }
+    }
+
+    @Test
+    public void shouldScanBinaryValuesInChunks(){
+        PhoneNumberExtractor extractor = new PhoneNumberExtractor(PhoneNumberUtil.getInstance(), "US", true, false);
+        extractor.setChunkSize(1024);
+        String text = document(new Random(13), 50000);
+        PhoneNumberExtractor.Buffer buffer = new PhoneNumberExtractor.Buffer();
+        int whole = 0;
+        for(PhoneNumberMatch match : PhoneNumberUtil.getInstance().findNumbers(text, "US")){
+            whole += 1;
+        }
+        assert(whole > 0);
+        assert(extractor.extractValue(text.getBytes(StandardCharsets.UTF_8), extractor.getDefaultRegion(), buffer) == whole);
+        assert(extractor.extractValue(text, extractor.getDefaultRegion(), buffer) == whole);
+    }
+}
@@ -0,0 +1,64 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class TestDigitPrefilter{
+
+    @Test
+    public void shouldPassTextWithNumbers(){
+        DigitPrefilter filter = DigitPrefilter.forRegion(PhoneNumberUtil.getInstance(), "US", 7, false);
+        assert(filter.mayContainNumber("My phone number is (303)802-4561. Yours is 303 451-1234"));
+        assert(filter.mayContainNumber("call +44 20 7946 0958 tomorrow"));
+        assert(filter.mayContainNumber("303.802.4561x12"));
+    }
+
+    @Test
+    public void shouldSkipTextWithoutNumbers(){
+        DigitPrefilter filter = DigitPrefilter.forRegion(PhoneNumberUtil.getInstance(), "US", 7, false);
+        assert(!filter.mayContainNumber("Customer asked about the invoice, no callback needed."));
+        assert(!filter.mayContainNumber("Order 1234 shipped on May 6"));
+        assert(!filter.mayContainNumber("a1b2c3d4e5f6g7h8i9j0"));
+    }
+
+    @Test
+    public void shouldNeverSkipTextTheMatcherMatches(){
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        String[] regions = {"US", "GB", "DE", "AT", "FR"};
+        char[] alphabet = "0123456789 -().+/abcx".toCharArray();
+        Random random = new Random(42);
+        for(String region : regions){
+            DigitPrefilter filter = DigitPrefilter.forRegion(util, region, 1, false);
+            for(int i = 0; i < 5000; i++){
+                StringBuilder text = new StringBuilder();
+                int length = 4 + random.nextInt(30);
+                for(int j = 0; j < length; j++){
+                    text.append(alphabet[random.nextInt(alphabet.length)]);
+                }
+                if(!filter.mayContainNumber(text)){
+                    assert(!util.findNumbers(text, region).iterator().hasNext()) : region + ": " + text;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldReportSkipsPerTextIncludingCacheHits(){
+        PhoneNumberExtractor extractor = new PhoneNumberExtractor(PhoneNumberUtil.getInstance(), "US", true, false);
+        extractor.setPrefilterMinDigits(7);
+        extractor.setCache(new PhoneNumberCache(100));
+        PhoneNumberExtractor.Buffer buffer = new PhoneNumberExtractor.Buffer();
+        String text = "Order 1234 shipped on May 6";
+        extractor.extract(text, buffer);
+        assert(buffer.prefilterSkipped);
+        extractor.extract("call 303 411 1234", buffer);
+        assert(!buffer.prefilterSkipped);
+        // the second time the result comes from the cache
+        extractor.extract(text, buffer);
+        assert(buffer.prefilterSkipped);
+        assert(buffer.count == 0);
+    }
+}
@@ -0,0 +1,33 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import org.junit.jupiter.api.Test;
+
+class TestExtractionMetrics{
+
+    @Test
+    public void shouldAddUpWorkerCounts(){
+        ExtractionMetrics total = new ExtractionMetrics(true);
+        ExtractionMetrics worker = new ExtractionMetrics(true);
+        for(int i = 0; i < 99; i++){
+            worker.recordRow(1, 0, 1000);
+        }
+        worker.recordRow(6, 2, 1000000);
+        total.recordFailure(NumberParseException.ErrorType.NOT_A_NUMBER);
+        total.recordFailure(NumberParseException.ErrorType.NOT_A_NUMBER);
+        total.recordFailure(NumberParseException.ErrorType.TOO_LONG);
+        total.add(worker);
+
+        assert(total.getNumbersFound() == 105);
+        assert(total.getValidNumbers() == 105);
+        assert(total.getInvalidNumbers() == 2);
+        assert(total.getParseFailures() == 3);
+        assert(total.getFailures(NumberParseException.ErrorType.NOT_A_NUMBER) == 2);
+        assert(total.getFailuresByType().equals("NOT_A_NUMBER=2, TOO_LONG=1"));
+        assert(total.getNumbersPerRow().equals("0=0, 1=99, 2=0, 3=0, 4+=1"));
+        assert(total.getLatencyP50Nanos() == 1023);
+        assert(total.getLatencyP99Nanos() == 1023);
+        assert(total.latencyPercentile(1.0) == 1048575);
+    }
+}
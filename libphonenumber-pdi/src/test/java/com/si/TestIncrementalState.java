@@ -0,0 +1,191 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+class TestIncrementalState{
+
+    private static String run(IncrementalState state, String[] keys, String[] texts){
+        PhoneNumberExtractor extractor = new PhoneNumberExtractor(PhoneNumberUtil.getInstance(), "US", true, false);
+        PhoneNumberExtractor.Buffer buffer = new PhoneNumberExtractor.Buffer();
+        StringBuilder sb = new StringBuilder();
+        for(int r = 0; r < keys.length; r++){
+            int count = state.extract(extractor, keys[r], texts[r], extractor.getDefaultRegion(), buffer);
+            sb.append(count).append(':');
+            for(int i = 0; i < count; i++){
+                sb.append(buffer.numbers[i]).append(';');
+            }
+            sb.append('|');
+        }
+        return sb.toString();
+    }
+
+    private static String[] generations(File file){
+        String prefix = file.getName() + ".";
+        String[] names = file.getParentFile().list((dir, name) -> name.startsWith(prefix));
+        Arrays.sort(names);
+        return names;
+    }
+
+    private static void delete(File file){
+        file.delete();
+        for(String name : generations(file)){
+            new File(file.getParentFile(), name).delete();
+        }
+    }
+
+    private static String expected(String[] texts){
+        PhoneNumberExtractor extractor = new PhoneNumberExtractor(PhoneNumberUtil.getInstance(), "US", true, false);
+        PhoneNumberExtractor.Buffer buffer = new PhoneNumberExtractor.Buffer();
+        StringBuilder sb = new StringBuilder();
+        for(String text : texts){
+            int count = extractor.extractValue(text, extractor.getDefaultRegion(), buffer);
+            sb.append(count).append(':');
+            for(int i = 0; i < count; i++){
+                sb.append(buffer.numbers[i]).append(';');
+            }
+            sb.append('|');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void shouldReuseUnchangedRows() throws Exception{
+        File file = File.createTempFile("incremental", ".state");
+        file.delete();
+        Object owner = new Object();
+        try{
+            String[] keys = { "1", "2", "3", "4" };
+            String[] texts = { "(303) 411-1234", "call 303 411 1234 or 720 555 0100", "no number here", "720 555 0199" };
+            IncrementalState state = IncrementalState.acquire(owner, file, 7);
+            assert(!state.hasPrevious());
+            assert(run(state, keys, texts).equals(expected(texts)));
+            assert(state.added() == 4);
+            assert(IncrementalState.release(owner, true) == state);
+            assert(file.isFile());
+
+            // one row changed, one added, the rest in a different order
+            String[] keys2 = { "3", "1", "2", "4", "5" };
+            String[] texts2 = { texts[2], texts[0], texts[1], "303 411 9999", "020 7031 3000 and 303 411 1234" };
+            state = IncrementalState.acquire(owner, file, 7);
+            assert(state.hasPrevious());
+            assert(run(state, keys2, texts2).equals(expected(texts2)));
+            assert(state.reused() == 3);
+            assert(state.changed() == 1);
+            assert(state.added() == 1);
+            assert(state.written() == 5);
+            IncrementalState.release(owner, true);
+
+            state = IncrementalState.acquire(owner, file, 7);
+            assert(run(state, keys2, texts2).equals(expected(texts2)));
+            assert(state.reused() == 5);
+            IncrementalState.release(owner, true);
+        }finally{
+            delete(file);
+        }
+    }
+
+    @Test
+    public void shouldKeepTheOldStateOnFailure() throws Exception{
+        File file = File.createTempFile("incremental", ".state");
+        file.delete();
+        Object owner = new Object();
+        try{
+            String[] keys = { "1", "2" };
+            String[] texts = { "(303) 411-1234", "720 555 0100" };
+            run(IncrementalState.acquire(owner, file, 7), keys, texts);
+            IncrementalState.release(owner, true);
+            byte[] manifest = Files.readAllBytes(file.toPath());
+            String[] kept = generations(file);
+
+            IncrementalState state = IncrementalState.acquire(owner, file, 7);
+            IncrementalState.acquire(owner, file, 7);
+            run(state, new String[]{ "1", "2", "3" }, new String[]{ "303 411 0000", "720 555 0100", "303 411 1111" });
+            assert(IncrementalState.release(owner, false) == null);
+            assert(IncrementalState.release(owner, true) == state);
+            assert(Arrays.equals(Files.readAllBytes(file.toPath()), manifest));
+            assert(Arrays.equals(generations(file), kept));
+
+            state = IncrementalState.acquire(owner, file, 7);
+            run(state, keys, texts);
+            assert(state.reused() == 2);
+            IncrementalState.release(owner, true);
+        }finally{
+            delete(file);
+        }
+    }
+
+    @Test
+    public void shouldIgnoreStateOfOtherOptions() throws Exception{
+        File file = File.createTempFile("incremental", ".state");
+        file.delete();
+        Object owner = new Object();
+        try{
+            String[] keys = { "1" };
+            String[] texts = { "(303) 411-1234" };
+            run(IncrementalState.acquire(owner, file, 7), keys, texts);
+            IncrementalState.release(owner, true);
+
+            IncrementalState state = IncrementalState.acquire(owner, file, 8);
+            assert(!state.hasPrevious());
+            run(state, keys, texts);
+            assert(state.reused() == 0);
+            assert(state.added() == 1);
+            IncrementalState.release(owner, true);
+        }finally{
+            delete(file);
+        }
+    }
+
+    @Test
+    public void shouldKeepOnlyTheCurrentGeneration() throws Exception{
+        File file = File.createTempFile("incremental", ".state");
+        file.delete();
+        Object owner = new Object();
+        try{
+            String[] keys = { "1", "2" };
+            String[] texts = { "(303) 411-1234", "720 555 0100" };
+            for(int i = 0; i < 3; i++){
+                run(IncrementalState.acquire(owner, file, 7), keys, texts);
+                IncrementalState.release(owner, true);
+            }
+            assert(file.length() == 16);
+            assert(Arrays.equals(generations(file), new String[]{ file.getName() + ".3" }));
+
+            // a generation left over by an interrupted run goes on the next open
+            assert(new File(file.getPath() + ".9").createNewFile());
+            IncrementalState state = IncrementalState.acquire(owner, file, 7);
+            assert(state.hasPrevious());
+            assert(Arrays.equals(generations(file), new String[]{ file.getName() + ".3", file.getName() + ".4" }));
+            IncrementalState.release(owner, false);
+            assert(Arrays.equals(generations(file), new String[]{ file.getName() + ".3" }));
+        }finally{
+            delete(file);
+        }
+    }
+
+    @Test
+    public void shouldNotKeepRowsWithMoreNumbersThanARecordHolds() throws Exception{
+        File file = File.createTempFile("incremental", ".state");
+        file.delete();
+        Object owner = new Object();
+        try{
+            String[] keys = { "1", "2" };
+            String[] texts = { "call 303 411 1234 or 720 555 0100", "303 411 1234, 720 555 0100 or 303 411 9999" };
+            for(int i = 0; i < 2; i++){
+                IncrementalState state = IncrementalState.acquire(owner, file, 7);
+                assert(run(state, keys, texts).equals(expected(texts)));
+                assert(state.reused() == i);
+                assert(state.written() == 1);
+                IncrementalState.release(owner, true);
+            }
+        }finally{
+            delete(file);
+        }
+    }
+}
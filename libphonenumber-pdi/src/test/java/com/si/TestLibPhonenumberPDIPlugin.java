@@ -0,0 +1,379 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pentaho.di.core.logging.LoggingObjectInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.steps.mock.StepMockHelper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TestLibPhonenumberPDIPlugin{
+
+    private StepMockHelper<LibPhonenumberPDIPluginMeta, LibPhonenumberPDIPluginData> helper;
+
+    /**
+     * A step copy reading from and writing to lists.
+     */
+    private static class ListStep extends LibPhonenumberPDIPlugin{
+        private final List<Object[]> input;
+        private int next;
+        final List<Object[]> output = new ArrayList<Object[]>();
+        RowMetaInterface outputMeta;
+        final List<Object[]> errors = new ArrayList<Object[]>();
+        RowMetaInterface errorMeta;
+
+        ListStep(StepMockHelper<LibPhonenumberPDIPluginMeta, LibPhonenumberPDIPluginData> helper, int copy,
+                 RowMetaInterface inputMeta, Object[]... rows){
+            super(helper.stepMeta, helper.stepDataInterface, copy, helper.transMeta, helper.trans);
+            setInputRowMeta(inputMeta);
+            input = Arrays.asList(rows);
+        }
+
+        @Override
+        public Object[] getRow(){
+            return next < input.size() ? input.get(next++) : null;
+        }
+
+        @Override
+        public void putRow(RowMetaInterface rowMeta, Object[] row){
+            outputMeta = rowMeta;
+            output.add(row);
+        }
+
+        @Override
+        public void putError(RowMetaInterface rowMeta, Object[] row, long nrErrors, String descriptions,
+                             String fieldNames, String errorCodes){
+            errorMeta = rowMeta;
+            errors.add(row);
+        }
+    }
+
+    @BeforeEach
+    public void setUp(){
+        helper = new StepMockHelper<LibPhonenumberPDIPluginMeta, LibPhonenumberPDIPluginData>("Phone Numbers",
+            LibPhonenumberPDIPluginMeta.class, LibPhonenumberPDIPluginData.class);
+        when(helper.logChannelInterfaceFactory.create(any(), any(LoggingObjectInterface.class)))
+            .thenReturn(helper.logChannelInterface);
+    }
+
+    @AfterEach
+    public void tearDown(){
+        helper.cleanUp();
+    }
+
+    private static LibPhonenumberPDIPluginMeta newMeta(){
+        LibPhonenumberPDIPluginMeta meta = new LibPhonenumberPDIPluginMeta();
+        meta.setDefault();
+        meta.setInField("text");
+        meta.setOutField("phone");
+        meta.setRegion("US");
+        return meta;
+    }
+
+    private static RowMetaInterface inputMeta(){
+        RowMetaInterface rowMeta = new RowMeta();
+        rowMeta.addValueMeta(new ValueMetaString("id"));
+        rowMeta.addValueMeta(new ValueMetaString("text"));
+        return rowMeta;
+    }
+
+    private static void run(ListStep step, LibPhonenumberPDIPluginMeta meta, LibPhonenumberPDIPluginData data)
+        throws Exception{
+        while(step.processRow(meta, data)){
+            // keep reading
+        }
+        step.dispose(meta, data);
+    }
+
+    @Test
+    public void shouldEmitCountsFromACopyWithoutRows() throws Exception{
+        LibPhonenumberPDIPluginMeta meta = newMeta();
+        meta.setFindMatches(true);
+        meta.setAggregate(true);
+        ListStep busy = new ListStep(helper, 0, inputMeta(),
+            new Object[]{ "1", "call 303 411 1234 or 720 555 0100" }, new Object[]{ "2", "303-411-1234" });
+        ListStep idle = new ListStep(helper, 1, inputMeta());
+        LibPhonenumberPDIPluginData busyData = new LibPhonenumberPDIPluginData();
+        LibPhonenumberPDIPluginData idleData = new LibPhonenumberPDIPluginData();
+        assert(busy.init(meta, busyData));
+        assert(idle.init(meta, idleData));
+        run(busy, meta, busyData);
+        // the copy without rows finishes last and emits for both
+        run(idle, meta, idleData);
+        assert(busy.output.isEmpty());
+        assert(idle.output.size() == 2);
+        assert(idle.outputMeta.size() == 2);
+        assert(idle.outputMeta.indexOfValue("phone") == 0);
+        assert(idle.outputMeta.indexOfValue("count") == 1);
+        long total = 0;
+        for(Object[] row : idle.output){
+            long number = (Long) row[0];
+            long count = (Long) row[1];
+            assert(number == 3034111234L ? count == 2 : number == 7205550100L && count == 1);
+            total += count;
+        }
+        assert(total == 3);
+    }
+
+    private static final String TEXT = "call 303 411 1234, 720 555 0100 or 303 411 9999";
+
+    private static String type(String number) throws Exception{
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        return util.getNumberType(util.parse(number, "US")).name();
+    }
+
+    /**
+     * A step with every kind of per-number output, the first number found
+     * in TEXT being on the reference list.
+     */
+    private static LibPhonenumberPDIPluginMeta outputsMeta(String outputMode, File reference) throws Exception{
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        ReferenceIndex.write(new long[]{ PackedNumber.pack(util.parse("303 411 1234", "US")) }, 1, reference);
+        LibPhonenumberPDIPluginMeta meta = newMeta();
+        meta.setFindMatches(true);
+        meta.setOutputMode(outputMode);
+        meta.setCountryCodeField("cc");
+        meta.setE164Field("e164");
+        meta.setNumberTypeField("type");
+        meta.setReferenceFile(reference.getPath());
+        meta.setReferenceMode(LibPhonenumberPDIPluginMeta.REFERENCE_FLAG);
+        meta.setReferenceFlagField("listed");
+        return meta;
+    }
+
+    @Test
+    public void shouldSpreadNumbersOverIndexedColumns() throws Exception{
+        File reference = File.createTempFile("reference", ".idx");
+        try{
+            LibPhonenumberPDIPluginMeta meta = outputsMeta(LibPhonenumberPDIPluginMeta.OUTPUT_COLUMNS, reference);
+            meta.setMaxColumns(2);
+            ListStep step = new ListStep(helper, 0, inputMeta(), new Object[]{ "1", TEXT },
+                new Object[]{ "2", "no number here" });
+            LibPhonenumberPDIPluginData data = new LibPhonenumberPDIPluginData();
+            assert(step.init(meta, data));
+            run(step, meta, data);
+            assert(step.output.size() == 2);
+            RowMetaInterface out = step.outputMeta;
+            assert(out.size() == 12);
+            Object[] row = step.output.get(0);
+            assert(row[0].equals("1"));
+            assert(row[out.indexOfValue("phone_1")].equals(3034111234L));
+            assert(row[out.indexOfValue("phone_2")].equals(7205550100L));
+            assert(row[out.indexOfValue("cc_1")].equals(1L));
+            assert(row[out.indexOfValue("cc_2")].equals(1L));
+            assert(row[out.indexOfValue("e164_1")].equals("+13034111234"));
+            assert(row[out.indexOfValue("e164_2")].equals("+17205550100"));
+            assert(row[out.indexOfValue("type_1")].equals(type("303 411 1234")));
+            assert(row[out.indexOfValue("type_2")].equals(type("720 555 0100")));
+            assert(row[out.indexOfValue("listed_1")].equals(true));
+            assert(row[out.indexOfValue("listed_2")].equals(false));
+            // the third number has no column left
+            assert(data.columnOverflow == 1);
+            row = step.output.get(1);
+            assert(row[1].equals("no number here"));
+            for(int i = 2; i < out.size(); i++){
+                assert(row[i] == null);
+            }
+        }finally{
+            reference.delete();
+        }
+    }
+
+    @Test
+    public void shouldJoinNumbersWithTheDelimiter() throws Exception{
+        File reference = File.createTempFile("reference", ".idx");
+        try{
+            LibPhonenumberPDIPluginMeta meta = outputsMeta(LibPhonenumberPDIPluginMeta.OUTPUT_DELIMITED, reference);
+            meta.setDelimiter(";");
+            ListStep step = new ListStep(helper, 0, inputMeta(), new Object[]{ "1", TEXT },
+                new Object[]{ "2", "no number here" });
+            LibPhonenumberPDIPluginData data = new LibPhonenumberPDIPluginData();
+            assert(step.init(meta, data));
+            run(step, meta, data);
+            assert(step.output.size() == 2);
+            RowMetaInterface out = step.outputMeta;
+            assert(out.size() == 7);
+            Object[] row = step.output.get(0);
+            assert(row[out.indexOfValue("phone")].equals("3034111234;7205550100;3034119999"));
+            assert(row[out.indexOfValue("cc")].equals("1;1;1"));
+            assert(row[out.indexOfValue("e164")].equals("+13034111234;+17205550100;+13034119999"));
+            assert(row[out.indexOfValue("type")].equals(type("303 411 1234") + ";" + type("720 555 0100") + ";"
+                + type("303 411 9999")));
+            assert(row[out.indexOfValue("listed")].equals("Y;N;N"));
+            assert(data.columnOverflow == 0);
+            row = step.output.get(1);
+            for(int i = 2; i < out.size(); i++){
+                assert(row[i] == null);
+            }
+        }finally{
+            reference.delete();
+        }
+    }
+
+    private long prefilterSkips(int workers) throws Exception{
+        LibPhonenumberPDIPluginMeta meta = newMeta();
+        meta.setFindMatches(true);
+        meta.setPrefilterMinDigits(7);
+        meta.setCacheSize(100);
+        meta.setParallelWorkers(workers);
+        meta.allocateAdditionalFields(1);
+        meta.getAdditionalInFields()[0] = "other";
+        meta.getAdditionalOutFields()[0] = "other_phone";
+        meta.getAdditionalFindMatches()[0] = true;
+        RowMetaInterface inputMeta = inputMeta();
+        inputMeta.addValueMeta(new ValueMetaString("other"));
+        ListStep step = new ListStep(helper, 0, inputMeta, new Object[]{ "1", "Order 1234 shipped", "no digits" },
+            new Object[]{ "2", "Order 1234 shipped", "none here" }, new Object[]{ "3", "call 303 411 1234", "nothing" });
+        LibPhonenumberPDIPluginData data = new LibPhonenumberPDIPluginData();
+        assert(step.init(meta, data));
+        run(step, meta, data);
+        assert(step.output.size() == 3);
+        return data.prefilterSkipped;
+    }
+
+    @Test
+    public void shouldCountPrefilterSkipsOncePerRow() throws Exception{
+        // the second row is served from the cache, the additional field skips are not counted
+        assert(prefilterSkips(0) == 2);
+        assert(prefilterSkips(2) == 2);
+    }
+
+    private ListStep routeParseErrors(int workers) throws Exception{
+        LibPhonenumberPDIPluginMeta meta = newMeta();
+        meta.setErrorMode(LibPhonenumberPDIPluginMeta.ERROR_MODE_ERROR);
+        meta.setParallelWorkers(workers);
+        when(helper.stepMeta.isDoingErrorHandling()).thenReturn(true);
+        ListStep step = new ListStep(helper, 0, inputMeta(), new Object[]{ "1", "(303) 411-1234" },
+            new Object[]{ "2", "not a number" }, new Object[]{ "3", "720 555 0100" });
+        LibPhonenumberPDIPluginData data = new LibPhonenumberPDIPluginData();
+        assert(step.init(meta, data));
+        run(step, meta, data);
+        return step;
+    }
+
+    @Test
+    public void shouldRouteParseErrorsWithTheInputRow() throws Exception{
+        for(int workers : new int[]{ 0, 2 }){
+            ListStep step = routeParseErrors(workers);
+            assert(step.output.size() == 2);
+            assert(step.errors.size() == 1);
+            assert(step.errorMeta.size() == 2);
+            assert(Arrays.equals(step.errors.get(0), new Object[]{ "2", "not a number" }));
+        }
+    }
+
+    private Object[] runWithPersistentCache(File cache, int prefilterMinDigits) throws Exception{
+        LibPhonenumberPDIPluginMeta meta = newMeta();
+        meta.setFindMatches(true);
+        meta.setPrefilterMinDigits(prefilterMinDigits);
+        meta.setPersistentCacheFile(cache.getPath());
+        ListStep step = new ListStep(helper, 0, inputMeta(), new Object[]{ "1", "call 303 411 1234" });
+        LibPhonenumberPDIPluginData data = new LibPhonenumberPDIPluginData();
+        assert(step.init(meta, data));
+        run(step, meta, data);
+        assert(step.output.size() == 1);
+        return step.output.get(0);
+    }
+
+    @Test
+    public void shouldNotReusePrefilteredResultsOnceThePrefilterChanges() throws Exception{
+        File cache = File.createTempFile("parse", ".cache");
+        try{
+            // ten digits are too few for this pre-filter
+            assert(runWithPersistentCache(cache, 12)[2] == null);
+            assert(runWithPersistentCache(cache, 0)[2] != null);
+        }finally{
+            cache.delete();
+        }
+    }
+
+    private List<Object[]> runIncremental(File state, boolean findMatches) throws Exception{
+        LibPhonenumberPDIPluginMeta meta = newMeta();
+        meta.setFindMatches(findMatches);
+        if(state != null){
+            meta.setIncrementalStateFile(state.getPath());
+            meta.setIncrementalKeyField("id");
+        }
+        ListStep step = new ListStep(helper, 0, inputMeta(), new Object[]{ "1", "call 303 411 1234 or 720 555 0100" },
+            new Object[]{ "2", "(720) 555-0199" });
+        LibPhonenumberPDIPluginData data = new LibPhonenumberPDIPluginData();
+        assert(step.init(meta, data));
+        run(step, meta, data);
+        return step.output;
+    }
+
+    @Test
+    public void shouldNotReuseIncrementalResultsOfTheOtherMode() throws Exception{
+        File state = File.createTempFile("incremental", ".state");
+        state.delete();
+        try{
+            List<Object[]> found = runIncremental(state, true);
+            List<Object[]> parsed = runIncremental(null, false);
+            assert(!Arrays.deepEquals(found.toArray(), parsed.toArray()));
+            assert(Arrays.deepEquals(runIncremental(state, false).toArray(), parsed.toArray()));
+            assert(Arrays.deepEquals(runIncremental(state, true).toArray(), found.toArray()));
+        }finally{
+            String prefix = state.getName();
+            for(String name : state.getParentFile().list((dir, name) -> name.startsWith(prefix))){
+                new File(state.getParentFile(), name).delete();
+            }
+        }
+    }
+
+    @Test
+    public void shouldReadTheSavedMaxColumnsFromARepository() throws Exception{
+        LibPhonenumberPDIPluginMeta meta = newMeta();
+        meta.setMaxColumns(8);
+        Repository rep = mock(Repository.class);
+        meta.saveRep(rep, null, null, null);
+        verify(rep).saveStepAttribute(null, null, "maxColumns", 8L);
+        when(rep.getStepAttributeInteger(null, "maxColumns")).thenReturn(8L);
+        LibPhonenumberPDIPluginMeta read = new LibPhonenumberPDIPluginMeta();
+        read.readRep(rep, null, null, null);
+        assert(read.getMaxColumns() == 8);
+
+        // a step saved before the setting existed
+        read.readRep(mock(Repository.class), null, null, null);
+        assert(read.getMaxColumns() == LibPhonenumberPDIPluginMeta.DEFAULT_MAX_COLUMNS);
+    }
+
+    @Test
+    public void shouldReadTheRegionThroughItsValueMeta() throws Exception{
+        for(int workers : new int[]{ 0, 2 }){
+            LibPhonenumberPDIPluginMeta meta = newMeta();
+            meta.setRegionInField("region");
+            meta.setParallelWorkers(workers);
+            // a lazily converted region, as a text file input with lazy conversion hands it on
+            ValueMetaString region = new ValueMetaString("region");
+            region.setStorageType(ValueMetaInterface.STORAGE_TYPE_BINARY_STRING);
+            region.setStorageMetadata(new ValueMetaString("region"));
+            RowMetaInterface inputMeta = inputMeta();
+            inputMeta.addValueMeta(region);
+            ListStep step = new ListStep(helper, 0, inputMeta, new Object[]{ "1", "020 7031 3000", "GB".getBytes("UTF-8") },
+                new Object[]{ "2", "(303) 411-1234", null });
+            LibPhonenumberPDIPluginData data = new LibPhonenumberPDIPluginData();
+            assert(step.init(meta, data));
+            run(step, meta, data);
+            assert(step.output.size() == 2);
+            int phone = step.outputMeta.indexOfValue("phone");
+            assert(((Long) step.output.get(0)[phone]) == 2070313000L);
+            assert(((Long) step.output.get(1)[phone]) == 3034111234L);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.PhoneNumberMatch;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class TestMappedFileScanner{
+
+    @Test
+    public void shouldReportByteOffsetsAcrossSegments() throws Exception{
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        PhoneNumberExtractor extractor = new PhoneNumberExtractor(util, "US", true, false);
+        Random random = new Random(15);
+        StringBuilder sb = new StringBuilder();
+        while(sb.length() < 40000){
+            sb.append(random.nextInt(3) == 0 ? "(" + (200 + random.nextInt(800)) + ") 555-" + (1000 + random.nextInt(9000))
+                : "note").append(random.nextInt(8) == 0 ? "\n" : " ");
+        }
+        String text = sb.toString();
+        List<String> expected = new ArrayList<String>();
+        for(PhoneNumberMatch match : util.findNumbers(text, "US")){
+            expected.add(match.start() + ":" + match.number().getNationalNumber());
+        }
+        File file = File.createTempFile("numbers", ".txt");
+        try{
+            Files.write(file.toPath(), text.getBytes(StandardCharsets.ISO_8859_1));
+            final List<String> found = new ArrayList<String>();
+            new MappedFileScanner(extractor, extractor.getDefaultRegion(), 2048).scan(file, new ChunkedScanner.Sink(){
+                public void accept(Phonenumber.PhoneNumber number, long offset){
+                    found.add(offset + ":" + number.getNationalNumber());
+                }
+            });
+            assert(!expected.isEmpty());
+            assert(found.equals(expected));
+        }finally{
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TestMetadataWarmUp{
+
+    @Test
+    public void shouldWarmUpEachRegionOnce(){
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        List<String> regions = MetadataWarmUp.parseRegions(util, " fr, ,XX,FR,jp");
+        assert(regions.size() == 2);
+        assert(regions.get(0).equals("FR"));
+        assert(regions.get(1).equals("JP"));
+        // other tests may have warmed these already, so check the state rather than the count
+        MetadataWarmUp.warmUp(util, regions);
+        assert(MetadataWarmUp.isWarm("FR"));
+        assert(MetadataWarmUp.isWarm("JP"));
+        assert(MetadataWarmUp.warmUp(util, regions) == 0);
+    }
+
+    @Test
+    public void shouldWaitForARegionAnotherCopyIsWarming() throws Exception{
+        final PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        final List<String> regions = MetadataWarmUp.parseRegions(util, "BR,IN,DE,AU");
+        int copies = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger warmed = new AtomicInteger();
+        final AtomicInteger cold = new AtomicInteger();
+        Thread[] threads = new Thread[copies];
+        for(int i = 0; i < copies; i++){
+            threads[i] = new Thread(new Runnable(){
+                public void run(){
+                    try{
+                        start.await();
+                    }catch(InterruptedException e){
+                        return;
+                    }
+                    warmed.addAndGet(MetadataWarmUp.warmUp(util, regions));
+                    for(String region : regions){
+                        if(!MetadataWarmUp.isWarm(region)){
+                            cold.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for(Thread thread : threads){
+            thread.join();
+        }
+        // every copy returns only once all of its regions are warm
+        assert(cold.get() == 0);
+        assert(warmed.get() <= regions.size());
+    }
+}
@@ -0,0 +1,90 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class TestNanpFastParser{
+
+    private static final String[] FORMATS = {
+        "%s-%s-%s", "(%s) %s-%s", "%s.%s.%s", "%s %s %s", "%s%s%s", "+1 %s %s %s", "+1 (%s) %s-%s",
+        "1-%s-%s-%s", "1 (%s) %s %s", "1%s%s%s", "+1-%s-%s-%s", " %s/%s-%s ", "(+1) %s %s %s", "+ 1 %s.%s.%s",
+        "+44 %s %s %s", "+%s%s%s", "%s-%s-%s x12", "%s-%s-%s ext. 9", "tel:%s-%s-%s", "1-800-FLOWERS %s%s%s",
+        "%s--%s--%s", "((%s))%s%s", "%s-%s", "0%s%s%s", "11%s%s%s", "%s-%s-%s5", "++1 %s %s %s", "%s+%s%s",
+        "%s-%s-%s.", "-%s-%s-%s", "%s\t%s-%s", "%s,%s,%s", "%s-%s-%s;ext=1"
+    };
+
+    private static String digits(Random random, int n){
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < n; i++){
+            sb.append((char) ('0' + random.nextInt(10)));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void shouldParseCommonUSFormats(){
+        NanpFastParser parser = new NanpFastParser(PhoneNumberUtil.getInstance());
+        assert(parser.parse("303-802-4561") == 3038024561L);
+        assert(parser.parse("(303) 802-4561") == 3038024561L);
+        assert(parser.parse("+1 303 802 4561") == 3038024561L);
+        assert(parser.parse("1-303-802-4561") == 3038024561L);
+        assert(parser.parse("303-802-4561 x12") == NanpFastParser.UNDECIDED);
+        assert(parser.parse("+44 20 7946 0958") == NanpFastParser.UNDECIDED);
+        assert(parser.parse("802-4561") == NanpFastParser.UNDECIDED);
+        assert(parser.isValid(parser.toPhoneNumber(parser.parse("303-411-4561"))));
+        assert(!parser.isValid(parser.toPhoneNumber(parser.parse("303-123-4561"))));
+    }
+
+    @Test
+    public void shouldMatchPhoneNumberUtilOnGeneratedCorpus(){
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        NanpFastParser parser = new NanpFastParser(util);
+        Random random = new Random(7);
+        String[] regions = {"US", "CA"};
+        // reuse a pool of thousands blocks so remembered validity gets checked against new line numbers
+        String[] blocks = new String[2000];
+        for(int i = 0; i < blocks.length; i++){
+            blocks[i] = (char) ('2' + random.nextInt(8)) + digits(random, 6);
+        }
+        int decided = 0;
+        for(int i = 0; i < 200000; i++){
+            String format = FORMATS[random.nextInt(FORMATS.length)];
+            String npa;
+            String nxx;
+            String line;
+            if(random.nextBoolean()){
+                String block = blocks[random.nextInt(blocks.length)];
+                npa = block.substring(0, 3);
+                nxx = block.substring(3, 6);
+                line = block.substring(6) + digits(random, 3);
+            }else{
+                npa = random.nextInt(8) == 0 ? digits(random, 3) : (char) ('2' + random.nextInt(8)) + digits(random, 2);
+                nxx = digits(random, 3);
+                line = digits(random, 4);
+            }
+            String text = String.format(format, npa, nxx, line);
+            String region = regions[random.nextInt(regions.length)];
+
+            long national = parser.parse(text);
+            if(national == NanpFastParser.UNDECIDED){
+                continue;
+            }
+            decided += 1;
+            PhoneNumber expected;
+            try {
+                expected = util.parse(text, region);
+            }catch(NumberParseException e){
+                throw new AssertionError(text + " decided by fast parser but failed in libphonenumber", e);
+            }
+            PhoneNumber number = parser.toPhoneNumber(national);
+            assert(number.equals(expected)) : text;
+            assert(parser.isValid(number) == util.isValidNumber(expected)) : text;
+        }
+        assert(decided > 100000);
+    }
+}
@@ -0,0 +1,79 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.Phonenumber;
+import org.junit.jupiter.api.Test;
+import org.pentaho.di.core.exception.KettleException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+class TestNumberCounts{
+
+    @Test
+    public void shouldCountLikeAHashMap(){
+        LongIntHashMap map = new LongIntHashMap(4);
+        Map<Long, Integer> expected = new HashMap<Long, Integer>();
+        Random random = new Random(8);
+        for(int i = 0; i < 200000; i++){
+            long key = PackedNumber.pack(1, 0, 2000000000L + random.nextInt(20000));
+            map.increment(key, 1);
+            expected.merge(key, 1, Integer::sum);
+        }
+        assert(map.size() == expected.size());
+        for(Map.Entry<Long, Integer> e : expected.entrySet()){
+            assert(map.get(e.getKey()) == e.getValue());
+        }
+    }
+
+    @Test
+    public void shouldReturnTheMostFrequentNumbersFirst() throws Exception{
+        Object owner = new Object();
+        NumberCounts counts = NumberCounts.acquire(owner);
+        NumberCounts.acquire(owner);
+        for(int n = 1; n <= 50; n++){
+            Phonenumber.PhoneNumber number = new Phonenumber.PhoneNumber().setCountryCode(1).setNationalNumber(3034110000L + n);
+            Phonenumber.PhoneNumber[] row = { number, number };
+            for(int i = 0; i < n; i++){
+                counts.add(row, 1);
+            }
+        }
+        assert(!NumberCounts.finish(owner));
+        assert(NumberCounts.finish(owner));
+
+        LongIntHashMap map = counts.counts();
+        int[] top = map.topSlots(3);
+        assert(top.length == 3);
+        assert(map.valueAt(top[0]) == 50 && map.valueAt(top[1]) == 49 && map.valueAt(top[2]) == 48);
+        assert(PackedNumber.nationalNumber(map.keyAt(top[0])) == 3034110050L);
+        assert(map.topSlots(100).length == 50);
+        assert(!NumberCounts.release(owner));
+        assert(NumberCounts.release(owner));
+    }
+
+    @Test
+    public void shouldStopCountingAtTheLargestTable() throws Exception{
+        NumberCounts counts = new NumberCounts(1 << 10);
+        Phonenumber.PhoneNumber[] row = { new Phonenumber.PhoneNumber().setCountryCode(1) };
+        int held = 0;
+        try{
+            for(int i = 1; i <= 1 << 10; i++){
+                row[0].setNationalNumber(2000000000L + i);
+                counts.add(row, 1);
+                held = i;
+            }
+            assert(false);
+        }catch(KettleException e){
+            // the map counts as full one key short of its load factor
+            assert(held == (1 << 10) / 4 * 3 - 1);
+        }
+        // numbers already counted still add up
+        row[0].setNationalNumber(2000000001L);
+        counts.add(row, 1);
+        LongIntHashMap map = counts.counts();
+        assert(map.size() == held);
+        assert(map.capacity() == 1 << 10);
+        assert(map.get(PackedNumber.pack(row[0])) == 2);
+    }
+}
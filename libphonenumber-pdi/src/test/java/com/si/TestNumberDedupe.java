@@ -0,0 +1,85 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.Phonenumber;
+import org.junit.jupiter.api.Test;
+import org.pentaho.di.core.exception.KettleException;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+class TestNumberDedupe{
+
+    @Test
+    public void shouldPackAndUnpackNumbers(){
+        long key = PackedNumber.pack(44, 0, 2070313000L);
+        assert(PackedNumber.countryCode(key) == 44);
+        assert(PackedNumber.nationalNumber(key) == 2070313000L);
+        assert(PackedNumber.pack(999, 0, 99999999999999999L) == PackedNumber.NOT_PACKABLE);
+        assert(PackedNumber.pack(0, 0, 1L) == PackedNumber.NOT_PACKABLE);
+
+        Phonenumber.PhoneNumber italian = new Phonenumber.PhoneNumber().setCountryCode(39).setNationalNumber(236618300L)
+            .setItalianLeadingZero(true);
+        assert(PackedNumber.pack(italian) != PackedNumber.pack(39, 0, 236618300L));
+        assert(PackedNumber.toPhoneNumber(PackedNumber.pack(italian)).exactlySameAs(italian));
+    }
+
+    @Test
+    public void shouldKeepFirstOccurrencesExactly() throws Exception{
+        NumberDedupe dedupe = new NumberDedupe(0);
+        Set<Long> seen = new HashSet<Long>();
+        Random random = new Random(3);
+        Phonenumber.PhoneNumber[] out = new Phonenumber.PhoneNumber[2];
+        for(int i = 0; i < 300000; i++){
+            long national = 2000000000L + random.nextInt(100000);
+            Phonenumber.PhoneNumber[] row = { new Phonenumber.PhoneNumber().setCountryCode(1).setNationalNumber(national) };
+            int kept = dedupe.retainFirstSeen(row, 1, out);
+            assert((kept == 1) == seen.add(national));
+        }
+        assert(dedupe.distinct() == seen.size());
+        assert(!dedupe.isBloomActive());
+    }
+
+    @Test
+    public void shouldNeverRepeatANumberPastTheCeiling() throws Exception{
+        NumberDedupe dedupe = new NumberDedupe(4L * 1024 * 1024);
+        Set<Long> emitted = new HashSet<Long>();
+        Set<Long> distinct = new HashSet<Long>();
+        Random random = new Random(4);
+        for(int i = 0; i < 1000000; i++){
+            long key = PackedNumber.pack(1, 0, 2000000000L + random.nextInt(400000));
+            distinct.add(key);
+            if(dedupe.firstSeen(key)){
+                assert(emitted.add(key));
+            }
+        }
+        assert(dedupe.isBloomActive());
+        assert(emitted.size() > distinct.size() * 0.99);
+    }
+
+    @Test
+    public void shouldStopGrowingAtTheLargestTable() throws Exception{
+        // without a ceiling the dedupe fails once the largest table is full
+        NumberDedupe exact = new NumberDedupe(0, 1 << 10);
+        int held = 0;
+        try{
+            for(int i = 1; i <= 1 << 10; i++){
+                assert(exact.firstSeen(PackedNumber.pack(1, 0, 2000000000L + i)));
+                held = i;
+            }
+            assert(false);
+        }catch(KettleException e){
+            // the set counts as full one key short of its load factor
+            assert(held == (1 << 10) / 4 * 3 - 1);
+        }
+        assert(!exact.firstSeen(PackedNumber.pack(1, 0, 2000000001L)));
+
+        // with a ceiling it goes on with the Bloom filter
+        NumberDedupe bounded = new NumberDedupe(1L << 20, 1 << 10);
+        for(int i = 1; i <= 1 << 12; i++){
+            assert(bounded.firstSeen(PackedNumber.pack(1, 0, 2000000000L + i)));
+        }
+        assert(bounded.isBloomActive());
+    }
+}
@@ -0,0 +1,35 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+import com.google.i18n.phonenumbers.PhoneNumberToCarrierMapper;
+import com.google.i18n.phonenumbers.PhoneNumberToTimeZonesMapper;
+import com.google.i18n.phonenumbers.geocoding.PhoneNumberOfflineGeocoder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+class TestNumberEnricher{
+
+    @Test
+    public void shouldMatchTheFullLookups() throws Exception{
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        NumberEnricher enricher = new NumberEnricher(util, Locale.ENGLISH, new boolean[]{ true, true, true, true }, 16, false);
+        String[][] inputs = { {"303 411 1234", "US"}, {"020 7031 3000", "GB"}, {"07700 900123", "GB"},
+            {"0612345678", "NL"}, {"+41 79 123 45 67", "CH"}, {"123", "US"} };
+        for(String[] input : inputs){
+            Phonenumber.PhoneNumber number = util.parse(input[0], input[1]);
+            String[] values = enricher.enrich(number);
+            String location = PhoneNumberOfflineGeocoder.getInstance().getDescriptionForNumber(number, Locale.ENGLISH);
+            String carrier = PhoneNumberToCarrierMapper.getInstance().getNameForNumber(number, Locale.ENGLISH);
+            String zones = String.join(",", PhoneNumberToTimeZonesMapper.getInstance().getTimeZonesForNumber(number));
+            assert(String.valueOf(values[NumberEnricher.LOCATION]).equals(location.isEmpty() ? "null" : location));
+            assert(String.valueOf(values[NumberEnricher.CARRIER]).equals(carrier.isEmpty() ? "null" : carrier));
+            assert(String.valueOf(values[NumberEnricher.TIME_ZONE]).equals(zones.equals("Etc/Unknown") ? "null" : zones));
+            assert(values[NumberEnricher.NUMBER_TYPE].equals(util.getNumberType(number).name()));
+        }
+        assert(enricher.enrich(util.parse("303 411 1234", "US")) == enricher.enrich(util.parse("(303) 411-1234", "US")));
+        assert(enricher.hits() == 1);
+    }
+}
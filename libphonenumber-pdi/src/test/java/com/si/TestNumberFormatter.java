@@ -0,0 +1,52 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class TestNumberFormatter{
+
+    @Test
+    public void shouldMatchPhoneNumberUtil(){
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        PhoneNumberUtil.PhoneNumberFormat[] formats = PhoneNumberUtil.PhoneNumberFormat.values();
+        NumberFormatter formatter = new NumberFormatter(util, formats, 64);
+        List<Phonenumber.PhoneNumber> numbers = new ArrayList<Phonenumber.PhoneNumber>();
+        for(String region : util.getSupportedRegions()){
+            Phonenumber.PhoneNumber example = util.getExampleNumber(region);
+            if(example != null){
+                numbers.add(example);
+                numbers.add(new Phonenumber.PhoneNumber().mergeFrom(example).setExtension("12"));
+            }
+        }
+        numbers.add(new Phonenumber.PhoneNumber().setCountryCode(39).setNationalNumber(236618300L).setItalianLeadingZero(true));
+        numbers.add(new Phonenumber.PhoneNumber().setCountryCode(225).setNationalNumber(7123456L)
+            .setItalianLeadingZero(true).setNumberOfLeadingZeros(2));
+        numbers.add(new Phonenumber.PhoneNumber().setCountryCode(800).setNationalNumber(12345678L));
+        numbers.add(new Phonenumber.PhoneNumber().setCountryCode(999).setNationalNumber(12345678L));
+
+        Random random = new Random(5);
+        for(int i = 0; i < 20000; i++){
+            Phonenumber.PhoneNumber number = numbers.get(random.nextInt(numbers.size()));
+            String[] formatted = formatter.format(number);
+            for(PhoneNumberUtil.PhoneNumberFormat format : formats){
+                assert(formatted[format.ordinal()].equals(util.format(number, format)));
+            }
+        }
+    }
+
+    @Test
+    public void shouldOnlyProduceRequestedFormats(){
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        NumberFormatter formatter = new NumberFormatter(util,
+            new PhoneNumberUtil.PhoneNumberFormat[]{ PhoneNumberUtil.PhoneNumberFormat.E164 }, 0);
+        String[] formatted = formatter.format(new Phonenumber.PhoneNumber().setCountryCode(1).setNationalNumber(3034111234L));
+        assert(formatted[PhoneNumberUtil.PhoneNumberFormat.E164.ordinal()].equals("+13034111234"));
+        assert(formatted[PhoneNumberUtil.PhoneNumberFormat.NATIONAL.ordinal()] == null);
+    }
+}
@@ -0,0 +1,63 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class TestNumberTypeClassifier{
+
+    private static List<Phonenumber.PhoneNumber> numbers(PhoneNumberUtil util) throws Exception{
+        String[] regions = { "US", "CA", "BS", "JM", "GB", "DE", "CH", "NL", "FR", "IT", "AU", "IN", "RU", "KZ" };
+        Random random = new Random(7);
+        List<Phonenumber.PhoneNumber> numbers = new ArrayList<Phonenumber.PhoneNumber>();
+        for(String region : regions){
+            for(PhoneNumberUtil.PhoneNumberType type : PhoneNumberUtil.PhoneNumberType.values()){
+                Phonenumber.PhoneNumber example = util.getExampleNumberForType(region, type);
+                if(example == null){
+                    continue;
+                }
+                String nsn = util.getNationalSignificantNumber(example);
+                for(int i = 0; i < 50; i++){
+                    char[] digits = nsn.toCharArray();
+                    for(int d = random.nextInt(digits.length); d < digits.length; d++){
+                        digits[d] = (char) ('0' + random.nextInt(10));
+                    }
+                    numbers.add(util.parse("+" + example.getCountryCode() + new String(digits), region));
+                }
+            }
+        }
+        numbers.add(util.parse("+800 1234 5678", "ZZ"));
+        numbers.add(util.parse("+1 123", "ZZ"));
+        return numbers;
+    }
+
+    @Test
+    public void shouldMatchGetNumberType() throws Exception{
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        NumberTypeClassifier classifier = new NumberTypeClassifier(util, false);
+        List<Phonenumber.PhoneNumber> numbers = numbers(util);
+        for(int pass = 0; pass < 2; pass++){
+            for(Phonenumber.PhoneNumber number : numbers){
+                assert(classifier.classify(number) == util.getNumberType(number));
+            }
+        }
+        assert(classifier.decided() > 0);
+    }
+
+    @Test
+    public void shouldMatchGetNumberTypeForValidNumbers() throws Exception{
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        NumberTypeClassifier classifier = new NumberTypeClassifier(util, true);
+        for(Phonenumber.PhoneNumber number : numbers(util)){
+            if(util.isValidNumber(number)){
+                assert(classifier.classify(number) == util.getNumberType(number));
+            }
+        }
+        assert(classifier.decided() > 0);
+    }
+}
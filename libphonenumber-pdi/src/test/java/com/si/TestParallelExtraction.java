@@ -0,0 +1,48 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import org.junit.jupiter.api.Test;
+
+class TestParallelExtraction{
+
+    @Test
+    public void shouldReturnBatchesInInputOrder() throws Exception{
+        PhoneNumberExtractor extractor = new PhoneNumberExtractor(PhoneNumberUtil.getInstance(), "US", true, true);
+        ParallelExtraction parallel = new ParallelExtraction("test", 4, 7, extractor, 1);
+        int rows = 1000;
+        int next = 0;
+        try {
+            for(int i = 0; i < rows; i++){
+                String text = i % 3 == 0 ? "no number here" : "call me at 303 411 " + (1000 + i);
+                parallel.add(new Object[]{i, text}, null);
+                ParallelExtraction.Batch batch;
+                while((batch = parallel.next(false)) != null){
+                    next = check(batch, next);
+                }
+            }
+            parallel.finish();
+            ParallelExtraction.Batch batch;
+            while((batch = parallel.next(true)) != null){
+                next = check(batch, next);
+            }
+        }finally{
+            parallel.shutdown();
+        }
+        assert(next == rows);
+    }
+
+    private int check(ParallelExtraction.Batch batch, int next){
+        for(int i = 0; i < batch.size; i++){
+            assert((Integer) batch.rows[i][0] == next);
+            if(next % 3 == 0){
+                assert(batch.numbers[i].length == 0);
+            }else{
+                assert(batch.numbers[i].length == 1);
+                assert(batch.numbers[i][0].getNationalNumber() == 3034110000L + 1000 + next);
+            }
+            next += 1;
+        }
+        return next;
+    }
+}
@@ -0,0 +1,85 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+class TestPersistentParseCache{
+
+    private static final String[] TEXTS = { "(303) 411-1234", "call 303 411 1234 or 720 555 0100", "no number here",
+        "020 7031 3000", "303 411 1234 ext. 55", "1 2 3" };
+
+    private static String extractAll(PhoneNumberExtractor extractor, PhoneNumberExtractor.Buffer buffer){
+        StringBuilder sb = new StringBuilder();
+        for(String text : TEXTS){
+            int count = extractor.extract(text, buffer);
+            sb.append(count).append(':');
+            for(int i = 0; i < count; i++){
+                sb.append(buffer.numbers[i]).append(';');
+            }
+            sb.append('|');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void shouldReuseResultsAcrossRuns() throws Exception{
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        File file = File.createTempFile("parse", ".cache");
+        try{
+            PersistentParseCache cache = new PersistentParseCache(file, 100, 1, 2);
+            assert(!cache.isReused());
+            PhoneNumberExtractor extractor = new PhoneNumberExtractor(util, "US", true, false);
+            extractor.setPersistentCache(cache);
+            String expected = extractAll(new PhoneNumberExtractor(util, "US", true, false), new PhoneNumberExtractor.Buffer());
+            assert(extractAll(extractor, new PhoneNumberExtractor.Buffer()).equals(expected));
+            // the text with an extension is not kept
+            assert(cache.size() == TEXTS.length - 1);
+            cache.close();
+
+            cache = new PersistentParseCache(file, 100, 1, 2);
+            assert(cache.isReused());
+            assert(cache.size() == TEXTS.length - 1);
+            extractor = new PhoneNumberExtractor(util, "US", true, false);
+            extractor.setPersistentCache(cache);
+            assert(extractAll(extractor, new PhoneNumberExtractor.Buffer()).equals(expected));
+            assert(cache.hits() == TEXTS.length - 1);
+            cache.close();
+        }finally{
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldStartOverOnChangedStampsOrUncleanFiles() throws Exception{
+        File file = File.createTempFile("parse", ".cache");
+        try{
+            PersistentParseCache.Probe probe = new PersistentParseCache.Probe().set("303 411 1234", "US", 0);
+            Phonenumber.PhoneNumber number = PhoneNumberUtil.getInstance().parse("303 411 1234", "US");
+            PersistentParseCache cache = new PersistentParseCache(file, 100, 1, 2);
+            assert(cache.put(probe, new Phonenumber.PhoneNumber[]{ number }, 1));
+            cache.close();
+
+            long[] keys = new long[PersistentParseCache.MAX_NUMBERS];
+            cache = new PersistentParseCache(file, 100, 1, 3);
+            assert(!cache.isReused() && cache.get(probe, keys) == -1);
+            assert(cache.put(probe, new Phonenumber.PhoneNumber[]{ number }, 1));
+            // not closed, as if the run died
+
+            cache = new PersistentParseCache(file, 100, 1, 3);
+            assert(!cache.isReused() && cache.get(probe, keys) == -1);
+            assert(cache.put(probe, new Phonenumber.PhoneNumber[]{ number }, 1));
+            cache.close();
+
+            cache = new PersistentParseCache(file, 100, 1, 3);
+            assert(cache.get(probe, keys) == 1 && PackedNumber.toPhoneNumber(keys[0]).equals(number));
+            assert(cache.get(new PersistentParseCache.Probe().set("303 411 1234", "CA", 0), keys) == -1);
+            cache.close();
+        }finally{
+            file.delete();
+        }
+    }
+}
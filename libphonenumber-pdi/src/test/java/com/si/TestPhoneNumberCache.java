@@ -0,0 +1,43 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber.PhoneNumber;
+import org.junit.jupiter.api.Test;
+
+class TestPhoneNumberCache{
+
+    @Test
+    public void shouldShareCacheAcrossCopies() throws NumberParseException{
+        Object owner = new Object();
+        PhoneNumberCache first = PhoneNumberCache.acquire(owner, 10);
+        PhoneNumberCache second = PhoneNumberCache.acquire(owner, 10);
+        assert(first == second);
+
+        PhoneNumber number = PhoneNumberUtil.getInstance().parse("303 802 4561", "US");
+        first.put("303 802 4561", "US", 0, new PhoneNumber[]{number});
+        PhoneNumber[] cached = second.get(new PhoneNumberCache.Key().set("303 802 4561", "US", 0));
+        assert(cached != null && cached[0].getNationalNumber() == 3038024561L);
+        assert(second.get("303 802 4561", "US", 1) == null);
+        assert(second.get("303 802 4561", "CA", 0) == null);
+        assert(first.stats().hitCount() == 1);
+        assert(first.stats().missCount() == 2);
+
+        assert(!PhoneNumberCache.release(owner));
+        assert(PhoneNumberCache.release(owner));
+        assert(PhoneNumberCache.acquire(owner, 10) != first);
+        PhoneNumberCache.release(owner);
+    }
+
+    @Test
+    public void shouldEvictWhenFull(){
+        PhoneNumberCache cache = new PhoneNumberCache(2);
+        PhoneNumber[] empty = new PhoneNumber[0];
+        cache.put("a", "US", 0, empty);
+        cache.put("b", "US", 0, empty);
+        cache.put("c", "US", 0, empty);
+        assert(cache.size() <= 2);
+        assert(cache.stats().evictionCount() >= 1);
+    }
+}
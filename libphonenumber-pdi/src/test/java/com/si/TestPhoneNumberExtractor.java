@@ -0,0 +1,83 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import org.junit.jupiter.api.Test;
+
+class TestPhoneNumberExtractor{
+
+    @Test
+    public void shouldResolveRegionsPerRow(){
+        PhoneNumberExtractor extractor = new PhoneNumberExtractor(PhoneNumberUtil.getInstance(), "US", false, false);
+        PhoneNumberExtractor.Region us = extractor.getDefaultRegion();
+        assert(us.getCode().equals("US"));
+        assert(extractor.resolveRegion(" gb ").getCode().equals("GB"));
+        assert(extractor.resolveRegion("GB") == extractor.resolveRegion(" gb "));
+        assert(extractor.resolveRegion(null) == us);
+        assert(extractor.resolveRegion("") == us);
+        assert(extractor.resolveRegion("XX") == us);
+
+        PhoneNumberExtractor.Buffer buffer = new PhoneNumberExtractor.Buffer();
+        assert(extractor.extract("020 7031 3000", extractor.resolveRegion("GB"), buffer) == 1);
+        assert(buffer.numbers[0].getCountryCode() == 44);
+        assert(extractor.extract("303 411 1234", extractor.resolveRegion("unknown"), buffer) == 1);
+        assert(buffer.numbers[0].getCountryCode() == 1);
+    }
+
+    @Test
+    public void shouldSkipRowsWithoutAnyRegion(){
+        PhoneNumberExtractor extractor = new PhoneNumberExtractor(PhoneNumberUtil.getInstance(), "", false, false);
+        assert(extractor.getDefaultRegion() == null);
+        assert(extractor.resolveRegion("XX") == null);
+        assert(extractor.resolveRegion("de").getCode().equals("DE"));
+
+        PhoneNumberExtractor.Buffer buffer = new PhoneNumberExtractor.Buffer();
+        assert(extractor.extract("303 411 1234", extractor.resolveRegion(null), buffer) == 0);
+        assert(buffer.error == null);
+    }
+
+    @Test
+    public void shouldApplyLeniencyAndMaxTries(){
+        String text = "call 303 411 1234, not 123 456 7890, or 720 555 3030";
+        PhoneNumberExtractor.Buffer buffer = new PhoneNumberExtractor.Buffer();
+        PhoneNumberExtractor extractor = new PhoneNumberExtractor(PhoneNumberUtil.getInstance(), "US", true, false);
+        assert(extractor.extract(text, buffer) == 2);
+
+        extractor = new PhoneNumberExtractor(PhoneNumberUtil.getInstance(), "US", true, false);
+        extractor.setLeniency(PhoneNumberUtil.Leniency.POSSIBLE);
+        assert(extractor.extract(text, buffer) == 3);
+
+        extractor = new PhoneNumberExtractor(PhoneNumberUtil.getInstance(), "US", true, false);
+        extractor.setMaxTries(1);
+        assert(extractor.extract(text, buffer) == 1);
+        assert(buffer.numbers[0].getNationalNumber() == 3034111234L);
+    }
+
+    @Test
+    public void shouldStopRowsOverTheBudget(){
+        String text = "call 303 411 1234 or 720 555 3030";
+        PhoneNumberExtractor.Buffer buffer = new PhoneNumberExtractor.Buffer();
+        PhoneNumberExtractor extractor = new PhoneNumberExtractor(PhoneNumberUtil.getInstance(), "US", true, false);
+        extractor.setBudget(20, 0, true);
+        assert(extractor.extract(text, buffer) == 1);
+        assert(buffer.overBudget);
+        assert(extractor.extract("303 411 1234", buffer) == 1);
+        assert(!buffer.overBudget);
+
+        extractor.setBudget(20, 0, false);
+        assert(extractor.extract(text, buffer) == 0);
+        assert(buffer.overBudget);
+
+        StringBuilder digits = new StringBuilder();
+        for(int i = 0; i < 20000; i++){
+            digits.append(i).append(i % 3 == 0 ? "-" : " ");
+        }
+        extractor = new PhoneNumberExtractor(PhoneNumberUtil.getInstance(), "US", true, false);
+        extractor.setBudget(0, 1, false);
+        assert(extractor.extract(digits.toString(), buffer) == 0);
+        assert(buffer.overBudget);
+        extractor.setChunkSize(4096);
+        assert(extractor.extract(digits.toString(), buffer) == 0);
+        assert(buffer.overBudget);
+    }
+}
@@ -0,0 +1,87 @@
+package com.si;
+
+
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+class TestReferenceIndex{
+
+    @Test
+    public void shouldFindExactlyTheWrittenKeys() throws Exception{
+        Random random = new Random(22);
+        long[] keys = new long[5000];
+        Set<Long> expected = new HashSet<Long>();
+        for(int i = 0; i < keys.length; i++){
+            keys[i] = PackedNumber.pack(1, 0, 2000000000L + random.nextInt(20000));
+            expected.add(keys[i]);
+        }
+        File file = File.createTempFile("reference", ".idx");
+        try{
+            assert(ReferenceIndex.write(Arrays.copyOf(keys, keys.length), keys.length, file) == expected.size());
+            ReferenceIndex index = ReferenceIndex.open(file);
+            assert(index.size() == expected.size());
+            for(int n = 0; n < 20000; n++){
+                long key = PackedNumber.pack(1, 0, 2000000000L + n);
+                assert(index.contains(key) == expected.contains(key));
+            }
+            assert(!index.contains(PackedNumber.pack(44, 0, 2000000000L)));
+            assert(!index.contains(PackedNumber.NOT_PACKABLE));
+        }finally{
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldBuildFromText() throws Exception{
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        File text = File.createTempFile("reference", ".txt");
+        File file = File.createTempFile("reference", ".idx");
+        try{
+            Files.write(text.toPath(), "(303) 411-1234\n+44 20 7031 3000\nnot a number\n\n303.411.1234\n"
+                .getBytes(StandardCharsets.UTF_8));
+            assert(ReferenceIndex.build(text, file, util, "US") == 1);
+            ReferenceIndex index = ReferenceIndex.open(file);
+            assert(index.size() == 2);
+            assert(index.contains(util.parse("+1 303 411 1234", "ZZ")));
+            assert(index.contains(util.parse("020 7031 3000", "GB")));
+            assert(!index.contains(util.parse("303 411 1235", "US")));
+        }finally{
+            text.delete();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldRejectOtherFiles() throws Exception{
+        File file = File.createTempFile("reference", ".idx");
+        try{
+            Files.write(file.toPath(), new byte[64]);
+            ReferenceIndex.open(file);
+            assert(false);
+        }catch(IOException e){
+            assert(e.getMessage().startsWith("Not a reference index"));
+        }finally{
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldOpenAnEmptyIndex() throws Exception{
+        File file = File.createTempFile("reference", ".idx");
+        try{
+            ReferenceIndex.write(new long[0], 0, file);
+            assert(!ReferenceIndex.open(file).contains(PackedNumber.pack(1, 0, 2015550123L)));
+        }finally{
+            file.delete();
+        }
+    }
+}